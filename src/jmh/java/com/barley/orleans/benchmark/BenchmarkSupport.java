@@ -0,0 +1,95 @@
+package com.barley.orleans.benchmark;
+
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.structure.Payload;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Future;
+
+/**
+ * Payloads and producers shared by the benchmarks.
+ * <p>
+ * Producers send to a MockProducer which forgets every record once acknowledged, so long runs with large payloads do
+ * not fill the heap. Setting the system property <i>bench.bootstrap.servers</i> (gradle jmh -PbenchBootstrapServers=...)
+ * sends to that broker instead.
+ * </p>
+ */
+public final class BenchmarkSupport {
+
+    public static final String TOPIC = "benchmark";
+    public static final String BOOTSTRAP_SERVERS_PROPERTY = "bench.bootstrap.servers";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Payload request body as sent by clients, with a data element of roughly the given size.
+     *
+     * @param size size of the data element in bytes
+     * @return JSON bytes of the payload
+     */
+    public static byte[] payloadJson(int size) throws IOException {
+        final StringBuilder data = new StringBuilder(size + 128);
+        data.append("{\"client\":\"benchmark\",\"ipAddress\":\"10.0.0.1\",\"uuid\":\"").append(UUID.randomUUID())
+                .append("\",\"schemaId\":\"\",\"data\":{\"event\":\"benchmark\",\"blob\":\"");
+        for (int i = 0; i < Math.max(0, size - 32); i++) {
+            data.append((char) ('a' + i % 26));
+        }
+        data.append("\"}}");
+        return data.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * Payload read the way the controllers read it, data kept as raw JSON.
+     *
+     * @param size size of the data element in bytes
+     * @return Payload
+     */
+    public static Payload payload(int size) throws IOException {
+        return OBJECT_MAPPER.readValue(payloadJson(size), Payload.class);
+    }
+
+    /**
+     * Producer for the benchmarks, backed by a forgetting MockProducer unless a broker is configured.
+     *
+     * @return Producer
+     */
+    public static Producer producer() {
+        final String bootstrapServers = System.getProperty(BOOTSTRAP_SERVERS_PROPERTY);
+        if (bootstrapServers == null || bootstrapServers.length() == 0)
+            return new Producer(new ForgettingMockProducer(), new Properties(), Producer.DEFAULT_ACK_TIMEOUT);
+        final Properties properties = new Properties();
+        properties.put("bootstrap.servers", bootstrapServers);
+        properties.put("acks", "1");
+        properties.put("max.request.size", "2097152");
+        return new Producer(properties, false, 10000);
+    }
+
+    /**
+     * MockProducer completing every send right away and dropping its history.
+     */
+    static final class ForgettingMockProducer extends MockProducer<String, byte[]> {
+
+        ForgettingMockProducer() {
+            super(true, new StringSerializer(), new ByteArraySerializer());
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback) {
+            final Future<RecordMetadata> future = super.send(record, callback);
+            clear();
+            return future;
+        }
+    }
+}
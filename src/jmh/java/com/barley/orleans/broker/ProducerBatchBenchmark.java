@@ -0,0 +1,67 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.benchmark.BenchmarkSupport;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the batch path behind <i>POST v1/produce/{topic}</i>, one operation being one request of batchSize payloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerBatchBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int batchSize;
+
+    @Param({"100", "1024"})
+    int size;
+
+    private Producer producer;
+    private List<Payload> payloads;
+
+    @Setup
+    public void setUp() throws IOException {
+        producer = BenchmarkSupport.producer();
+        payloads = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            payloads.add(BenchmarkSupport.payload(size));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        producer.close();
+    }
+
+    @Benchmark
+    public List<Response> leaderAck() {
+        return producer.produceBatch(BenchmarkSupport.TOPIC, payloads, null, DeliveryMode.LEADER_ACK, 10000);
+    }
+
+    @Benchmark
+    public List<Response> fireAndForget() {
+        return producer.produceBatch(BenchmarkSupport.TOPIC, payloads, null, DeliveryMode.FIRE_AND_FORGET, 10000);
+    }
+}
@@ -0,0 +1,70 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.benchmark.BenchmarkSupport;
+import com.barley.orleans.exceptions.InvalidPayloadException;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of producing single payloads: validation alone, the whole validate, encode, send and await path and the
+ * rejection of an invalid payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProducerBenchmark {
+
+    @Param({"100", "1024", "10240", "102400", "1048576"})
+    int size;
+
+    private Producer producer;
+    private Payload payload;
+    private Payload invalidPayload;
+
+    @Setup
+    public void setUp() throws IOException {
+        producer = BenchmarkSupport.producer();
+        payload = BenchmarkSupport.payload(size);
+        invalidPayload = BenchmarkSupport.payload(size);
+        invalidPayload.setClient(null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producer.close();
+    }
+
+    @Benchmark
+    public Payload validate() throws InvalidPayloadException {
+        producer.validateInput(payload);
+        return payload;
+    }
+
+    @Benchmark
+    public Response produce() {
+        return producer.produce(BenchmarkSupport.TOPIC, payload);
+    }
+
+    @Benchmark
+    public Response produceInvalid() {
+        return producer.produce(BenchmarkSupport.TOPIC, invalidPayload);
+    }
+}
@@ -0,0 +1,80 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.benchmark.BenchmarkSupport;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Schema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of reading payloads from request bodies and encoding them for kafka.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadCodecBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Param({"100", "1024", "10240", "102400", "1048576"})
+    int size;
+
+    private byte[] json;
+    private Payload payload;
+    private Payload binaryPayload;
+    private PayloadCodecs jsonCodecs;
+    private PayloadCodecs binaryCodecs;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = BenchmarkSupport.payloadJson(size);
+        payload = OBJECT_MAPPER.readValue(json, Payload.class);
+        binaryPayload = OBJECT_MAPPER.readValue(json, Payload.class);
+        binaryPayload.setSchemaId("benchmark-v1");
+        jsonCodecs = PayloadCodecs.json();
+        final SchemaRegistry schemaRegistry = new SchemaRegistry();
+        schemaRegistry.register(new Schema("benchmark-v1", 1, BinaryPayloadCodec.NAME));
+        binaryCodecs = new PayloadCodecs(schemaRegistry);
+    }
+
+    @Benchmark
+    public Payload readPayload() throws IOException {
+        return OBJECT_MAPPER.readValue(json, Payload.class);
+    }
+
+    @Benchmark
+    public String writeValueAsString() throws IOException {
+        return OBJECT_MAPPER.writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return jsonCodecs.encode(payload);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() throws IOException {
+        return binaryCodecs.encode(binaryPayload);
+    }
+
+    @Benchmark
+    public Payload binaryDecode() throws IOException {
+        return binaryCodecs.decode(binaryCodecs.encode(binaryPayload));
+    }
+}
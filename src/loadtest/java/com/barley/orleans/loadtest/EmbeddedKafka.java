@@ -0,0 +1,96 @@
+package com.barley.orleans.loadtest;
+
+import kafka.server.KafkaServerStartable;
+import org.apache.zookeeper.server.NIOServerCnxnFactory;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.util.Properties;
+
+/**
+ * In-process ZooKeeper and single Kafka 0.9 broker on free local ports, with their data in a temporary directory
+ * removed on close.
+ */
+public class EmbeddedKafka implements Closeable {
+
+    private static final String HOST = "127.0.0.1";
+
+    private final File directory;
+    private final ServerCnxnFactory zooKeeperFactory;
+    private final KafkaServerStartable kafkaServer;
+    private final int kafkaPort;
+
+    /**
+     * Starts ZooKeeper and the broker.
+     *
+     * @param partitions number of partitions of automatically created topics
+     * @throws IOException if a port or directory cannot be obtained
+     */
+    public EmbeddedKafka(int partitions) throws IOException {
+        this.directory = Files.createTempDirectory("orleans-loadtest").toFile();
+        final File zooKeeperDirectory = new File(directory, "zookeeper");
+        final ZooKeeperServer zooKeeperServer = new ZooKeeperServer(zooKeeperDirectory, zooKeeperDirectory, 2000);
+        this.zooKeeperFactory = NIOServerCnxnFactory.createFactory(new InetSocketAddress(HOST, freePort()), 256);
+        try {
+            zooKeeperFactory.startup(zooKeeperServer);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while starting ZooKeeper", e);
+        }
+
+        this.kafkaPort = freePort();
+        final Properties properties = new Properties();
+        properties.put("broker.id", "0");
+        properties.put("host.name", HOST);
+        properties.put("port", String.valueOf(kafkaPort));
+        properties.put("zookeeper.connect", HOST + ":" + zooKeeperFactory.getLocalPort());
+        properties.put("log.dirs", new File(directory, "kafka").getAbsolutePath());
+        properties.put("num.partitions", String.valueOf(partitions));
+        properties.put("auto.create.topics.enable", "true");
+        properties.put("offsets.topic.replication.factor", "1");
+        properties.put("message.max.bytes", String.valueOf(2 * 1024 * 1024));
+        properties.put("replica.fetch.max.bytes", String.valueOf(2 * 1024 * 1024));
+        properties.put("controlled.shutdown.enable", "false");
+        this.kafkaServer = KafkaServerStartable.fromProps(properties);
+        kafkaServer.startup();
+    }
+
+    /**
+     * Bootstrap servers of the broker.
+     *
+     * @return host:port
+     */
+    public String bootstrapServers() {
+        return HOST + ":" + kafkaPort;
+    }
+
+    @Override
+    public void close() {
+        kafkaServer.shutdown();
+        kafkaServer.awaitShutdown();
+        zooKeeperFactory.shutdown();
+        delete(directory);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
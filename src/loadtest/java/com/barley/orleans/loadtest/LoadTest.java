@@ -0,0 +1,252 @@
+package com.barley.orleans.loadtest;
+
+import com.barley.orleans.Application;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End to end load test: starts an embedded ZooKeeper and Kafka broker, boots the application on a random port and
+ * drives <i>v1/produce/{topic}</i> from concurrent clients, then prints latency percentiles and throughput.
+ * <p>
+ * Run with <i>gradle loadTest -PloadTestArgs="--concurrency=32 --requests=50000"</i>, see {@link LoadTestOptions}.
+ * </p>
+ */
+public class LoadTest {
+
+    private final LoadTestOptions options;
+    private final URL url;
+    // payload data of every size, the envelopes around it are built per request
+    private final String[] data;
+    private final int totalWeight;
+
+    LoadTest(LoadTestOptions options, URL url) throws IOException {
+        this.options = options;
+        this.url = url;
+        this.data = new String[options.sizes.length];
+        int weights = 0;
+        for (int i = 0; i < options.sizes.length; i++) {
+            data[i] = data(options.sizes[i]);
+            weights += options.weights[i];
+        }
+        this.totalWeight = weights;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final LoadTestOptions options = LoadTestOptions.parse(args);
+        System.out.println("Load test " + options);
+        final EmbeddedKafka kafka = options.bootstrap == null ? new EmbeddedKafka(options.partitions) : null;
+        ConfigurableApplicationContext context = null;
+        boolean failed = true;
+        try {
+            final String bootstrapServers = kafka != null ? kafka.bootstrapServers() : options.bootstrap;
+            context = SpringApplication.run(Application.class, "--server.port=0", "--bootstrap.servers=" + bootstrapServers,
+                    "--security.basic.enabled=false", "--management.security.enabled=false",
+                    // the topic is created on first use by the embedded broker
+                    "--producer.metadata.reject-unknown-topics=false");
+            final int port = ((EmbeddedWebApplicationContext) context).getEmbeddedServletContainer().getPort();
+            final String path = "async".equals(options.path) ? "/v1/produce/async/" : "/v1/produce/";
+            final LoadTest loadTest = new LoadTest(options, new URL("http://127.0.0.1:" + port + path + options.topic));
+            loadTest.run(options.warmup);
+            final Result result = loadTest.run(options.requests);
+            System.out.println(result.report(options.batch));
+            failed = result.errors() > 0;
+        } finally {
+            if (context != null)
+                context.close();
+            if (kafka != null)
+                kafka.close();
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Sends requests from the configured number of clients.
+     *
+     * @param requests number of requests to send
+     * @return Result with the latency of every request
+     */
+    Result run(long requests) throws Exception {
+        final AtomicLong tickets = new AtomicLong(requests);
+        final Result result = new Result();
+        final ExecutorService executor = Executors.newFixedThreadPool(options.concurrency);
+        final List<Future<long[]>> clients = new ArrayList<>(options.concurrency);
+        final long started = System.nanoTime();
+        for (int i = 0; i < options.concurrency; i++) {
+            clients.add(executor.submit(new Client(tickets, result)));
+        }
+        final List<long[]> latencies = new ArrayList<>(options.concurrency);
+        for (Future<long[]> client : clients) {
+            latencies.add(client.get());
+        }
+        result.elapsed = System.nanoTime() - started;
+        executor.shutdown();
+        result.merge(latencies);
+        return result;
+    }
+
+    private long post(byte[] body) throws IOException {
+        final long started = System.nanoTime();
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        final int status = connection.getResponseCode();
+        final InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (in != null) {
+            final byte[] buffer = new byte[8192];
+            while (in.read(buffer) >= 0) {
+            }
+            in.close();
+        }
+        final long latency = System.nanoTime() - started;
+        return status / 100 == 2 ? latency : -latency;
+    }
+
+    private String pick() {
+        int weight = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (int i = 0; i < data.length; i++) {
+            weight -= options.weights[i];
+            if (weight < 0)
+                return data[i];
+        }
+        return data[data.length - 1];
+    }
+
+    private static String data(int size) {
+        final StringBuilder data = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            data.append((char) ('a' + i % 26));
+        }
+        return data.toString();
+    }
+
+    /**
+     * Builds a request body with a fresh uuid in every payload, so the service never sees a retry of an earlier one.
+     *
+     * @param data  payload data
+     * @param batch payloads in the request
+     * @return json body
+     */
+    private static byte[] body(String data, int batch) throws IOException {
+        final StringBuilder body = new StringBuilder((data.length() + 160) * batch);
+        body.append('[');
+        for (int i = 0; i < batch; i++) {
+            body.append(i > 0 ? "," : "").append("{\"client\":\"loadtest\",\"ipAddress\":\"127.0.0.1\",\"uuid\":\"").append(UUID.randomUUID())
+                    .append("\",\"schemaId\":\"\",\"data\":{\"blob\":\"").append(data).append("\"}}");
+        }
+        body.append(']');
+        return body.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * One client thread sending requests until the tickets run out.
+     */
+    private final class Client implements Callable<long[]> {
+
+        private final AtomicLong tickets;
+        private final Result result;
+
+        Client(AtomicLong tickets, Result result) {
+            this.tickets = tickets;
+            this.result = result;
+        }
+
+        @Override
+        public long[] call() {
+            long[] latencies = new long[1024];
+            int count = 0;
+            while (tickets.getAndDecrement() > 0) {
+                long latency;
+                try {
+                    latency = post(body(pick(), options.batch));
+                } catch (IOException e) {
+                    result.failed.incrementAndGet();
+                    continue;
+                }
+                if (latency < 0) {
+                    result.rejected.incrementAndGet();
+                    latency = -latency;
+                }
+                if (count == latencies.length)
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                latencies[count++] = latency;
+            }
+            return Arrays.copyOf(latencies, count);
+        }
+    }
+
+    /**
+     * Latencies and error count of a run.
+     */
+    static final class Result {
+
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        long elapsed;
+        long[] latencies = new long[0];
+
+        void merge(List<long[]> clientLatencies) {
+            int count = 0;
+            for (long[] client : clientLatencies) {
+                count += client.length;
+            }
+            latencies = new long[count];
+            int position = 0;
+            for (long[] client : clientLatencies) {
+                System.arraycopy(client, 0, latencies, position, client.length);
+                position += client.length;
+            }
+            Arrays.sort(latencies);
+        }
+
+        /**
+         * Latency in nanoseconds below which the given fraction of requests completed.
+         *
+         * @param quantile fraction between 0 and 1
+         * @return latency in nanoseconds, 0 without requests
+         */
+        long percentile(double quantile) {
+            if (latencies.length == 0)
+                return 0;
+            final int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.min(latencies.length - 1, Math.max(0, index))];
+        }
+
+        long errors() {
+            return failed.get() + rejected.get();
+        }
+
+        String report(int batch) {
+            final long succeeded = latencies.length - rejected.get();
+            final double seconds = elapsed / 1e9;
+            return String.format("requests    %d (rejected %d, failed %d)%n" +
+                            "records     %d%n" +
+                            "duration    %.2f s%n" +
+                            "throughput  %.0f records/s, %.0f requests/s%n" +
+                            "latency ms  p50 %.3f  p99 %.3f  p999 %.3f  max %.3f",
+                    latencies.length + failed.get(), rejected.get(), failed.get(), succeeded * batch, seconds, succeeded * batch / seconds, latencies.length / seconds,
+                    percentile(0.5) / 1e6, percentile(0.99) / 1e6, percentile(0.999) / 1e6, percentile(1) / 1e6);
+        }
+    }
+}
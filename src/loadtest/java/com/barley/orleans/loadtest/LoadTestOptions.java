@@ -0,0 +1,108 @@
+package com.barley.orleans.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Options of a load test run, parsed from <i>--name=value</i> arguments:
+ * <ul>
+ * <li><i>concurrency</i> number of client threads, default 16</li>
+ * <li><i>requests</i> number of measured requests, default 20000</li>
+ * <li><i>warmup</i> number of unmeasured requests sent first, default 2000</li>
+ * <li><i>batch</i> payloads per request, default 10</li>
+ * <li><i>mix</i> payload data sizes in bytes with their weights, default 100:70,1024:25,10240:5</li>
+ * <li><i>topic</i> topic to produce to, default loadtest</li>
+ * <li><i>partitions</i> partitions of the topic, default 8</li>
+ * <li><i>path</i> endpoint below v1/produce, <i>sync</i> or <i>async</i>, default sync</li>
+ * <li><i>bootstrap</i> use this broker instead of starting an embedded one</li>
+ * </ul>
+ */
+public class LoadTestOptions {
+
+    int concurrency = 16;
+    long requests = 20000;
+    long warmup = 2000;
+    int batch = 10;
+    int[] sizes = {100, 1024, 10240};
+    int[] weights = {70, 25, 5};
+    String topic = "loadtest";
+    int partitions = 8;
+    String path = "sync";
+    String bootstrap = null;
+
+    /**
+     * Parses the arguments of a run.
+     *
+     * @param args <i>--name=value</i> arguments
+     * @return LoadTestOptions
+     * @throws IllegalArgumentException on unknown or malformed arguments
+     */
+    public static LoadTestOptions parse(String[] args) {
+        final LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0)
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            final String name = arg.substring(2, separator);
+            final String value = arg.substring(separator + 1);
+            switch (name) {
+                case "concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "requests":
+                    options.requests = Long.parseLong(value);
+                    break;
+                case "warmup":
+                    options.warmup = Long.parseLong(value);
+                    break;
+                case "batch":
+                    options.batch = Integer.parseInt(value);
+                    break;
+                case "mix":
+                    options.mix(value);
+                    break;
+                case "topic":
+                    options.topic = value;
+                    break;
+                case "partitions":
+                    options.partitions = Integer.parseInt(value);
+                    break;
+                case "path":
+                    if (!"sync".equals(value) && !"async".equals(value))
+                        throw new IllegalArgumentException("Unknown path " + value);
+                    options.path = value;
+                    break;
+                case "bootstrap":
+                    options.bootstrap = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        return options;
+    }
+
+    private void mix(String value) {
+        final List<int[]> entries = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            final String[] parts = entry.trim().split(":");
+            entries.add(new int[]{Integer.parseInt(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 1});
+        }
+        sizes = new int[entries.size()];
+        weights = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            sizes[i] = entries.get(i)[0];
+            weights[i] = entries.get(i)[1];
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder mix = new StringBuilder();
+        for (int i = 0; i < sizes.length; i++) {
+            mix.append(i > 0 ? "," : "").append(sizes[i]).append(':').append(weights[i]);
+        }
+        return "concurrency=" + concurrency + " requests=" + requests + " warmup=" + warmup + " batch=" + batch +
+                " mix=" + mix + " topic=" + topic + " partitions=" + partitions + " path=" + path;
+    }
+}
@@ -0,0 +1,273 @@
+package com.barley.orleans.admission;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.RawJson;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Budget of the bytes and records being produced at once, over all topics and per topic, so a burst of large calls
+ * cannot fill the heap or block request threads on <i>buffer.memory</i> inside the kafka producer.
+ * <p>
+ * Counters are AtomicLongs updated with compare-and-set, so admission takes no locks. A call over the budget waits up
+ * to the configured time for calls in flight to complete, or is rejected right away when that time is 0. A call larger
+ * than a budget is admitted once that budget is empty, so it is not rejected forever. A limit of 0 is unlimited.
+ * </p>
+ */
+public final class InFlightBudget {
+
+    // field names, metadata and kafka record overhead of a payload
+    private static final long ENVELOPE_BYTES = 128;
+    // data not held as raw json, its size is only known once encoded
+    private static final long OBJECT_BYTES = 1024;
+
+    private final Budget global;
+    private final long topicMaxBytes;
+    private final long topicMaxRecords;
+    private final int maxTopics;
+    private final long maxWait;
+    private final ConcurrentMap<String, Budget> topics = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * InFlightBudget constructor.
+     *
+     * @param maxBytes        bytes in flight over all topics, 0 for unlimited.
+     * @param maxRecords      records in flight over all topics, 0 for unlimited.
+     * @param topicMaxBytes   bytes in flight per topic, 0 for unlimited.
+     * @param topicMaxRecords records in flight per topic, 0 for unlimited.
+     * @param maxTopics       topic budgets above which empty ones are dropped, they are recreated when needed.
+     * @param maxWait         milliseconds a call waits for budget before it is rejected, 0 to reject right away.
+     */
+    public InFlightBudget(long maxBytes, long maxRecords, long topicMaxBytes, long topicMaxRecords, int maxTopics, long maxWait) {
+        if (maxBytes < 0 || maxRecords < 0 || topicMaxBytes < 0 || topicMaxRecords < 0 || maxWait < 0)
+            throw new IllegalArgumentException("In-flight budget limits cannot be negative");
+        if (maxTopics < 1)
+            throw new IllegalArgumentException("In-flight budget max topics must be positive");
+        this.global = new Budget(maxBytes, maxRecords);
+        this.topicMaxBytes = topicMaxBytes;
+        this.topicMaxRecords = topicMaxRecords;
+        this.maxTopics = maxTopics;
+        this.maxWait = TimeUnit.MILLISECONDS.toNanos(maxWait);
+    }
+
+    /**
+     * Method to take budget for payloads produced to a topic, waiting for it up to the configured time.
+     *
+     * @param topic    - topic the payloads are produced to.
+     * @param payloads - List of Payloads to admit.
+     * @return Permit to release once the payloads are acknowledged or failed, null if rejected.
+     */
+    public Permit acquire(String topic, List<Payload> payloads) {
+        final long bytes = bytes(payloads);
+        final long records = payloads == null ? 0 : payloads.size();
+        Permit permit = tryAcquire(topic, bytes, records);
+        if (permit != null)
+            return permit;
+        if (maxWait == 0)
+            return reject();
+        final long deadline = System.nanoTime() + maxWait;
+        final Thread current = Thread.currentThread();
+        // registered before trying again, so a release in between unparks this thread
+        waiters.add(current);
+        try {
+            while (true) {
+                permit = tryAcquire(topic, bytes, records);
+                if (permit != null)
+                    return permit;
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || current.isInterrupted())
+                    return reject();
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    /**
+     * Bytes in flight over all topics.
+     */
+    public long inFlightBytes() {
+        return global.bytes.get();
+    }
+
+    /**
+     * Records in flight over all topics.
+     */
+    public long inFlightRecords() {
+        return global.records.get();
+    }
+
+    /**
+     * Calls rejected so far.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Estimated size of payloads once encoded, the raw json data plus the envelope of every payload.
+     *
+     * @param payloads List of Payloads
+     * @return estimated bytes
+     */
+    static long bytes(List<Payload> payloads) {
+        if (payloads == null)
+            return 0;
+        long bytes = 0;
+        for (Payload payload : payloads) {
+            bytes += ENVELOPE_BYTES;
+            final Object data = payload == null ? null : payload.getData();
+            if (data instanceof RawJson)
+                bytes += ((RawJson) data).getBytes().length;
+            else if (data instanceof String)
+                bytes += ((String) data).length();
+            else if (data != null)
+                bytes += OBJECT_BYTES;
+        }
+        return bytes;
+    }
+
+    private Permit tryAcquire(String topic, long bytes, long records) {
+        if (!global.tryAcquire(bytes, records))
+            return null;
+        Budget budget = null;
+        if (topicMaxBytes > 0 || topicMaxRecords > 0) {
+            budget = topics.get(topic);
+            if (budget == null) {
+                final Budget created = new Budget(topicMaxBytes, topicMaxRecords);
+                budget = topics.putIfAbsent(topic, created);
+                if (budget == null) {
+                    budget = created;
+                    if (topics.size() > maxTopics)
+                        sweep();
+                }
+            }
+            if (!budget.tryAcquire(bytes, records)) {
+                release(global, bytes, records);
+                return null;
+            }
+        }
+        return new Permit(budget, bytes, records);
+    }
+
+    private void release(Budget budget, long bytes, long records) {
+        budget.bytes.addAndGet(-bytes);
+        budget.records.addAndGet(-records);
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private Permit reject() {
+        rejected.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Drops the budgets of topics with nothing in flight, one sweep at a time. A call racing the sweep may be counted
+     * in a dropped budget, which only loosens the limit of its topic until it completes.
+     */
+    private void sweep() {
+        if (!sweeping.compareAndSet(false, true))
+            return;
+        try {
+            final Iterator<Map.Entry<String, Budget>> iterator = topics.entrySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue().isEmpty())
+                    iterator.remove();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Budget taken by one call, released once.
+     */
+    public final class Permit {
+        private final Budget topic;
+        private final long bytes;
+        private final long records;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Budget topic, long bytes, long records) {
+            this.topic = topic;
+            this.bytes = bytes;
+            this.records = records;
+        }
+
+        /**
+         * Gives the budget back, waking the calls waiting for it. Releasing again does nothing.
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true))
+                return;
+            if (topic != null) {
+                topic.bytes.addAndGet(-bytes);
+                topic.records.addAndGet(-records);
+            }
+            InFlightBudget.this.release(global, bytes, records);
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+    }
+
+    /**
+     * Bytes and records in flight against their limits.
+     */
+    private static final class Budget {
+        private final long maxBytes;
+        private final long maxRecords;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong records = new AtomicLong();
+
+        private Budget(long maxBytes, long maxRecords) {
+            this.maxBytes = maxBytes;
+            this.maxRecords = maxRecords;
+        }
+
+        private boolean tryAcquire(long bytes, long records) {
+            if (!take(this.bytes, bytes, maxBytes))
+                return false;
+            if (!take(this.records, records, maxRecords)) {
+                this.bytes.addAndGet(-bytes);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean isEmpty() {
+            return bytes.get() == 0 && records.get() == 0;
+        }
+
+        private static boolean take(AtomicLong counter, long amount, long max) {
+            while (true) {
+                final long current = counter.get();
+                // an empty budget admits any call, even one larger than the limit
+                if (max > 0 && current > 0 && current + amount > max)
+                    return false;
+                if (counter.compareAndSet(current, current + amount))
+                    return true;
+            }
+        }
+    }
+}
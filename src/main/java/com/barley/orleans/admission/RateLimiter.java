@@ -0,0 +1,296 @@
+package com.barley.orleans.admission;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.RateLimit;
+import com.barley.orleans.structure.RateLimits;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets admitting produce calls per Payload client and per topic, so one noisy client cannot fill the shared
+ * kafka producer buffer for everyone else.
+ * <p>
+ * Every bucket is a single AtomicLong holding the time at which it is full again (the generic cell rate algorithm),
+ * updated with compare-and-set, and buckets live in concurrent maps striped by key, so admission takes no locks.
+ * A call larger than the burst is admitted into a full bucket and paid back before the next one. Limits can be changed
+ * at any time and apply to the next call. Payloads without client share one bucket.
+ * </p>
+ * <p>
+ * A scope holds at most maxBuckets buckets. Once it is full, the full buckets are dropped, at most once per
+ * {@link #SWEEP_INTERVAL_MS}, and calls needing a new bucket while none could be dropped are rejected until the next
+ * sweep, so clients and topics with arbitrary names can neither grow the maps nor make every call rescan them.
+ * </p>
+ */
+public final class RateLimiter {
+
+    /**
+     * What a bucket is keyed by.
+     */
+    public enum Scope {
+        CLIENT, TOPIC
+    }
+
+    /**
+     * Minimum time in milliseconds between two sweeps of the buckets of a scope.
+     */
+    public static final long SWEEP_INTERVAL_MS = 1000;
+
+    private static final String NO_CLIENT = "";
+
+    private final Limits clients;
+    private final Limits topics;
+    private final int maxBuckets;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * RateLimiter constructor.
+     *
+     * @param clientLimit default limit of every client, can be null for unlimited.
+     * @param topicLimit  default limit of every topic, can be null for unlimited.
+     * @param maxBuckets  buckets per scope, full buckets are dropped to make room and recreated full when needed.
+     */
+    public RateLimiter(RateLimit clientLimit, RateLimit topicLimit, int maxBuckets) {
+        if (maxBuckets < 1)
+            throw new IllegalArgumentException("Rate limiter max buckets must be positive");
+        this.clients = new Limits(clientLimit);
+        this.topics = new Limits(topicLimit);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Method to admit payloads produced to a topic, taking one token per payload from the topic bucket and from the
+     * bucket of each client. Nothing is taken if any bucket rejects the call.
+     *
+     * @param topic    - topic the payloads are produced to.
+     * @param payloads - List of Payloads to admit.
+     * @return 0 if admitted, otherwise the nanoseconds to wait before the call can be admitted.
+     */
+    public long acquire(String topic, List<Payload> payloads) {
+        if (payloads == null || payloads.isEmpty())
+            return 0;
+        final long now = System.nanoTime();
+        final long topicWait = topics.acquire(topic, payloads.size(), now, maxBuckets);
+        if (topicWait > 0)
+            return reject(topicWait);
+        // calls usually carry payloads of a single client
+        final String first = client(payloads.get(0));
+        int sameClient = 1;
+        while (sameClient < payloads.size() && first.equals(client(payloads.get(sameClient)))) {
+            sameClient++;
+        }
+        if (sameClient == payloads.size()) {
+            final long clientWait = clients.acquire(first, payloads.size(), now, maxBuckets);
+            if (clientWait > 0) {
+                topics.release(topic, payloads.size());
+                return reject(clientWait);
+            }
+            return 0;
+        }
+        final Map<String, Integer> counts = new HashMap<>();
+        for (Payload payload : payloads) {
+            final Integer count = counts.get(client(payload));
+            counts.put(client(payload), count == null ? 1 : count + 1);
+        }
+        final Map<String, Integer> acquired = new HashMap<>();
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            final long clientWait = clients.acquire(count.getKey(), count.getValue(), now, maxBuckets);
+            if (clientWait > 0) {
+                for (Map.Entry<String, Integer> release : acquired.entrySet()) {
+                    clients.release(release.getKey(), release.getValue());
+                }
+                topics.release(topic, payloads.size());
+                return reject(clientWait);
+            }
+            acquired.put(count.getKey(), count.getValue());
+        }
+        return 0;
+    }
+
+    /**
+     * Sets the default limit of a scope.
+     *
+     * @param scope     Scope of the limit
+     * @param rateLimit RateLimit, null for unlimited
+     */
+    public void setDefaultLimit(Scope scope, RateLimit rateLimit) {
+        limits(scope).defaultLimit = Limit.of(rateLimit);
+    }
+
+    /**
+     * Sets the limit of one client or topic, overriding the default limit of its scope.
+     *
+     * @param scope     Scope of the limit
+     * @param name      client or topic name
+     * @param rateLimit RateLimit, null to remove the override
+     */
+    public void setLimit(Scope scope, String name, RateLimit rateLimit) {
+        final Limits limits = limits(scope);
+        if (rateLimit == null) {
+            limits.overrides.remove(name);
+            limits.limits.remove(name);
+        } else {
+            limits.limits.put(name, rateLimit);
+            limits.overrides.put(name, Limit.of(rateLimit));
+        }
+    }
+
+    /**
+     * Calls rejected so far.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Current limits and rejections.
+     *
+     * @return RateLimits snapshot
+     */
+    public RateLimits snapshot() {
+        final RateLimits rateLimits = new RateLimits();
+        rateLimits.setClientLimit(clients.defaultLimit.rateLimit);
+        rateLimits.setTopicLimit(topics.defaultLimit.rateLimit);
+        rateLimits.setClientLimits(new TreeMap<>(clients.limits));
+        rateLimits.setTopicLimits(new TreeMap<>(topics.limits));
+        rateLimits.setRejected(rejected.get());
+        return rateLimits;
+    }
+
+    private long reject(long wait) {
+        rejected.incrementAndGet();
+        return wait;
+    }
+
+    private Limits limits(Scope scope) {
+        return scope == Scope.CLIENT ? clients : topics;
+    }
+
+    private static String client(Payload payload) {
+        return payload.getClient() != null ? payload.getClient() : NO_CLIENT;
+    }
+
+    /**
+     * Limit with the rate expressed as nanoseconds per token.
+     */
+    private static final class Limit {
+        private static final Limit UNLIMITED = new Limit(null, 0, 0);
+
+        private final RateLimit rateLimit;
+        private final long interval;
+        private final long tolerance;
+
+        private Limit(RateLimit rateLimit, long interval, long tolerance) {
+            this.rateLimit = rateLimit;
+            this.interval = interval;
+            this.tolerance = tolerance;
+        }
+
+        private static Limit of(RateLimit rateLimit) {
+            if (rateLimit == null || rateLimit.getRate() <= 0)
+                return UNLIMITED;
+            final long interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / rateLimit.getRate()));
+            final long burst = rateLimit.getBurst() != null && rateLimit.getBurst() > 0
+                    ? rateLimit.getBurst() : Math.max(1, (long) Math.ceil(rateLimit.getRate()));
+            return new Limit(rateLimit, interval, interval * burst);
+        }
+    }
+
+    /**
+     * Limits and buckets of one scope.
+     */
+    private static final class Limits {
+        private volatile Limit defaultLimit;
+        private final ConcurrentMap<String, Limit> overrides = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, RateLimit> limits = new ConcurrentHashMap<>();
+        // time at which the bucket of a name is full again
+        private final ConcurrentMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        // counted apart from the map, whose size is not constant time
+        private final AtomicInteger bucketCount = new AtomicInteger();
+        private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+        private Limits(RateLimit defaultLimit) {
+            this.defaultLimit = Limit.of(defaultLimit);
+        }
+
+        private Limit limit(String name) {
+            final Limit limit = overrides.get(name);
+            return limit != null ? limit : defaultLimit;
+        }
+
+        private long acquire(String name, int tokens, long now, int maxBuckets) {
+            final Limit limit = limit(name);
+            if (limit == Limit.UNLIMITED)
+                return 0;
+            AtomicLong bucket = buckets.get(name);
+            if (bucket == null) {
+                if (!reserve(now, maxBuckets))
+                    return Math.max(1, nextSweep.get() - now);
+                bucket = new AtomicLong(now);
+                final AtomicLong existing = buckets.putIfAbsent(name, bucket);
+                if (existing != null) {
+                    bucketCount.decrementAndGet();
+                    bucket = existing;
+                }
+            }
+            final long cost = limit.interval * tokens;
+            while (true) {
+                final long full = bucket.get();
+                final long start = Math.max(full, now);
+                final long wait = start + cost - now - limit.tolerance;
+                if (wait > 0 && full > now)
+                    return wait;
+                if (bucket.compareAndSet(full, start + cost))
+                    return 0;
+            }
+        }
+
+        private void release(String name, int tokens) {
+            final Limit limit = limit(name);
+            final AtomicLong bucket = buckets.get(name);
+            if (limit != Limit.UNLIMITED && bucket != null)
+                bucket.addAndGet(-limit.interval * tokens);
+        }
+
+        /**
+         * Takes room for a new bucket, sweeping once the scope is full.
+         *
+         * @return false if the scope is full of buckets which are not
+         */
+        private boolean reserve(long now, int maxBuckets) {
+            if (bucketCount.incrementAndGet() <= maxBuckets)
+                return true;
+            bucketCount.decrementAndGet();
+            sweep(now);
+            if (bucketCount.incrementAndGet() <= maxBuckets)
+                return true;
+            bucketCount.decrementAndGet();
+            return false;
+        }
+
+        /**
+         * Drops the buckets which are full, those are no different from a new one. Runs at most once per
+         * {@link #SWEEP_INTERVAL_MS}, by the thread which moved the next sweep time forward.
+         */
+        private void sweep(long now) {
+            final long next = nextSweep.get();
+            if (now - next < 0 || !nextSweep.compareAndSet(next, now + TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MS)))
+                return;
+            final Iterator<Map.Entry<String, AtomicLong>> entries = buckets.entrySet().iterator();
+            while (entries.hasNext()) {
+                if (entries.next().getValue().get() - now <= 0) {
+                    entries.remove();
+                    bucketCount.decrementAndGet();
+                }
+            }
+        }
+    }
+}
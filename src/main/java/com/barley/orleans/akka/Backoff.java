@@ -0,0 +1,61 @@
+package com.barley.orleans.akka;
+
+import akka.actor.ActorContext;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff for actors retrying a message, the non-blocking replacement of sleeping in onReceive and trying
+ * again. The retry is scheduled on the actor system scheduler, so the actor keeps processing its mailbox meanwhile.
+ */
+public final class Backoff {
+
+    private final long minDelay;
+    private final long maxDelay;
+    private final int maxAttempts;
+
+    /**
+     * Backoff constructor.
+     *
+     * @param minDelay    milliseconds before the first retry
+     * @param maxDelay    upper bound of the milliseconds between retries
+     * @param maxAttempts number of retries before giving up
+     */
+    public Backoff(long minDelay, long maxDelay, int maxAttempts) {
+        if (minDelay < 1 || maxDelay < minDelay || maxAttempts < 0)
+            throw new IllegalArgumentException("Backoff needs 0 < minDelay <= maxDelay and maxAttempts >= 0");
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Delay before an attempt: minDelay doubled per attempt up to maxDelay, of which the last quarter is random so
+     * actors failing together do not retry together.
+     *
+     * @param attempt attempt number, starting at 1
+     * @return delay in milliseconds
+     */
+    public long delay(int attempt) {
+        final long delay = Math.min(maxDelay, minDelay << Math.min(attempt - 1, 30));
+        return delay - ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+    }
+
+    /**
+     * Method to schedule a {@link Retry} of a message to the actor of the context, from the current sender.
+     *
+     * @param context  - ActorContext of the retrying actor.
+     * @param message  - message to handle again.
+     * @param attempts - retries made so far, 0 when the message failed for the first time.
+     * @return true if the retry was scheduled, false if the attempts are exhausted.
+     */
+    public boolean retry(ActorContext context, Object message, int attempts) {
+        if (attempts >= maxAttempts)
+            return false;
+        context.system().scheduler().scheduleOnce(Duration.create(delay(attempts + 1), TimeUnit.MILLISECONDS), context.self(),
+                new Retry(message, attempts + 1), context.dispatcher(), context.sender());
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package com.barley.orleans.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.routing.Broadcast;
+import akka.routing.ConsistentHashingPool;
+import akka.routing.RoundRobinPool;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.config.SpringExtension;
+import com.barley.orleans.interfaces.IngestCallback;
+import com.barley.orleans.structure.Payload;
+
+import java.util.List;
+
+/**
+ * Actor pipeline taking produce calls off the request threads. A consistent hashing router shards calls by topic over
+ * ProducerWorkers, which hand the payloads to kafka, and a pool of IngestRepliers completes the calls.
+ * <p>
+ * The router and the repliers run on the {@value #DISPATCHER} dispatcher, the workers, whose kafka calls can block,
+ * on {@link com.barley.orleans.config.ActorDeployment#BLOCKING_DISPATCHER}. Workers have bounded {@value #MAILBOX}
+ * mailboxes. Dispatchers and mailbox are configured by {@link com.barley.orleans.properties.IngestProperties}. A call
+ * finding the mailbox of its worker full is rejected through its IngestCallback instead of queueing without bound.
+ * </p>
+ */
+public final class IngestPipeline {
+
+    /**
+     * Dispatcher the pipeline actors run on.
+     */
+    public static final String DISPATCHER = "orleans.ingest-dispatcher";
+
+    /**
+     * Bounded mailbox of the pipeline actors.
+     */
+    public static final String MAILBOX = "orleans.ingest-mailbox";
+
+    private final ActorRef router;
+    private final ActorRef repliers;
+
+    /**
+     * IngestPipeline constructor. The actor system needs the Spring extension initialized and the dispatcher and
+     * mailbox configured.
+     *
+     * @param actorSystem ActorSystem to start the actors in
+     * @param workers     number of ProducerWorkers topics are sharded over
+     * @param repliers    number of IngestRepliers
+     */
+    public IngestPipeline(ActorSystem actorSystem, int workers, int repliers) {
+        if (workers < 1 || repliers < 1)
+            throw new IllegalArgumentException("Ingest pipeline needs at least one worker and one replier");
+        // dispatcher and mailbox of the workers are declared on ProducerWorker
+        final Props workerProps = SpringExtension.SpringExtProvider.get(actorSystem).props(ProducerWorker.BEAN);
+        this.router = actorSystem.actorOf(byTopic(workers).withDispatcher(DISPATCHER).props(workerProps), "ingest-router");
+        this.repliers = actorSystem.actorOf(new RoundRobinPool(repliers).withDispatcher(DISPATCHER)
+                .props(Props.create(IngestReplier.class).withDispatcher(DISPATCHER)), "ingest-repliers");
+        actorSystem.eventStream().subscribe(this.repliers, DeadLetter.class);
+    }
+
+    /**
+     * Method to hand payloads over to the worker of their topic. Returns right away, the callback is invoked once the
+     * payloads are acknowledged or the call is rejected.
+     *
+     * @param topic        - topic to produce to.
+     * @param payloads     - List of Payloads to produce.
+     * @param deliveryMode - DeliveryMode selecting the producer pool.
+     * @param callback     - IngestCallback completing the call.
+     */
+    public void ingest(String topic, List<Payload> payloads, DeliveryMode deliveryMode, IngestCallback callback) {
+        router.tell(new IngestRequest(topic, payloads, deliveryMode, callback), repliers);
+    }
+
+    /**
+     * Pool routing IngestRequests by topic. The hash mapper interface is only declared on the deprecated
+     * ConsistentHashingRouter, so it is referenced here and not imported.
+     *
+     * @param workers number of routees
+     * @return ConsistentHashingPool
+     */
+    @SuppressWarnings("deprecation")
+    private static ConsistentHashingPool byTopic(int workers) {
+        return new ConsistentHashingPool(workers).withHashMapper(new akka.routing.ConsistentHashingRouter.ConsistentHashMapper() {
+            @Override
+            public Object hashKey(Object message) {
+                return message instanceof IngestRequest ? ((IngestRequest) message).getTopic() : null;
+            }
+        });
+    }
+
+    /**
+     * Stops the workers once they processed the calls already queued. Calls arriving later become dead letters and
+     * are rejected by the repliers, which run until the actor system shuts down.
+     */
+    public void close() {
+        router.tell(new Broadcast(PoisonPill.getInstance()), ActorRef.noSender());
+    }
+}
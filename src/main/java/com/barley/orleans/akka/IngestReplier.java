@@ -0,0 +1,32 @@
+package com.barley.orleans.akka;
+
+import akka.actor.DeadLetter;
+import akka.actor.UntypedActor;
+
+/**
+ * Actor completing ingest calls with the replies of the ProducerWorkers. It also receives the IngestRequests dropped
+ * as dead letters, because the mailbox of their worker was full, and rejects them so the caller is answered right away.
+ */
+public class IngestReplier extends UntypedActor {
+
+    static final String FULL = "Ingest pipeline is full, retry later";
+
+    @Override
+    public void onReceive(Object message) {
+        if (message instanceof IngestReply) {
+            final IngestReply reply = (IngestReply) message;
+            final IngestRequest request = reply.getRequest();
+            if (reply.getResponses() != null)
+                request.getCallback().completed(request.getTopic(), reply.getResponses());
+            else
+                request.getCallback().rejected(request.getTopic(), reply.getRejection());
+        } else if (message instanceof DeadLetter) {
+            Object dropped = ((DeadLetter) message).message();
+            if (dropped instanceof Retry)
+                dropped = ((Retry) dropped).getMessage();
+            if (dropped instanceof IngestRequest)
+                ((IngestRequest) dropped).getCallback().rejected(((IngestRequest) dropped).getTopic(), FULL);
+        } else
+            unhandled(message);
+    }
+}
@@ -0,0 +1,41 @@
+package com.barley.orleans.akka;
+
+import com.barley.orleans.structure.Response;
+
+import java.util.List;
+
+/**
+ * Message from a ProducerWorker to an IngestReplier with the outcome of an IngestRequest: the responses of its
+ * payloads, or the reason it was rejected.
+ */
+public final class IngestReply {
+    private final IngestRequest request;
+    private final List<Response> responses;
+    private final String rejection;
+
+    private IngestReply(IngestRequest request, List<Response> responses, String rejection) {
+        this.request = request;
+        this.responses = responses;
+        this.rejection = rejection;
+    }
+
+    public static IngestReply completed(IngestRequest request, List<Response> responses) {
+        return new IngestReply(request, responses, null);
+    }
+
+    public static IngestReply rejected(IngestRequest request, String rejection) {
+        return new IngestReply(request, null, rejection);
+    }
+
+    public IngestRequest getRequest() {
+        return request;
+    }
+
+    public List<Response> getResponses() {
+        return responses;
+    }
+
+    public String getRejection() {
+        return rejection;
+    }
+}
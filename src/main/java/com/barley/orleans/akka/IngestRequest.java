@@ -0,0 +1,40 @@
+package com.barley.orleans.akka;
+
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.interfaces.IngestCallback;
+import com.barley.orleans.structure.Payload;
+
+import java.util.List;
+
+/**
+ * Message asking a ProducerWorker to produce payloads to a topic, routed to the worker of the topic.
+ */
+public final class IngestRequest {
+    private final String topic;
+    private final List<Payload> payloads;
+    private final DeliveryMode deliveryMode;
+    private final IngestCallback callback;
+
+    public IngestRequest(String topic, List<Payload> payloads, DeliveryMode deliveryMode, IngestCallback callback) {
+        this.topic = topic;
+        this.payloads = payloads;
+        this.deliveryMode = deliveryMode;
+        this.callback = callback;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public List<Payload> getPayloads() {
+        return payloads;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public IngestCallback getCallback() {
+        return callback;
+    }
+}
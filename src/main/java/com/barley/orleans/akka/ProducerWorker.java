@@ -0,0 +1,80 @@
+package com.barley.orleans.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.UntypedActor;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.config.ActorDeployment;
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.common.KafkaException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Scope;
+
+import javax.inject.Named;
+import java.util.List;
+
+/**
+ * Actor producing the IngestRequests of the topics routed to it. Every worker sticks to one shard of each producer
+ * pool, chosen by its name, so the topics of a worker share a kafka producer and its batches. The worker only hands payloads over to
+ * kafka; acknowledgements arrive on the kafka I/O thread and are sent to the replier that sent the request. A producer
+ * which cannot be created is retried with the Backoff bean instead of blocking the worker. Handing payloads over can
+ * still block on kafka metadata or buffer space, so workers run on the blocking dispatcher and cannot starve the
+ * repliers.
+ */
+@Named(ProducerWorker.BEAN)
+@ActorDeployment(dispatcher = ActorDeployment.BLOCKING_DISPATCHER, mailbox = IngestPipeline.MAILBOX)
+@Scope("prototype")
+public class ProducerWorker extends UntypedActor {
+
+    public static final String BEAN = "ProducerWorker";
+
+    @Autowired
+    ProducerRegistry producerRegistry;
+
+    @Autowired(required = false)
+    Backoff backoff;
+
+    // shard key of this worker in every pool, pools are looked up per call so no state grows with the topics
+    private String shardKey;
+
+    @Override
+    public void onReceive(Object message) {
+        if (message instanceof IngestRequest)
+            ingest((IngestRequest) message, 0);
+        else if (message instanceof Retry && ((Retry) message).getMessage() instanceof IngestRequest)
+            ingest((IngestRequest) ((Retry) message).getMessage(), ((Retry) message).getAttempt());
+        else
+            unhandled(message);
+    }
+
+    private void ingest(final IngestRequest request, int attempts) {
+        final ActorRef replier = getSender();
+        final Producer producer;
+        try {
+            producer = producer(request.getTopic(), request.getDeliveryMode());
+        } catch (KafkaException e) {
+            // the kafka producer could not be created, e.g. while the brokers do not resolve
+            if (backoff == null || !backoff.retry(getContext(), request, attempts))
+                replier.tell(IngestReply.rejected(request, e.getLocalizedMessage()), getSelf());
+            return;
+        }
+        try {
+            producer.produceBatchAsync(request.getTopic(), request.getPayloads(), null, new BatchCallback() {
+                @Override
+                public void completed(String topic, List<Response> responses) {
+                    replier.tell(IngestReply.completed(request, responses), ActorRef.noSender());
+                }
+            });
+        } catch (KafkaException | IllegalArgumentException e) {
+            replier.tell(IngestReply.rejected(request, e.getLocalizedMessage()), getSelf());
+        }
+    }
+
+    private Producer producer(String topic, DeliveryMode deliveryMode) {
+        if (shardKey == null)
+            shardKey = getSelf().path().name();
+        return producerRegistry.pool(topic, deliveryMode).shard(shardKey);
+    }
+}
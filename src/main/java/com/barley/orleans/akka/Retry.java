@@ -0,0 +1,25 @@
+package com.barley.orleans.akka;
+
+/**
+ * Message an actor schedules to itself through {@link Backoff} to handle a message again later.
+ */
+public final class Retry {
+    private final Object message;
+    private final int attempt;
+
+    public Retry(Object message, int attempt) {
+        this.message = message;
+        this.attempt = attempt;
+    }
+
+    public Object getMessage() {
+        return message;
+    }
+
+    /**
+     * Number of the attempt this retry is, the first retry is attempt 1.
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+}
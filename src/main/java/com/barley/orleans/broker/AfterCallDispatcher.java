@@ -0,0 +1,177 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.structure.Payload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs AfterCall implementations on a bounded pool of dispatcher threads, so user code never runs on the kafka producer I/O thread.
+ * <p>
+ * When the queue is full the OverflowPolicy decides. DROP, the default, discards the call, counts and logs it. BLOCK
+ * and CALLER_RUNS stall the kafka I/O thread, which then acknowledges no other record: BLOCK waits for space on it and
+ * CALLER_RUNS runs user code on it. Only choose them if every AfterCall must run and is fast.
+ * </p>
+ */
+public final class AfterCallDispatcher {
+
+    /**
+     * Time in milliseconds close() waits for queued AfterCalls.
+     */
+    public static final long DEFAULT_CLOSE_TIMEOUT = 30000;
+
+    /**
+     * What to do with an AfterCall when the dispatch queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for space on the calling thread, stalls the kafka I/O thread.
+         */
+        BLOCK,
+        /**
+         * Discard the call, it is counted and logged.
+         */
+        DROP,
+        /**
+         * Run the call on the calling thread, runs user code on the kafka I/O thread.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * Dropped AfterCalls between two log messages.
+     */
+    private static final long DROP_LOG_INTERVAL = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ThreadPoolExecutor executor;
+    private final ArrayBlockingQueue<Runnable> queue;
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong callerRuns = new AtomicLong();
+
+    /**
+     * AfterCallDispatcher constructor.
+     *
+     * @param threads        number of dispatcher threads
+     * @param queueCapacity  number of AfterCalls waiting for a dispatcher thread before the overflow policy applies
+     * @param overflowPolicy OverflowPolicy once the queue is full
+     */
+    public AfterCallDispatcher(int threads, int queueCapacity, final OverflowPolicy overflowPolicy) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "orleans-after-call-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                if (executor.isShutdown()) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                switch (overflowPolicy) {
+                    case BLOCK:
+                        try {
+                            queue.put(runnable);
+                        } catch (InterruptedException e) {
+                            dropped.incrementAndGet();
+                            Thread.currentThread().interrupt();
+                        }
+                        break;
+                    case CALLER_RUNS:
+                        callerRuns.incrementAndGet();
+                        runnable.run();
+                        break;
+                    default:
+                        final long count = dropped.incrementAndGet();
+                        if (count % DROP_LOG_INTERVAL == 1)
+                            logger.warn("AfterCall queue is full, " + count + " AfterCalls dropped so far");
+                }
+            }
+        });
+    }
+
+    /**
+     * Queue an AfterCall invocation.
+     *
+     * @param afterCall  AfterCall to invoke
+     * @param topic      topic the payload was produced to
+     * @param partition  partition of the record, null if produce failed
+     * @param offset     offset of the record, null if produce failed
+     * @param exception  exception if produce failed
+     * @param payload    Payload which was produced
+     * @param properties Properties of the producer
+     */
+    public void dispatch(final AfterCall afterCall, final String topic, final Integer partition, final Long offset, final Exception exception,
+                         final Payload payload, final Properties properties) {
+        dispatched.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    afterCall.after(topic, partition, offset, exception, payload, properties);
+                } catch (RuntimeException e) {
+                    logger.error("Error in AfterCall for topic: " + topic + " with payload: " + payload, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of AfterCalls waiting for a dispatcher thread.
+     *
+     * @return int
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    public long dispatched() {
+        return dispatched.get();
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long callerRuns() {
+        return callerRuns.get();
+    }
+
+    /**
+     * Stop accepting AfterCalls and wait up to {@link #DEFAULT_CLOSE_TIMEOUT} for queued ones to finish.
+     */
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Stop accepting AfterCalls and wait for queued ones to finish.
+     *
+     * @param timeout time in milliseconds to wait
+     */
+    public void close(long timeout) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+                logger.error(queue.size() + " AfterCalls not dispatched on close");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.codec.PayloadCodecs;
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.interfaces.ConsumeHandler;
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * ConsumeHandler decoding every consumed record into a Payload and handing it to an AfterCall.
+ * Records which cannot be decoded are passed with a null payload and the decoding exception.
+ */
+public class AfterCallHandler implements ConsumeHandler {
+
+    private final AfterCall afterCall;
+    private final PayloadCodecs payloadCodecs;
+    private final Properties properties;
+
+    /**
+     * @param afterCall     AfterCall invoked for every record.
+     * @param payloadCodecs PayloadCodecs used to decode record values.
+     * @param properties    Properties of the consumer, passed on to the AfterCall.
+     */
+    public AfterCallHandler(AfterCall afterCall, PayloadCodecs payloadCodecs, Properties properties) {
+        this.afterCall = afterCall;
+        this.payloadCodecs = payloadCodecs;
+        this.properties = properties;
+    }
+
+    @Override
+    public void handle(ConsumerRecords<String, byte[]> records) {
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Payload payload = null;
+            Exception exception = null;
+            try {
+                payload = payloadCodecs.decode(record.value());
+            } catch (IOException e) {
+                exception = e;
+            }
+            afterCall.after(record.topic(), record.partition(), record.offset(), exception, payload, properties);
+        }
+    }
+}
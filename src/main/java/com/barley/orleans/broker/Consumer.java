@@ -0,0 +1,244 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.ConsumeHandler;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumer worker owning one kafka consumer and the partitions assigned to it.
+ * <p>
+ * Every poll batch is handed to the ConsumeHandler as a whole. Offsets are not auto committed, they are collected per
+ * partition and committed asynchronously once commitBatchSize records were handled or commitInterval passed, and
+ * synchronously when partitions are revoked or the worker stops. A batch whose handler throws is not committed, the
+ * worker seeks back to its first records and hands it over again after {@link #RETRY_BACKOFF} milliseconds, so records
+ * are delivered at least once and a failing handler stalls its partitions instead of skipping data.
+ * </p>
+ */
+public final class Consumer implements Runnable {
+
+    /**
+     * Time in milliseconds before a batch whose handler failed is polled again.
+     */
+    public static final long RETRY_BACKOFF = 1000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final org.apache.kafka.clients.consumer.Consumer<String, byte[]> kafkaConsumer;
+    private final ConsumeHandler consumeHandler;
+    private final long pollTimeout;
+    private final long commitInterval;
+    private final int commitBatchSize;
+
+    private final Map<TopicPartition, OffsetAndMetadata> pendingOffsets = new HashMap<>();
+    private int pendingRecords = 0;
+    private long lastCommit = 0;
+
+    private volatile boolean running = true;
+    private final AtomicLong consumed = new AtomicLong();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final Object backoff = new Object();
+
+    private final OffsetCommitCallback commitCallback = new OffsetCommitCallback() {
+        @Override
+        public void onComplete(Map<TopicPartition, OffsetAndMetadata> offsets, Exception exception) {
+            if (exception != null)
+                logger.error("Error while committing offsets: " + offsets, exception);
+        }
+    };
+
+    /**
+     * Consumer constructor creating its own kafka consumer, auto commit is always disabled.
+     *
+     * @param properties      Properties needed for the kafka consumer, <i>group.id</i> included.
+     * @param consumeHandler  ConsumeHandler invoked for every poll batch.
+     * @param pollTimeout     time in milliseconds a poll waits for records.
+     * @param commitInterval  time in milliseconds after which handled offsets are committed.
+     * @param commitBatchSize number of handled records after which offsets are committed.
+     */
+    public Consumer(Properties properties, ConsumeHandler consumeHandler, long pollTimeout, long commitInterval, int commitBatchSize) {
+        this(new KafkaConsumer<>(withoutAutoCommit(properties), new StringDeserializer(), new ByteArrayDeserializer()),
+                consumeHandler, pollTimeout, commitInterval, commitBatchSize);
+    }
+
+    /**
+     * Consumer constructor around an existing kafka consumer (a MockConsumer for testing purposes).
+     *
+     * @param kafkaConsumer   kafka consumer owned by this worker from now on.
+     * @param consumeHandler  ConsumeHandler invoked for every poll batch.
+     * @param pollTimeout     time in milliseconds a poll waits for records.
+     * @param commitInterval  time in milliseconds after which handled offsets are committed.
+     * @param commitBatchSize number of handled records after which offsets are committed.
+     */
+    public Consumer(org.apache.kafka.clients.consumer.Consumer<String, byte[]> kafkaConsumer, ConsumeHandler consumeHandler, long pollTimeout,
+                    long commitInterval, int commitBatchSize) {
+        this.kafkaConsumer = kafkaConsumer;
+        this.consumeHandler = consumeHandler;
+        this.pollTimeout = pollTimeout;
+        this.commitInterval = commitInterval;
+        this.commitBatchSize = commitBatchSize;
+    }
+
+    private static Properties withoutAutoCommit(Properties properties) {
+        final Properties consumerProperties = new Properties();
+        consumerProperties.putAll(properties);
+        consumerProperties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        return consumerProperties;
+    }
+
+    /**
+     * Subscribe to topics, partitions are assigned by the consumer group. Must be called before the worker runs.
+     *
+     * @param topics topics to consume
+     */
+    public void subscribe(List<String> topics) {
+        kafkaConsumer.subscribe(topics, new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                commitPending();
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                logger.info("Assigned partitions: " + partitions);
+            }
+        });
+    }
+
+    /**
+     * Own the given partitions without group management. Must be called before the worker runs.
+     *
+     * @param partitions partitions to consume
+     */
+    public void assign(List<TopicPartition> partitions) {
+        kafkaConsumer.assign(partitions);
+    }
+
+    @Override
+    public void run() {
+        try {
+            lastCommit = System.currentTimeMillis();
+            while (running) {
+                final ConsumerRecords<String, byte[]> records = kafkaConsumer.poll(pollTimeout);
+                if (!records.isEmpty() && !handle(records))
+                    backoff();
+                if (pendingRecords >= commitBatchSize || (pendingRecords > 0 && System.currentTimeMillis() - lastCommit >= commitInterval)) {
+                    kafkaConsumer.commitAsync(new HashMap<>(pendingOffsets), commitCallback);
+                    pendingOffsets.clear();
+                    pendingRecords = 0;
+                    lastCommit = System.currentTimeMillis();
+                }
+            }
+        } catch (WakeupException e) {
+            if (running)
+                logger.error("Consumer woken up while running", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Consumer stopped on error", e);
+        } finally {
+            try {
+                commitPending();
+            } catch (RuntimeException e) {
+                logger.error("Error while committing offsets on close: " + pendingOffsets, e);
+            }
+            kafkaConsumer.close();
+            running = false;
+            stopped.countDown();
+        }
+    }
+
+    private boolean handle(ConsumerRecords<String, byte[]> records) {
+        try {
+            consumeHandler.handle(records);
+        } catch (RuntimeException e) {
+            logger.error("Error while handling " + records.count() + " records, retrying them in " + RETRY_BACKOFF + " ms", e);
+            for (TopicPartition partition : records.partitions()) {
+                kafkaConsumer.seek(partition, records.records(partition).get(0).offset());
+            }
+            return false;
+        }
+        for (TopicPartition partition : records.partitions()) {
+            final List<ConsumerRecord<String, byte[]>> partitionRecords = records.records(partition);
+            pendingOffsets.put(partition, new OffsetAndMetadata(partitionRecords.get(partitionRecords.size() - 1).offset() + 1));
+        }
+        pendingRecords += records.count();
+        consumed.addAndGet(records.count());
+        return true;
+    }
+
+    private void backoff() throws InterruptedException {
+        synchronized (backoff) {
+            if (running)
+                backoff.wait(RETRY_BACKOFF);
+        }
+    }
+
+    private void commitPending() {
+        if (!pendingOffsets.isEmpty()) {
+            kafkaConsumer.commitSync(pendingOffsets);
+            pendingOffsets.clear();
+            pendingRecords = 0;
+            lastCommit = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Number of records handed to the ConsumeHandler so far.
+     *
+     * @return long
+     */
+    public long consumed() {
+        return consumed.get();
+    }
+
+    /**
+     * Tells if the worker is still polling.
+     *
+     * @return boolean
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop polling, commit handled offsets and close the kafka consumer. Returns without waiting, see awaitStopped.
+     */
+    public void shutdown() {
+        running = false;
+        synchronized (backoff) {
+            backoff.notifyAll();
+        }
+        kafkaConsumer.wakeup();
+    }
+
+    /**
+     * Wait for the worker to stop after shutdown.
+     *
+     * @param timeout time in milliseconds to wait
+     * @return true if the worker stopped
+     * @throws InterruptedException
+     */
+    public boolean awaitStopped(long timeout) throws InterruptedException {
+        return stopped.await(timeout, TimeUnit.MILLISECONDS);
+    }
+}
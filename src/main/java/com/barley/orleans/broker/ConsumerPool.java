@@ -0,0 +1,102 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.ConsumeHandler;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of Consumer workers, each on its own thread with its own kafka consumer in the same consumer group,
+ * so the group spreads the partitions of the topics over the workers.
+ */
+public final class ConsumerPool {
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final List<Consumer> consumers = new ArrayList<>();
+    private ExecutorService executorService;
+
+    /**
+     * ConsumerPool constructor. Every worker gets its own <i>client.id</i>.
+     *
+     * @param properties      Properties needed for the kafka consumers, <i>group.id</i> included.
+     * @param topics          topics to consume
+     * @param threads         number of workers
+     * @param consumeHandler  ConsumeHandler invoked for every poll batch, shared by all workers so must be thread safe.
+     * @param pollTimeout     time in milliseconds a poll waits for records.
+     * @param commitInterval  time in milliseconds after which handled offsets are committed.
+     * @param commitBatchSize number of handled records after which offsets are committed.
+     */
+    public ConsumerPool(Properties properties, List<String> topics, int threads, ConsumeHandler consumeHandler, long pollTimeout,
+                        long commitInterval, int commitBatchSize) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Consumer pool threads must be at least 1, was " + threads);
+        final String clientId = properties.getProperty(ConsumerConfig.CLIENT_ID_CONFIG, "orleans-consumer");
+        for (int i = 0; i < threads; i++) {
+            final Properties consumerProperties = new Properties();
+            consumerProperties.putAll(properties);
+            consumerProperties.put(ConsumerConfig.CLIENT_ID_CONFIG, clientId + "-" + i);
+            final Consumer consumer = new Consumer(consumerProperties, consumeHandler, pollTimeout, commitInterval, commitBatchSize);
+            consumer.subscribe(topics);
+            consumers.add(consumer);
+        }
+    }
+
+    /**
+     * Start every worker on its own thread.
+     */
+    public synchronized void start() {
+        if (executorService != null)
+            return;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executorService = Executors.newFixedThreadPool(consumers.size(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "orleans-consumer-" + threadNumber.getAndIncrement());
+            }
+        });
+        for (Consumer consumer : consumers) {
+            executorService.submit(consumer);
+        }
+    }
+
+    /**
+     * Number of records handled by all workers so far.
+     *
+     * @return long
+     */
+    public long consumed() {
+        long consumed = 0;
+        for (Consumer consumer : consumers) {
+            consumed += consumer.consumed();
+        }
+        return consumed;
+    }
+
+    /**
+     * Stop every worker, committing handled offsets.
+     */
+    public synchronized void close() {
+        for (Consumer consumer : consumers) {
+            consumer.shutdown();
+        }
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(30, TimeUnit.SECONDS))
+                    logger.error("Consumer workers did not stop within 30 seconds");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
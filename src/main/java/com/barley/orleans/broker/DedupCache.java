@@ -0,0 +1,199 @@
+package com.barley.orleans.broker;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, time-windowed set of recently produced payload ids, used to acknowledge client retries without producing
+ * the payload again. An id should only be added once its payload is acknowledged, a retry arriving while the payload is
+ * in flight is produced again rather than acknowledged, so it is not lost if the payload fails.
+ * <p>
+ * An id is kept as a 64 bit hash of topic and uuid in sharded open-addressing tables of primitive arrays, 12 bytes per
+ * entry. Every shard has a current and a previous generation; the current one becomes the previous one once it is
+ * half full or a window old, so an id is remembered for at least one window unless the cache overflows, and memory
+ * never grows beyond two generations.
+ * </p>
+ */
+public final class DedupCache {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Shard[] shards;
+    private final int shardShift;
+    private final long windowMillis;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    /**
+     * DedupCache constructor.
+     *
+     * @param capacity     ids kept per generation over all shards, rounded up to a power of two
+     * @param shards       number of independently locked shards, rounded up to a power of two
+     * @param windowMillis time in milliseconds an id is remembered
+     */
+    public DedupCache(int capacity, int shards, long windowMillis) {
+        if (capacity < 1 || shards < 1 || windowMillis < 1)
+            throw new IllegalArgumentException("Dedup cache capacity, shards and window must be positive");
+        final int shardCount = powerOfTwo(shards);
+        final int shardCapacity = powerOfTwo(Math.max(2, capacity / shardCount)) * 2;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            this.shards[i] = new Shard(shardCapacity);
+        }
+        this.shardShift = 64 - Integer.numberOfTrailingZeros(shardCount);
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Method to remember an id. Both copies of a retry which was in flight may be acknowledged and added, so an id
+     * which is already remembered is not counted as a duplicate here, only by {@link #contains(String, String)}.
+     *
+     * @param topic topic the payload is produced to
+     * @param uuid  uuid of the payload
+     * @return true if the id was not seen within the window, false if it already was
+     */
+    public boolean add(String topic, String uuid) {
+        final long key = key(topic, uuid);
+        return shard(key).add(key, now());
+    }
+
+    /**
+     * Method to tell if an id was remembered within the window, counting it as a duplicate if it was.
+     *
+     * @param topic topic the payload is produced to
+     * @param uuid  uuid of the payload
+     * @return true for a duplicate
+     */
+    public boolean contains(String topic, String uuid) {
+        final long key = key(topic, uuid);
+        final boolean seen = shard(key).contains(key, now());
+        if (seen)
+            duplicates.incrementAndGet();
+        return seen;
+    }
+
+    /**
+     * Number of duplicates detected so far.
+     *
+     * @return long
+     */
+    public long duplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * Number of ids in the current generations.
+     *
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    private Shard shard(long key) {
+        return shards.length == 1 ? shards[0] : shards[(int) (key >>> shardShift)];
+    }
+
+    private int now() {
+        return (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static long key(String topic, String uuid) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < topic.length(); i++) {
+            hash = (hash ^ topic.charAt(i)) * FNV_PRIME;
+        }
+        hash = (hash ^ 0xff) * FNV_PRIME;
+        for (int i = 0; i < uuid.length(); i++) {
+            hash = (hash ^ uuid.charAt(i)) * FNV_PRIME;
+        }
+        // final avalanche, so shard and slot bits both depend on every character
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash != 0 ? hash : 1;
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private final class Shard {
+        private final int capacity;
+        private long[] keys;
+        private int[] times;
+        private long[] previousKeys;
+        private int[] previousTimes;
+        private int size;
+        private int generationStart;
+
+        private Shard(int capacity) {
+            this.capacity = capacity;
+            this.keys = new long[capacity];
+            this.times = new int[capacity];
+            this.previousKeys = new long[capacity];
+            this.previousTimes = new int[capacity];
+        }
+
+        synchronized boolean add(long key, int now) {
+            if (size >= capacity / 2 || now - generationStart >= windowMillis)
+                rotate(now);
+            if (seen(previousKeys, previousTimes, key, now))
+                return false;
+            final int mask = capacity - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == key && now - times[slot] < windowMillis)
+                return false;
+            if (keys[slot] == 0)
+                size++;
+            keys[slot] = key;
+            times[slot] = now;
+            return true;
+        }
+
+        synchronized boolean contains(long key, int now) {
+            return seen(keys, times, key, now) || seen(previousKeys, previousTimes, key, now);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private boolean seen(long[] keys, int[] times, long key, int now) {
+            final int slot = find(keys, key);
+            return slot >= 0 && now - times[slot] < windowMillis;
+        }
+
+        private int find(long[] keys, long key) {
+            final int mask = capacity - 1;
+            int slot = (int) key & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key)
+                    return slot;
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        private void rotate(int now) {
+            final long[] recycledKeys = previousKeys;
+            final int[] recycledTimes = previousTimes;
+            previousKeys = keys;
+            previousTimes = times;
+            Arrays.fill(recycledKeys, 0);
+            keys = recycledKeys;
+            times = recycledTimes;
+            size = 0;
+            generationStart = now;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.barley.orleans.broker;
+
+/**
+ * Delivery guarantee requested when producing payloads to kafka.
+ */
+public enum DeliveryMode {
+    /**
+     * Payloads are handed over to the kafka producer and the call returns right away without waiting for any acknowledgement.
+     */
+    FIRE_AND_FORGET("1"),
+    /**
+     * The call waits until the partition leader acknowledged the payloads or the deadline passed.
+     */
+    LEADER_ACK("1"),
+    /**
+     * The call waits until all in-sync replicas acknowledged the payloads or the deadline passed.
+     */
+    ALL_REPLICAS("all");
+
+    private final String acks;
+
+    DeliveryMode(String acks) {
+        this.acks = acks;
+    }
+
+    /**
+     * Value of the kafka <i>acks</i> producer config needed for this mode.
+     *
+     * @return acks value
+     */
+    public String getAcks() {
+        return acks;
+    }
+}
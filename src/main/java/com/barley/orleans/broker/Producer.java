@@ -1,23 +1,42 @@
 package com.barley.orleans.broker;
 
+import com.barley.orleans.codec.PayloadCodecs;
 import com.barley.orleans.exceptions.InvalidPayloadException;
 import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.interfaces.StreamAdmission;
+import com.barley.orleans.metrics.meters.ProducerMeters;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.spill.SpillQueue;
+import com.barley.orleans.spill.SpillReplayer;
 import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadReader;
 import com.barley.orleans.structure.Response;
+import com.barley.orleans.structure.StreamResult;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.kafka.clients.producer.*;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Producer class to publish/produce payloads to Kafka broker.
@@ -29,12 +48,31 @@ public final class Producer {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private org.apache.kafka.clients.producer.Producer<String, String> kafkaProducer;
+    private org.apache.kafka.clients.producer.Producer<String, byte[]> kafkaProducer;
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private boolean isProducerAlive = false;
     private boolean isMockProducer = false;
     private Properties producerProperties = null;
 
+    /**
+     * Default time in milliseconds to wait for kafka acknowledgements.
+     */
+    public static final long DEFAULT_ACK_TIMEOUT = 100;
+    /**
+     * Number of payloads of a stream read and admitted together.
+     */
+    public static final int STREAM_CHUNK = 100;
+    private static final String NO_TOPIC = "Topic cannot be null or empty";
+    private long ackTimeout = DEFAULT_ACK_TIMEOUT;
+    private PayloadCodecs payloadCodecs = PayloadCodecs.json();
+    private AfterCallDispatcher afterCallDispatcher = null;
+    private ProducerMeters producerMeters = null;
+    private volatile SpillQueue spillQueue = null;
+    private volatile SpillReplayer spillReplayer = null;
+    private DedupCache dedupCache = null;
+    private TopicMetadataCache topicMetadataCache = null;
+    private PayloadPartitioners payloadPartitioners = null;
+
     /**
      * Producer private constructor for internal use
      *
@@ -42,16 +80,43 @@ public final class Producer {
      * @param isMock     is this producer a mock one (Only for testing purposes, should be always false in production environment)
      */
     public Producer(Properties properties, boolean isMock) {
+        this(properties, isMock, DEFAULT_ACK_TIMEOUT);
+    }
+
+    /**
+     * Producer constructor with a default deadline for kafka acknowledgements.
+     *
+     * @param properties Properties needed for Producer
+     * @param isMock     is this producer a mock one (Only for testing purposes, should be always false in production environment)
+     * @param ackTimeout default time in milliseconds to wait for kafka acknowledgements.
+     */
+    public Producer(Properties properties, boolean isMock, long ackTimeout) {
         this.producerProperties = properties;
+        this.ackTimeout = ackTimeout;
         if (!isMock)
-            this.kafkaProducer = new KafkaProducer<>(properties, new StringSerializer(), new StringSerializer());
+            this.kafkaProducer = new KafkaProducer<>(properties, new StringSerializer(), new ByteArraySerializer());
         else {
-            this.kafkaProducer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+            this.kafkaProducer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
             this.isMockProducer = true;
         }
         this.isProducerAlive = true;
     }
 
+    /**
+     * Producer constructor around an existing kafka producer, e.g. a MockProducer set up by the caller.
+     *
+     * @param kafkaProducer kafka producer to send records with
+     * @param properties    Properties of the kafka producer, handed to AfterCalls
+     * @param ackTimeout    default time in milliseconds to wait for kafka acknowledgements.
+     */
+    public Producer(org.apache.kafka.clients.producer.Producer<String, byte[]> kafkaProducer, Properties properties, long ackTimeout) {
+        this.producerProperties = properties;
+        this.ackTimeout = ackTimeout;
+        this.kafkaProducer = kafkaProducer;
+        this.isMockProducer = kafkaProducer instanceof MockProducer;
+        this.isProducerAlive = true;
+    }
+
     /**
      * method to flush the messages in sender's queue.
      */
@@ -66,12 +131,109 @@ public final class Producer {
      */
     public void close() {
         if (isProducerAlive) {
+            if (spillReplayer != null) {
+                try {
+                    spillReplayer.shutdown(SpillReplayer.SEND_TIMEOUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
             kafkaProducer.close();
+            if (spillQueue != null) {
+                // records kafka failed while closing
+                spillReplayer.appendHandedOff();
+                try {
+                    spillQueue.close();
+                } catch (IOException e) {
+                    logger.error("Error while closing spill queue " + spillQueue.getDirectory(), e);
+                }
+            }
             isMockProducer = false;
             isProducerAlive = false;
         }
     }
 
+    /**
+     * Sets the codecs used to encode payloads, payloads are written as JSON by default.
+     *
+     * @param payloadCodecs PayloadCodecs selecting a codec by payload schemaId
+     */
+    public void setPayloadCodecs(PayloadCodecs payloadCodecs) {
+        this.payloadCodecs = payloadCodecs;
+    }
+
+    /**
+     * Sets the dispatcher running AfterCalls off the kafka producer I/O thread. Without one, AfterCalls run on the I/O thread.
+     *
+     * @param afterCallDispatcher AfterCallDispatcher, can be null.
+     */
+    public void setAfterCallDispatcher(AfterCallDispatcher afterCallDispatcher) {
+        this.afterCallDispatcher = afterCallDispatcher;
+    }
+
+    /**
+     * Sets the per topic instruments recorded on every produce. Without them nothing is recorded.
+     *
+     * @param producerMeters ProducerMeters, can be null.
+     */
+    public void setProducerMeters(ProducerMeters producerMeters) {
+        this.producerMeters = producerMeters;
+    }
+
+    /**
+     * Sets the queue records are spilled to when kafka fails them or cannot take them, and starts replaying it. While
+     * spilled records wait for replay, new records are spilled too, so they reach kafka behind them. Records kafka fails
+     * are appended by the replay thread rather than the kafka I/O thread, records spilled by requests meanwhile can be
+     * appended ahead of them, so order is only kept among the records of each path. Responses of spilled records carry
+     * no offset and are marked spilled, AfterCalls still see the kafka failure.
+     *
+     * @param spillQueue     SpillQueue owned by this producer from now on, closed with it
+     * @param replayInterval time in milliseconds between replay attempts
+     */
+    public void setSpillQueue(SpillQueue spillQueue, long replayInterval) {
+        this.spillReplayer = new SpillReplayer(spillQueue, kafkaProducer, replayInterval);
+        this.spillQueue = spillQueue;
+        final Thread replayThread = new Thread(spillReplayer, "orleans-spill-replay-" + spillQueue.getDirectory().getName());
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    /**
+     * Sets the cache of recently produced payload uuids. A payload whose uuid was produced to the same topic within the
+     * window of the cache is not produced again, its response is marked duplicate and carries no offset. A uuid is only
+     * remembered once kafka acknowledged its payload or it was spilled, so a retry of a payload still in flight or
+     * failed is produced, at the cost of a second copy. Payloads without uuid are always produced.
+     *
+     * @param dedupCache DedupCache, can be null.
+     */
+    public void setDedupCache(DedupCache dedupCache) {
+        this.dedupCache = dedupCache;
+    }
+
+    /**
+     * Sets the cache of topic metadata. With it, payloads for illegal (and, if configured, unknown) topics fail right
+     * away instead of waiting for kafka metadata, and partition lookups are answered from the cache.
+     *
+     * @param topicMetadataCache TopicMetadataCache, can be null.
+     */
+    public void setTopicMetadataCache(TopicMetadataCache topicMetadataCache) {
+        this.topicMetadataCache = topicMetadataCache;
+    }
+
+    /**
+     * Sets the partitioners choosing the partition of payloads produced without explicit partition or key. Without them,
+     * or for topics without a partitioner, kafka partitions the records.
+     *
+     * @param payloadPartitioners PayloadPartitioners selecting a partitioner by topic, can be null.
+     */
+    public void setPayloadPartitioners(PayloadPartitioners payloadPartitioners) {
+        this.payloadPartitioners = payloadPartitioners;
+    }
+
+    public SpillQueue getSpillQueue() {
+        return spillQueue;
+    }
+
     /**
      * Tells if this producer a mock one.
      *
@@ -92,7 +254,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic in kafka.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic   the topic to which data need to produced.
      * @param payload Payload which need to be produced.
@@ -104,7 +267,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic in kafka. Client can provide a AfterCall implementation to be executed.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic     the topic to which data need to produced.
      * @param payload   Payload which need to be produced.
@@ -117,7 +281,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic and partition in kafka.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic     the topic to which data need to produced.
      * @param partition Partition in kafka where payload need to be produced.
@@ -130,7 +295,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic and key for partitioning.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic   the topic to which data need to produced.
      * @param key     the key to be used for partitioning.
@@ -143,7 +309,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic in kafka and partition in kafka. Client can provide a AfterCall implementation to be executed.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic     the topic to which data need to produced.
      * @param partition Partition in kafka where payload need to be produced.
@@ -157,7 +324,8 @@ public final class Producer {
 
     /**
      * Method to produce a payload object to provided topic in kafka and key for partitioning. Client can provide a AfterCall implementation to be executed.
-     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
      *
      * @param topic     the topic to which data need to produced.
      * @param key       the key to be used for partitioning.
@@ -169,6 +337,241 @@ public final class Producer {
         return produce(topic, null, key, payload, afterCall);
     }
 
+    /**
+     * Method to produce a list of payload objects to provided topic in kafka.
+     * All payloads are handed over to the underlying kafka producer first and only then the acknowledgements are awaited,
+     * so records of a batch can be grouped by kafka (<i>linger.ms</i>, <i>batch.size</i>) instead of being sent one at a time.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
+     *
+     * @param topic    the topic to which data need to produced.
+     * @param payloads List of Payloads which need to be produced.
+     * @return List of Response in the same order as payloads, containing offset, partition info if produce was successful else list of error strings.
+     */
+    public List<Response> produceBatch(String topic, List<Payload> payloads) {
+        return produceBatch(topic, payloads, null);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic in kafka. Client can provide a AfterCall implementation to be executed for each payload.
+     * All payloads are handed over to the underlying kafka producer first and only then the acknowledgements are awaited.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
+     *
+     * @param topic     the topic to which data need to produced.
+     * @param payloads  List of Payloads which need to be produced.
+     * @param afterCall AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @return List of Response in the same order as payloads, containing offset, partition info if produce was successful else list of error strings.
+     */
+    public List<Response> produceBatch(String topic, List<Payload> payloads, AfterCall afterCall) {
+        return produceBatch(topic, payloads, afterCall, DeliveryMode.LEADER_ACK, ackTimeout);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic in kafka with the given delivery mode.
+     * With {@link DeliveryMode#FIRE_AND_FORGET} the call returns as soon as all payloads are handed over to the kafka producer,
+     * only validation errors are reported and later send failures are logged. Otherwise all acknowledgements are awaited
+     * until the deadline of ackTimeout milliseconds from the start of the call. The <i>acks</i> level itself is a property of
+     * the underlying kafka producer, see {@link DeliveryMode#getAcks()}.
+     *
+     * @param topic        the topic to which data need to produced.
+     * @param payloads     List of Payloads which need to be produced.
+     * @param afterCall    AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param deliveryMode DeliveryMode of the call.
+     * @param ackTimeout   time in milliseconds to wait for all acknowledgements.
+     * @return List of Response in the same order as payloads, containing offset, partition info if produce was successful else list of error strings.
+     */
+    public List<Response> produceBatch(final String topic, List<Payload> payloads, AfterCall afterCall, DeliveryMode deliveryMode, long ackTimeout) {
+        return produceBatch(topic, payloads, afterCall, deliveryMode, ackTimeout, null);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic in kafka with the given delivery mode, see
+     * {@link #produceBatch(String, List, AfterCall, DeliveryMode, long)}. The BatchCallback is invoked once kafka
+     * acknowledged or failed every payload, which can be after this method returned, e.g. to release resources held
+     * for the payloads in flight.
+     *
+     * @param topic         the topic to which data need to produced.
+     * @param payloads      List of Payloads which need to be produced.
+     * @param afterCall     AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param deliveryMode  DeliveryMode of the call.
+     * @param ackTimeout    time in milliseconds to wait for all acknowledgements.
+     * @param batchCallback BatchCallback to be invoked once all payloads are complete, can be null.
+     * @return List of Response in the same order as payloads, containing offset, partition info if produce was successful else list of error strings.
+     */
+    public List<Response> produceBatch(final String topic, List<Payload> payloads, AfterCall afterCall, DeliveryMode deliveryMode, long ackTimeout,
+                                       final BatchCallback batchCallback) {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeout);
+        final boolean fireAndForget = deliveryMode == DeliveryMode.FIRE_AND_FORGET;
+        final List<Response> responses = new ArrayList<>(payloads.size());
+        final AtomicInteger pending = batchCallback != null ? new AtomicInteger(payloads.size() + 1) : null;
+        final Callback onAck = fireAndForget || batchCallback != null ? new Callback() {
+            @Override
+            public void onCompletion(RecordMetadata metadata, Exception exception) {
+                if (fireAndForget && exception != null)
+                    logger.error("Error while producing record to kafka for topic: {}", topic, exception);
+                if (pending != null && pending.decrementAndGet() == 0)
+                    batchCallback.completed(topic, responses);
+            }
+        } : null;
+        final List<Future<RecordMetadata>> futures = new ArrayList<>(payloads.size());
+        for (Payload payload : payloads) {
+            final Response response = new Response();
+            responses.add(response);
+            final Future<RecordMetadata> future = send(topic, null, null, payload, afterCall, response, onAck);
+            futures.add(future);
+            if (future == null && pending != null)
+                pending.decrementAndGet();
+        }
+        // the extra count keeps the callback from firing before every payload has been handed over
+        if (pending != null && pending.decrementAndGet() == 0)
+            batchCallback.completed(topic, responses);
+        if (fireAndForget)
+            return responses;
+        for (int i = 0; i < futures.size(); i++) {
+            final Future<RecordMetadata> future = futures.get(i);
+            if (future != null)
+                await(topic, payloads.get(i), future, responses.get(i), deadline);
+        }
+        return responses;
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic in kafka without blocking the calling thread.
+     * The BatchCallback is invoked once every payload is acknowledged by kafka or has failed, with responses in the same order as payloads.
+     * If topic doesn't exist in system, it will be created if <i>auto.create.topics.enable</i> is true for kafka broker,
+     * unless <i>producer.metadata.reject-unknown-topics</i> is set, then topics missing from the metadata listing are rejected.
+     *
+     * @param topic         the topic to which data need to produced.
+     * @param payloads      List of Payloads which need to be produced.
+     * @param afterCall     AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param batchCallback BatchCallback to be invoked once all payloads are complete.
+     */
+    public void produceBatchAsync(final String topic, List<Payload> payloads, AfterCall afterCall, final BatchCallback batchCallback) {
+        produceBatchAsync(topic, null, payloads, afterCall, batchCallback);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic and partition in kafka without blocking the calling thread.
+     * The BatchCallback is invoked once every payload is acknowledged by kafka or has failed, with responses in the same order as payloads.
+     *
+     * @param topic         the topic to which data need to produced.
+     * @param partition     Partition in kafka where payloads need to be produced, null to let kafka choose one per payload.
+     * @param payloads      List of Payloads which need to be produced.
+     * @param afterCall     AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param batchCallback BatchCallback to be invoked once all payloads are complete.
+     */
+    public void produceBatchAsync(final String topic, Integer partition, List<Payload> payloads, AfterCall afterCall, final BatchCallback batchCallback) {
+        final List<Response> responses = new ArrayList<>(payloads.size());
+        final AtomicInteger pending = new AtomicInteger(payloads.size() + 1);
+        for (Payload payload : payloads) {
+            final Response response = new Response();
+            responses.add(response);
+            final Future<RecordMetadata> future = send(topic, partition, null, payload, afterCall, response, new Callback() {
+                @Override
+                public void onCompletion(RecordMetadata metadata, Exception exception) {
+                    if (exception != null) {
+                        response.addError(exception.getLocalizedMessage());
+                    } else if (metadata != null) {
+                        response.setOffset(metadata.offset());
+                        response.setPartition(metadata.partition());
+                    }
+                    if (pending.decrementAndGet() == 0)
+                        batchCallback.completed(topic, responses);
+                }
+            });
+            if (future == null)
+                pending.decrementAndGet();
+        }
+        // the extra count keeps the callback from firing before every payload has been handed over
+        if (pending.decrementAndGet() == 0)
+            batchCallback.completed(topic, responses);
+    }
+
+    /**
+     * Method to produce payloads read from a PayloadReader to provided topic in kafka, without admission.
+     *
+     * @param topic      the topic to which data need to produced.
+     * @param reader     PayloadReader supplying the payloads.
+     * @param afterCall  AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param ackTimeout time in milliseconds to wait for outstanding acknowledgements after the last payload was read.
+     * @return StreamResult with received, produced and failed counters and the first errors.
+     */
+    public StreamResult produceStream(final String topic, PayloadReader reader, AfterCall afterCall, long ackTimeout) {
+        return produceStream(topic, reader, afterCall, ackTimeout, null);
+    }
+
+    /**
+     * Method to produce payloads read from a PayloadReader to provided topic in kafka. Payloads are read in chunks of
+     * {@link #STREAM_CHUNK}, every chunk is admitted by streamAdmission and handed over to the kafka producer before the
+     * next one is read, and only counters are kept, so memory stays bounded regardless of the number of payloads.
+     * The payloads in flight are bounded by what streamAdmission admits, e.g. an in-flight budget released once kafka
+     * answered a chunk, and otherwise only by <i>buffer.memory</i> of the kafka producer. Reading stops at the first chunk which is not admitted, received then counts the payloads admitted before it.
+     * Once the input is exhausted the outstanding acknowledgements are awaited for at most ackTimeout milliseconds.
+     *
+     * @param topic           the topic to which data need to produced.
+     * @param reader          PayloadReader supplying the payloads.
+     * @param afterCall       AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param ackTimeout      time in milliseconds to wait for outstanding acknowledgements after the last payload was read.
+     * @param streamAdmission StreamAdmission admitting every chunk, can be null.
+     * @return StreamResult with received, produced and failed counters and the first errors.
+     */
+    public StreamResult produceStream(final String topic, PayloadReader reader, AfterCall afterCall, long ackTimeout,
+                                      StreamAdmission streamAdmission) {
+        final StreamProgress progress = new StreamProgress();
+        long received = 0;
+        IOException malformed = null;
+        while (malformed == null) {
+            final List<Payload> chunk = new ArrayList<>();
+            try {
+                while (chunk.size() < STREAM_CHUNK && reader.hasNext()) {
+                    chunk.add(reader.next());
+                }
+            } catch (IOException e) {
+                malformed = e;
+            }
+            if (chunk.isEmpty())
+                break;
+            final Runnable admitted = streamAdmission != null ? streamAdmission.admit(topic, chunk) : null;
+            if (streamAdmission != null && admitted == null)
+                break;
+            final StreamChunk onAck = new StreamChunk(progress, chunk.size(), admitted);
+            int handed = 0;
+            try {
+                for (Payload payload : chunk) {
+                    final Response response = new Response();
+                    received++;
+                    progress.pending.incrementAndGet();
+                    if (send(topic, null, null, payload, afterCall, response, onAck) == null) {
+                        progress.pending.decrementAndGet();
+                        if (Boolean.TRUE.equals(response.getSpilled())) {
+                            progress.spilled.incrementAndGet();
+                        } else if (Boolean.TRUE.equals(response.getDuplicate())) {
+                            progress.duplicates.incrementAndGet();
+                        } else {
+                            progress.failed.incrementAndGet();
+                            progress.result.addError("Payload " + (received - 1) + ": " + response.getErrors().get(0));
+                        }
+                        onAck.countDown();
+                    }
+                    handed++;
+                }
+            } finally {
+                // payloads never handed over when send threw, so the admission of the chunk is still released
+                while (handed++ < chunk.size()) {
+                    onAck.countDown();
+                }
+            }
+            if (chunk.size() < STREAM_CHUNK)
+                break;
+        }
+        if (malformed != null) {
+            logger.error("Error while reading payloads for topic: " + topic, malformed);
+            progress.result.addError("Malformed payload stream after " + received + " payloads: " + malformed.getLocalizedMessage());
+        }
+        return progress.await(received, ackTimeout);
+    }
+
     /**
      * private method to support other produce methods.
      *
@@ -181,37 +584,195 @@ public final class Producer {
      */
     private Response produce(final String topic, Integer partition, String key, final Payload payload, final AfterCall afterCall) {
         final Response response = new Response();
+        final Future<RecordMetadata> future = send(topic, partition, key, payload, afterCall, response, null);
+        if (future != null)
+            await(topic, payload, future, response, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeout));
+        return response;
+    }
+
+    /**
+     * Validate and hand over a payload to the kafka producer without waiting for the acknowledgement.
+     *
+     * @param topic     the topic to which data need to produced.
+     * @param partition Partition in kafka where payload need to be produced.
+     * @param key       the key to be used for partitioning.
+     * @param payload   Payload which need to be produced.
+     * @param afterCall AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param response  Response to which errors are added if payload could not be sent.
+     * @param onAck     Callback invoked once kafka acknowledged or failed the record, can be null.
+     * @return Future of the record metadata, null if payload could not be sent.
+     */
+    private Future<RecordMetadata> send(final String topic, final Integer partition, final String key, final Payload payload, final AfterCall afterCall,
+                                        final Response response, final Callback onAck) {
+        ProducerMeters.TopicMeters topicMeters = null;
+        final SpillQueue spill = spillQueue;
+        final SpillReplayer replayer = spill != null ? spillReplayer : null;
+        final DedupCache dedup = dedupCache;
         try {
             if (topic == null || topic.length() == 0)
-                throw new InvalidPayloadException("Topic cannot be null or empty");
-            validateInput(payload);
-            final Future<RecordMetadata> future = kafkaProducer.send(new ProducerRecord<>(topic, partition, key, OBJECT_MAPPER.writeValueAsString(payload)), new Callback() {
-                @Override
-                public void onCompletion(RecordMetadata metadata, Exception exception) {
-                    if (afterCall != null)
-                        afterCall.after(topic, metadata.partition(), metadata.offset(), exception, payload, producerProperties);
+                return rejectInvalid(topic, NO_TOPIC, response, null);
+            final TopicMetadataCache metadata = topicMetadataCache;
+            final String invalidTopic = metadata != null ? metadata.invalid(topic) : null;
+            if (invalidTopic != null)
+                return rejectInvalid(topic, invalidTopic, response, null);
+            // resolved once the topic passed validation, so arbitrary topic names do not register meters
+            topicMeters = producerMeters != null ? producerMeters.topic(topic) : null;
+            final ProducerMeters.TopicMeters meters = topicMeters;
+            final String invalid = invalid(payload);
+            if (invalid != null)
+                return rejectInvalid(topic, invalid, response, topicMeters);
+            final String uuid = dedup != null ? payload.getUuid() : null;
+            if (uuid != null && dedup.contains(topic, uuid)) {
+                response.setDuplicate(true);
+                return null;
+            }
+            final long started = System.nanoTime();
+            final byte[] value = payloadCodecs.encode(payload);
+            final long sent = System.nanoTime();
+            if (topicMeters != null)
+                topicMeters.serialized(sent - started, value.length);
+            // records queue up behind spilled ones until those are replayed
+            if (spill != null && (spill.isActive() || replayer.hasPending()) && spill(spill, topic, partition, key, value, response)) {
+                remember(dedup, topic, uuid);
+                return null;
+            }
+            final PayloadPartitioners partitioners = payloadPartitioners;
+            final PayloadPartitioner partitioner = partition == null && key == null && partitioners != null ? partitioners.partitioner(topic) : null;
+            final Integer target = partitioner != null ? partitioner.partition(topic, payload, value.length, partitionInfo(topic)) : partition;
+            final boolean partitioned = partitioner != null && target != null;
+            try {
+                return kafkaProducer.send(new ProducerRecord<>(topic, target, key, value), new Callback() {
+                    @Override
+                    public void onCompletion(RecordMetadata metadata, Exception exception) {
+                        if (partitioned)
+                            partitioner.completed(topic, target, value.length);
+                        if (meters != null) {
+                            if (exception != null)
+                                meters.error(exception);
+                            else
+                                meters.acknowledged(System.nanoTime() - sent);
+                        }
+                        if (afterCall != null) {
+                            final Integer partition = metadata != null ? metadata.partition() : null;
+                            final Long offset = metadata != null ? metadata.offset() : null;
+                            if (afterCallDispatcher != null)
+                                afterCallDispatcher.dispatch(afterCall, topic, partition, offset, exception, payload, producerProperties);
+                            else
+                                afterCall.after(topic, partition, offset, exception, payload, producerProperties);
+                        }
+                        if (exception != null && replayer != null && handoff(replayer, topic, partition, key, value, response))
+                            exception = null;
+                        if (exception == null)
+                            remember(dedup, topic, uuid);
+                        if (onAck != null)
+                            onAck.onCompletion(metadata, exception);
+                    }
+                });
+            } catch (KafkaException e) {
+                if (partitioned)
+                    partitioner.completed(topic, target, value.length);
+                if (spill != null && spill(spill, topic, partition, key, value, response)) {
+                    remember(dedup, topic, uuid);
+                    return null;
                 }
-            });
-            RecordMetadata recordMetadata = future.get(100, TimeUnit.MILLISECONDS);
-            response.setOffset(recordMetadata.offset());
-            response.setPartition(recordMetadata.partition());
+                throw e;
+            }
         } catch (IOException e) {
-            logger.error("Error while producing record to kafka for topic: " + topic + " with payload: " + payload, e);
+            logger.error("Error while producing record to kafka for topic: {} with payload: {}", topic, payload, e);
+            if (topicMeters != null)
+                topicMeters.error(e);
+            response.addError(e.getLocalizedMessage());
+        } catch (KafkaException e) {
+            logger.error("Error while producing record to kafka for topic: {} with payload: {}", topic, payload, e);
+            if (topicMeters != null)
+                topicMeters.error(e);
             response.addError(e.getLocalizedMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Reject a payload failing validation, or produced to an illegal or unknown topic. Invalid payloads are a client
+     * error answered in the response, so neither an exception nor a log message is built for them unless debug logging
+     * is on. Reasons are constants, the topic is only added to the debug log message.
+     *
+     * @return null, as send does for a payload which could not be sent
+     */
+    private Future<RecordMetadata> rejectInvalid(String topic, String reason, Response response, ProducerMeters.TopicMeters topicMeters) {
+        logger.debug("Invalid payload for topic: {}: {}", topic, reason);
+        if (topicMeters != null)
+            topicMeters.error(InvalidPayloadException.class);
+        response.addError(reason);
+        return null;
+    }
+
+    /**
+     * Remember the uuid of a payload once kafka acknowledged it or it was spilled, so a retry of it is not produced.
+     */
+    private static void remember(DedupCache dedup, String topic, String uuid) {
+        if (uuid != null)
+            dedup.add(topic, uuid);
+    }
+
+    /**
+     * Append an encoded record to the spill queue and mark the response as spilled.
+     *
+     * @return true if the record was spilled, false if the spill queue is full
+     */
+    private boolean spill(SpillQueue spill, String topic, Integer partition, String key, byte[] value, Response response) {
+        try {
+            if (spill.append(topic, partition, key, value)) {
+                response.setSpilled(true);
+                return true;
+            }
+            logger.error("Spill queue {} is full, record for topic: {} is not spilled", spill.getDirectory(), topic);
+        } catch (IOException e) {
+            logger.error("Error while spilling record for topic: {}", topic, e);
+        }
+        return false;
+    }
+
+    /**
+     * Hand a record kafka failed to the replay thread to be spilled, without touching the disk on the kafka I/O thread,
+     * and mark the response as spilled.
+     *
+     * @return true if the record was handed off, false if too many records wait to be spilled
+     */
+    private boolean handoff(SpillReplayer replayer, String topic, Integer partition, String key, byte[] value, Response response) {
+        if (replayer.handoff(topic, partition, key, value)) {
+            response.setSpilled(true);
+            return true;
+        }
+        logger.error("Spill queue {} is behind, record for topic: {} is not spilled", spillQueue.getDirectory(), topic);
+        return false;
+    }
+
+    /**
+     * Wait for the acknowledgement of a sent payload and fill the response with offset and partition.
+     *
+     * @param topic    the topic to which data was produced.
+     * @param payload  Payload which was produced.
+     * @param future   Future of the record metadata returned by send.
+     * @param response Response to fill with offset, partition or errors.
+     * @param deadline System.nanoTime() value after which waiting is given up.
+     */
+    private void await(String topic, Payload payload, Future<RecordMetadata> future, Response response, long deadline) {
+        try {
+            RecordMetadata recordMetadata = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            response.setOffset(recordMetadata.offset());
+            response.setPartition(recordMetadata.partition());
         } catch (InterruptedException e) {
-            logger.error("Error while producing record to kafka for topic: " + topic + " with payload: " + payload, e);
+            logger.error("Error while producing record to kafka for topic: {} with payload: {}", topic, payload, e);
             response.addError(e.getLocalizedMessage());
         } catch (ExecutionException e) {
-            logger.error("Error while producing record to kafka for topic: " + topic + " with payload: " + payload, e);
+            if (Boolean.TRUE.equals(response.getSpilled()))
+                return;
+            logger.error("Error while producing record to kafka for topic: {} with payload: {}", topic, payload, e);
             response.addError(e.getLocalizedMessage());
         } catch (TimeoutException e) {
-            logger.error("Error while producing record to kafka for topic: " + topic + " with payload: " + payload, e);
-            response.addError(e.getLocalizedMessage());
-        } catch (InvalidPayloadException e) {
-            logger.error("Error while producing record to kafka for topic: " + topic + " with payload: " + payload, e);
+            logger.error("Error while producing record to kafka for topic: {} with payload: {}", topic, payload, e);
             response.addError(e.getLocalizedMessage());
         }
-        return response;
     }
 
     /**
@@ -220,31 +781,45 @@ public final class Producer {
      * @param payload
      * @throws InvalidPayloadException
      */
-    private void validateInput(Payload payload) throws InvalidPayloadException {
-        String exception = null;
-        if (payload == null)
-            exception = "Payload cannot be null";
-        else if (payload.getData() == null)
-            exception = "Payload data cannot be null, please provide valid data";
-        else if (payload.getClient() == null || payload.getClient().length() == 0)
-            exception = "Client value cannot be null or empty";
-        else if (payload.getIpAddress() == null || payload.getIpAddress().length() == 0)
-            exception = "Provide a valid IP Address";
-
+    void validateInput(Payload payload) throws InvalidPayloadException {
+        final String exception = invalid(payload);
         if (exception != null)
             throw new InvalidPayloadException(exception);
     }
 
+    /**
+     * Check the Payload for expected elements without throwing.
+     *
+     * @param payload
+     * @return reason the payload is invalid, null if valid
+     */
+    static String invalid(Payload payload) {
+        if (payload == null)
+            return "Payload cannot be null";
+        if (payload.getData() == null)
+            return "Payload data cannot be null, please provide valid data";
+        if (payload.getClient() == null || payload.getClient().length() == 0)
+            return "Client value cannot be null or empty";
+        if (payload.getIpAddress() == null || payload.getIpAddress().length() == 0)
+            return "Provide a valid IP Address";
+        return null;
+    }
+
 
     /**
-     * Method to fetch PartitionInfo list for a given topic.
+     * Method to fetch PartitionInfo list for a given topic. With a TopicMetadataCache holding fresh metadata the list
+     * comes from the cache, empty for a topic which does not exist, otherwise from the kafka producer, which can block
+     * for the metadata of a topic it has not seen yet.
      *
      * @param topic
      * @return List of PartitionInfo
      * @throws IOException
      */
     public List<PartitionInfo> partitionInfo(String topic) throws IOException {
-        List<PartitionInfo> partitionInfoList = null;
+        final TopicMetadataCache metadata = topicMetadataCache;
+        List<PartitionInfo> partitionInfoList = metadata != null ? metadata.partitions(topic) : null;
+        if (partitionInfoList != null)
+            return partitionInfoList;
         if (kafkaProducer != null)
             partitionInfoList = kafkaProducer.partitionsFor(topic);
         else
@@ -259,9 +834,19 @@ public final class Producer {
      * @throws IOException
      */
     public String metrics() throws IOException {
-        String metrics = null;
+        return OBJECT_MAPPER.writeValueAsString(kafkaMetrics());
+    }
+
+    /**
+     * Method to return KafkaProducer metrics.
+     *
+     * @return map of all metrics.
+     * @throws IOException
+     */
+    public Map<MetricName, ? extends Metric> kafkaMetrics() throws IOException {
+        Map<MetricName, ? extends Metric> metrics = null;
         if (kafkaProducer != null)
-            metrics = OBJECT_MAPPER.writeValueAsString(kafkaProducer.metrics());
+            metrics = kafkaProducer.metrics();
         else
             throwIOException("Kafka Producer is not initialized or is closed. Please initialize the producer before invoking this method");
         return metrics;
@@ -276,4 +861,88 @@ public final class Producer {
     private void throwIOException(String exception) throws IOException {
         throw new IOException(exception);
     }
+
+    /**
+     * Counters of a streamed produce call, updated from the kafka producer I/O thread until the call returned.
+     */
+    private static final class StreamProgress {
+        private final StreamResult result = new StreamResult();
+        private final AtomicLong produced = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong spilled = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private void completed(RecordMetadata metadata, Exception exception) {
+            // a late acknowledgement is already counted as failed (unacknowledged)
+            if (returned.get())
+                return;
+            if (exception != null) {
+                failed.incrementAndGet();
+                result.addError(exception.getLocalizedMessage());
+            } else if (metadata != null) {
+                produced.incrementAndGet();
+            } else {
+                spilled.incrementAndGet();
+            }
+            if (pending.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private StreamResult await(long received, long ackTimeout) {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ackTimeout);
+            synchronized (this) {
+                long remaining;
+                while (pending.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+            returned.set(true);
+            final long unacknowledged = pending.get();
+            if (unacknowledged > 0)
+                result.addError("Timed out waiting for " + unacknowledged + " acknowledgements");
+            result.setReceived(received);
+            result.setProduced(produced.get());
+            result.setSpilled(spilled.get());
+            result.setDuplicates(duplicates.get());
+            result.setFailed(failed.get() + unacknowledged);
+            return result;
+        }
+    }
+
+    /**
+     * Callback of the records of one admitted chunk, running the admission callback once every record completed,
+     * also after the streamed produce call returned.
+     */
+    private static final class StreamChunk implements Callback {
+        private final StreamProgress progress;
+        private final AtomicInteger remaining;
+        private final Runnable admitted;
+
+        private StreamChunk(StreamProgress progress, int records, Runnable admitted) {
+            this.progress = progress;
+            this.remaining = new AtomicInteger(records);
+            this.admitted = admitted;
+        }
+
+        @Override
+        public void onCompletion(RecordMetadata metadata, Exception exception) {
+            progress.completed(metadata, exception);
+            countDown();
+        }
+
+        private void countDown() {
+            if (remaining.decrementAndGet() == 0 && admitted != null)
+                admitted.run();
+        }
+    }
 }
@@ -0,0 +1,252 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.codec.PayloadCodecs;
+import com.barley.orleans.metrics.meters.ProducerMeters;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.spill.SpillQueue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pool of Producer shards, each owning its own kafka producer with its own sender thread and buffer.
+ * <p>
+ * Keyed calls are routed by the hash of the key so all payloads of a key go through the same shard and keep their order,
+ * keyless calls are spread round-robin over the shards.
+ * </p>
+ */
+public final class ProducerPool {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Producer[] shards;
+    private final AtomicLongArray selections;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    /**
+     * ProducerPool constructor with the default acknowledgement deadline.
+     *
+     * @param properties Properties needed for every Producer
+     * @param size       number of shards
+     * @param isMock     are the producers mock ones (Only for testing purposes, should be always false in production environment)
+     */
+    public ProducerPool(Properties properties, int size, boolean isMock) {
+        this(properties, size, isMock, Producer.DEFAULT_ACK_TIMEOUT);
+    }
+
+    /**
+     * ProducerPool constructor. Every shard gets its own <i>client.id</i> so their kafka metrics can be told apart.
+     *
+     * @param properties Properties needed for every Producer
+     * @param size       number of shards
+     * @param isMock     are the producers mock ones (Only for testing purposes, should be always false in production environment)
+     * @param ackTimeout default time in milliseconds to wait for kafka acknowledgements.
+     */
+    public ProducerPool(Properties properties, int size, boolean isMock, long ackTimeout) {
+        if (size < 1)
+            throw new IllegalArgumentException("Producer pool size must be at least 1, was " + size);
+        this.shards = new Producer[size];
+        this.selections = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Producer(shardProperties(properties, i), isMock, ackTimeout);
+        }
+    }
+
+    private static Properties shardProperties(Properties properties, int shard) {
+        if (properties == null)
+            return null;
+        final Properties shardProperties = new Properties();
+        shardProperties.putAll(properties);
+        final String clientId = properties.getProperty(ProducerConfig.CLIENT_ID_CONFIG, "orleans-producer");
+        shardProperties.put(ProducerConfig.CLIENT_ID_CONFIG, clientId + "-" + shard);
+        return shardProperties;
+    }
+
+    /**
+     * Shard for a call. With a key the shard is chosen by the key hash, without one round-robin.
+     *
+     * @param key the key used for partitioning, can be null.
+     * @return Producer shard
+     */
+    public Producer shard(String key) {
+        final int index = key != null ? (key.hashCode() & Integer.MAX_VALUE) % shards.length
+                : (roundRobin.getAndIncrement() & Integer.MAX_VALUE) % shards.length;
+        selections.incrementAndGet(index);
+        return shards[index];
+    }
+
+    /**
+     * Shard for a keyless call, chosen round-robin.
+     *
+     * @return Producer shard
+     */
+    public Producer shard() {
+        return shard(null);
+    }
+
+    /**
+     * Sets the codecs used by every shard to encode payloads.
+     *
+     * @param payloadCodecs PayloadCodecs selecting a codec by payload schemaId
+     */
+    public void setPayloadCodecs(PayloadCodecs payloadCodecs) {
+        for (Producer shard : shards) {
+            shard.setPayloadCodecs(payloadCodecs);
+        }
+    }
+
+    /**
+     * Sets the dispatcher running AfterCalls of every shard off the kafka producer I/O threads.
+     *
+     * @param afterCallDispatcher AfterCallDispatcher, can be null.
+     */
+    public void setAfterCallDispatcher(AfterCallDispatcher afterCallDispatcher) {
+        for (Producer shard : shards) {
+            shard.setAfterCallDispatcher(afterCallDispatcher);
+        }
+    }
+
+    /**
+     * Sets the per topic instruments recorded by every shard.
+     *
+     * @param producerMeters ProducerMeters, can be null.
+     */
+    public void setProducerMeters(ProducerMeters producerMeters) {
+        for (Producer shard : shards) {
+            shard.setProducerMeters(producerMeters);
+        }
+    }
+
+    /**
+     * Sets the cache of recently produced payload uuids shared by every shard, so a retry is detected whichever shard it reaches.
+     *
+     * @param dedupCache DedupCache, can be null.
+     */
+    public void setDedupCache(DedupCache dedupCache) {
+        for (Producer shard : shards) {
+            shard.setDedupCache(dedupCache);
+        }
+    }
+
+    /**
+     * Sets the cache of topic metadata used by every shard.
+     *
+     * @param topicMetadataCache TopicMetadataCache, can be null.
+     */
+    public void setTopicMetadataCache(TopicMetadataCache topicMetadataCache) {
+        for (Producer shard : shards) {
+            shard.setTopicMetadataCache(topicMetadataCache);
+        }
+    }
+
+    /**
+     * Sets the partitioners used by every shard.
+     *
+     * @param payloadPartitioners PayloadPartitioners, can be null.
+     */
+    public void setPayloadPartitioners(PayloadPartitioners payloadPartitioners) {
+        for (Producer shard : shards) {
+            shard.setPayloadPartitioners(payloadPartitioners);
+        }
+    }
+
+    /**
+     * Producers of this pool in shard order.
+     *
+     * @return unmodifiable list of shards
+     */
+    public List<Producer> shards() {
+        return Collections.unmodifiableList(Arrays.asList(shards));
+    }
+
+    /**
+     * Number of shards.
+     *
+     * @return int
+     */
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * Number of times each shard was handed out.
+     *
+     * @return selections per shard index
+     */
+    public long[] selections() {
+        final long[] counts = new long[shards.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = selections.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * method to flush the messages in every shard's queue.
+     */
+    public void flush() {
+        for (Producer shard : shards) {
+            shard.flush();
+        }
+    }
+
+    /**
+     * Closing every shard.
+     */
+    public void close() {
+        for (Producer shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * Method to return per shard selections and KafkaProducer metrics.
+     *
+     * @return JSON representation of all shard metrics.
+     * @throws IOException
+     */
+    public String metrics() throws IOException {
+        return OBJECT_MAPPER.writeValueAsString(metricValues());
+    }
+
+    /**
+     * Method to return per shard selections and KafkaProducer metric values.
+     *
+     * @return map of shard name to its selections and metric values.
+     * @throws IOException
+     */
+    public Map<String, Object> metricValues() throws IOException {
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < shards.length; i++) {
+            final Map<String, Object> shardMetrics = new LinkedHashMap<>();
+            shardMetrics.put("selections", selections.get(i));
+            final Map<String, Double> values = new TreeMap<>();
+            for (Map.Entry<MetricName, ? extends Metric> metric : shards[i].kafkaMetrics().entrySet()) {
+                values.put(metric.getKey().group() + ":" + metric.getKey().name() + metric.getKey().tags(), metric.getValue().value());
+            }
+            shardMetrics.put("metrics", values);
+            final SpillQueue spillQueue = shards[i].getSpillQueue();
+            if (spillQueue != null) {
+                final Map<String, Object> spill = new LinkedHashMap<>();
+                spill.put("active", spillQueue.isActive());
+                spill.put("records", spillQueue.records());
+                spill.put("bytes", spillQueue.bytes());
+                shardMetrics.put("spill", spill);
+            }
+            metrics.put("shard-" + i, shardMetrics);
+        }
+        return metrics;
+    }
+}
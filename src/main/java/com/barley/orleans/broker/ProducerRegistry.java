@@ -0,0 +1,284 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.codec.PayloadCodecs;
+import com.barley.orleans.metrics.meters.ProducerMeters;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.spill.SpillQueue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of ProducerPools, one per producer profile and acknowledgement level, created on first use.
+ * <p>
+ * A topic is served by the pool of the profile its name matches, see {@link ProducerProperties#profile(String)},
+ * so bulk and interactive topics do not share kafka producer tuning, buffers or sender threads.
+ * </p>
+ */
+public final class ProducerRegistry {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String ALL_REPLICAS_SUFFIX = "-all";
+
+    private final ProducerProperties producerProperties;
+    private final boolean isMock;
+    private final ConcurrentMap<String, ProducerPool> pools = new ConcurrentHashMap<>();
+    private volatile PayloadCodecs payloadCodecs = PayloadCodecs.json();
+    private volatile AfterCallDispatcher afterCallDispatcher = null;
+    private volatile ProducerMeters producerMeters = null;
+    private volatile DedupCache dedupCache = null;
+    private volatile TopicMetadataCache topicMetadataCache = null;
+    private volatile PayloadPartitioners payloadPartitioners = null;
+
+    /**
+     * ProducerRegistry constructor.
+     *
+     * @param producerProperties ProducerProperties with the profiles
+     * @param isMock             are the producers mock ones (Only for testing purposes, should be always false in production environment)
+     */
+    public ProducerRegistry(ProducerProperties producerProperties, boolean isMock) {
+        this.producerProperties = producerProperties;
+        this.isMock = isMock;
+    }
+
+    /**
+     * Pool serving a topic with a delivery mode.
+     *
+     * @param topic        topic name
+     * @param deliveryMode DeliveryMode of the call
+     * @return ProducerPool
+     */
+    public ProducerPool pool(String topic, DeliveryMode deliveryMode) {
+        final String profile = producerProperties.profile(topic);
+        final String name = deliveryMode == DeliveryMode.ALL_REPLICAS ? profile + ALL_REPLICAS_SUFFIX : profile;
+        ProducerPool pool = pools.get(name);
+        if (pool == null) {
+            synchronized (pools) {
+                pool = pools.get(name);
+                if (pool == null) {
+                    final Properties properties = producerProperties.properties(profile, deliveryMode);
+                    if (!properties.containsKey(ProducerConfig.CLIENT_ID_CONFIG))
+                        properties.put(ProducerConfig.CLIENT_ID_CONFIG, "orleans-" + name);
+                    pool = new ProducerPool(properties, producerProperties.poolSize(profile), isMock, producerProperties.getAckTimeout());
+                    pool.setPayloadCodecs(payloadCodecs);
+                    pool.setAfterCallDispatcher(afterCallDispatcher);
+                    pool.setProducerMeters(producerMeters);
+                    pool.setDedupCache(dedupCache);
+                    pool.setTopicMetadataCache(topicMetadataCache);
+                    pool.setPayloadPartitioners(payloadPartitioners);
+                    if (producerProperties.isSpillEnabled())
+                        enableSpill(name, pool);
+                    pools.put(name, pool);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private void enableSpill(String name, ProducerPool pool) {
+        final List<Producer> shards = pool.shards();
+        for (int i = 0; i < shards.size(); i++) {
+            try {
+                shards.get(i).setSpillQueue(spillQueue(name + "-" + i), producerProperties.getSpillReplayInterval());
+            } catch (IOException e) {
+                pool.close();
+                throw new IllegalStateException("Cannot open spill queue of producer pool " + name, e);
+            }
+        }
+    }
+
+    /**
+     * SpillQueue in a sub directory of <i>producer.spill.directory</i>, sized and synced by the <i>producer.spill</i> settings.
+     *
+     * @param name name of the sub directory, one per kafka producer
+     * @return SpillQueue, owned by the caller
+     * @throws IOException if the directory or the segments in it cannot be read
+     */
+    private SpillQueue spillQueue(String name) throws IOException {
+        return new SpillQueue(new File(producerProperties.getSpillDirectory(), name), producerProperties.getSpillSegmentBytes(),
+                producerProperties.getSpillMaxBytes(), producerProperties.getSpillSync(), producerProperties.getSpillSyncInterval());
+    }
+
+    /**
+     * Producer shard for a keyless call to a topic.
+     *
+     * @param topic        topic name
+     * @param deliveryMode DeliveryMode of the call
+     * @return Producer
+     */
+    public Producer producer(String topic, DeliveryMode deliveryMode) {
+        return pool(topic, deliveryMode).shard();
+    }
+
+    /**
+     * Sets the codecs used by all current and future pools.
+     *
+     * @param payloadCodecs PayloadCodecs selecting a codec by payload schemaId
+     */
+    public void setPayloadCodecs(PayloadCodecs payloadCodecs) {
+        synchronized (pools) {
+            this.payloadCodecs = payloadCodecs;
+            for (ProducerPool pool : pools.values()) {
+                pool.setPayloadCodecs(payloadCodecs);
+            }
+        }
+    }
+
+    /**
+     * Sets the dispatcher running AfterCalls of all current and future pools. The registry does not close it.
+     *
+     * @param afterCallDispatcher AfterCallDispatcher, can be null.
+     */
+    public void setAfterCallDispatcher(AfterCallDispatcher afterCallDispatcher) {
+        synchronized (pools) {
+            this.afterCallDispatcher = afterCallDispatcher;
+            for (ProducerPool pool : pools.values()) {
+                pool.setAfterCallDispatcher(afterCallDispatcher);
+            }
+        }
+    }
+
+    /**
+     * Sets the per topic instruments recorded by all current and future pools.
+     *
+     * @param producerMeters ProducerMeters, can be null.
+     */
+    public void setProducerMeters(ProducerMeters producerMeters) {
+        synchronized (pools) {
+            this.producerMeters = producerMeters;
+            for (ProducerPool pool : pools.values()) {
+                pool.setProducerMeters(producerMeters);
+            }
+        }
+    }
+
+    /**
+     * Sets the cache of recently produced payload uuids shared by all current and future pools, so retries are detected
+     * across pools and shards.
+     *
+     * @param dedupCache DedupCache, can be null.
+     */
+    public void setDedupCache(DedupCache dedupCache) {
+        synchronized (pools) {
+            this.dedupCache = dedupCache;
+            for (ProducerPool pool : pools.values()) {
+                pool.setDedupCache(dedupCache);
+            }
+        }
+    }
+
+    /**
+     * Cache of topic metadata used by the pools.
+     *
+     * @return TopicMetadataCache, null if none is set
+     */
+    public TopicMetadataCache getTopicMetadataCache() {
+        return topicMetadataCache;
+    }
+
+    /**
+     * Sets the cache of topic metadata used by all current and future pools. The registry does not close it.
+     *
+     * @param topicMetadataCache TopicMetadataCache, can be null.
+     */
+    public void setTopicMetadataCache(TopicMetadataCache topicMetadataCache) {
+        synchronized (pools) {
+            this.topicMetadataCache = topicMetadataCache;
+            for (ProducerPool pool : pools.values()) {
+                pool.setTopicMetadataCache(topicMetadataCache);
+            }
+        }
+    }
+
+    /**
+     * Partitioners used by the pools.
+     *
+     * @return PayloadPartitioners, null if none are set
+     */
+    public PayloadPartitioners getPayloadPartitioners() {
+        return payloadPartitioners;
+    }
+
+    /**
+     * Sets the partitioners used by all current and future pools, shared so load is tracked across pools and shards.
+     *
+     * @param payloadPartitioners PayloadPartitioners, can be null.
+     */
+    public void setPayloadPartitioners(PayloadPartitioners payloadPartitioners) {
+        synchronized (pools) {
+            this.payloadPartitioners = payloadPartitioners;
+            for (ProducerPool pool : pools.values()) {
+                pool.setPayloadPartitioners(payloadPartitioners);
+            }
+        }
+    }
+
+    /**
+     * Pools created so far by name.
+     *
+     * @return unmodifiable map of pool name to pool
+     */
+    public Map<String, ProducerPool> pools() {
+        return Collections.unmodifiableMap(pools);
+    }
+
+    /**
+     * Closing every pool.
+     */
+    public void close() {
+        synchronized (pools) {
+            for (ProducerPool pool : pools.values()) {
+                pool.close();
+            }
+            pools.clear();
+        }
+    }
+
+    /**
+     * Method to return metrics of every pool.
+     *
+     * @return JSON representation of all pool metrics.
+     * @throws IOException
+     */
+    public String metrics() throws IOException {
+        final Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, ProducerPool> pool : pools.entrySet()) {
+            metrics.put(pool.getKey(), pool.getValue().metricValues());
+        }
+        final AfterCallDispatcher dispatcher = afterCallDispatcher;
+        if (dispatcher != null) {
+            final Map<String, Object> dispatcherMetrics = new LinkedHashMap<>();
+            dispatcherMetrics.put("queue-depth", dispatcher.queueDepth());
+            dispatcherMetrics.put("dispatched", dispatcher.dispatched());
+            dispatcherMetrics.put("dropped", dispatcher.dropped());
+            dispatcherMetrics.put("caller-runs", dispatcher.callerRuns());
+            metrics.put("after-call", dispatcherMetrics);
+        }
+        final DedupCache dedup = dedupCache;
+        if (dedup != null) {
+            final Map<String, Object> dedupMetrics = new LinkedHashMap<>();
+            dedupMetrics.put("size", dedup.size());
+            dedupMetrics.put("duplicates", dedup.duplicates());
+            metrics.put("dedup", dedupMetrics);
+        }
+        final TopicMetadataCache metadata = topicMetadataCache;
+        if (metadata != null) {
+            final Map<String, Object> metadataMetrics = new LinkedHashMap<>();
+            metadataMetrics.put("age-ms", metadata.age());
+            metadataMetrics.put("refreshes", metadata.refreshes());
+            metadataMetrics.put("failures", metadata.failures());
+            metrics.put("metadata", metadataMetrics);
+        }
+        return OBJECT_MAPPER.writeValueAsString(metrics);
+    }
+}
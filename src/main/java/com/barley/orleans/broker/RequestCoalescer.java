@@ -0,0 +1,330 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.common.PartitionInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Coalesces keyless produce calls of concurrent callers into micro batches.
+ * <p>
+ * Calls are queued and a single flusher thread collects them for up to a window or a number of records, groups them by
+ * delivery mode and topic and hands every group to one producer shard for one partition, chosen among the available
+ * partitions of the topic in turn. The records of a group end up back to back in the same kafka batch instead of being
+ * spread over the partitions by the default partitioner. Topics with a PayloadPartitioner are not pinned to a
+ * partition, their partitioner still places every payload. Responses are handed back to every caller separately.
+ * </p>
+ * <p>
+ * Only calls to topics the TopicMetadataCache of the registry lists are queued, with the partitions it lists, so the
+ * flusher never waits for kafka metadata. Calls to other topics, or made while no listing is fresh, are produced
+ * directly by the calling thread, as are calls made while the queue is full or the coalescer is closed. The flusher
+ * can still wait up to <i>max.block.ms</i> when the buffer of a kafka producer is full.
+ * </p>
+ */
+public final class RequestCoalescer {
+
+    /**
+     * Default time in milliseconds to wait for a flush on close.
+     */
+    public static final long DEFAULT_CLOSE_TIMEOUT = 30000;
+
+    private static final long POLL_INTERVAL = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final ProducerRegistry producerRegistry;
+    private final long window;
+    private final int maxRecords;
+    private final BlockingQueue<Request> requests;
+    private final Thread flusher;
+    private final AtomicInteger nextPartition = new AtomicInteger();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * RequestCoalescer constructor, starts the flusher thread.
+     *
+     * @param producerRegistry ProducerRegistry to produce through
+     * @param windowMillis     time in milliseconds calls are collected after the first one of a batch
+     * @param maxRecords       number of records which flushes a batch before the window is over
+     * @param capacity         number of calls which can wait for a flush
+     */
+    public RequestCoalescer(ProducerRegistry producerRegistry, long windowMillis, int maxRecords, int capacity) {
+        if (windowMillis < 0 || maxRecords < 1 || capacity < 1)
+            throw new IllegalArgumentException("Coalescer window cannot be negative, max records and capacity must be positive");
+        this.producerRegistry = producerRegistry;
+        this.window = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxRecords = maxRecords;
+        this.requests = new ArrayBlockingQueue<>(capacity);
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "orleans-coalescer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic with the next flush, without blocking the calling thread.
+     *
+     * @param topic         the topic to which data need to produced.
+     * @param payloads      List of Payloads which need to be produced.
+     * @param deliveryMode  DeliveryMode of the call, selects the producer pool.
+     * @param afterCall     AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param batchCallback BatchCallback to be invoked once all payloads are complete.
+     */
+    public void produceAsync(String topic, List<Payload> payloads, DeliveryMode deliveryMode, AfterCall afterCall, BatchCallback batchCallback) {
+        final List<PartitionInfo> partitions = running ? partitions(topic) : null;
+        if (partitions == null || !requests.offer(new Request(topic, partitions, payloads, deliveryMode, afterCall, batchCallback)))
+            producerRegistry.producer(topic, deliveryMode).produceBatchAsync(topic, payloads, afterCall, batchCallback);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic with the next flush and wait for the acknowledgements.
+     *
+     * @param topic        the topic to which data need to produced.
+     * @param payloads     List of Payloads which need to be produced.
+     * @param deliveryMode DeliveryMode of the call, selects the producer pool.
+     * @param afterCall    AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param ackTimeout   time in milliseconds to wait for all acknowledgements once the batch is flushed.
+     * @return List of Response in the same order as payloads, every one with a timeout error if the acknowledgements did not arrive in time.
+     */
+    public List<Response> produce(String topic, List<Payload> payloads, DeliveryMode deliveryMode, AfterCall afterCall, long ackTimeout) {
+        return produce(topic, payloads, deliveryMode, afterCall, ackTimeout, null);
+    }
+
+    /**
+     * Method to produce a list of payload objects to provided topic with the next flush and wait for the acknowledgements,
+     * see {@link #produce(String, List, DeliveryMode, AfterCall, long)}. The BatchCallback is invoked once every payload
+     * is complete, which can be after this method returned on timeout.
+     *
+     * @param topic         the topic to which data need to produced.
+     * @param payloads      List of Payloads which need to be produced.
+     * @param deliveryMode  DeliveryMode of the call, selects the producer pool.
+     * @param afterCall     AfterCall interface which user can implement to allow API to invoke after the call of a method is complete.
+     * @param ackTimeout    time in milliseconds to wait for all acknowledgements once the batch is flushed.
+     * @param batchCallback BatchCallback to be invoked once all payloads are complete, can be null.
+     * @return List of Response in the same order as payloads, every one with a timeout error if the acknowledgements did not arrive in time.
+     */
+    public List<Response> produce(String topic, List<Payload> payloads, DeliveryMode deliveryMode, AfterCall afterCall, long ackTimeout,
+                                  final BatchCallback batchCallback) {
+        final CountDownLatch completed = new CountDownLatch(1);
+        final AtomicReference<List<Response>> result = new AtomicReference<>();
+        produceAsync(topic, payloads, deliveryMode, afterCall, new BatchCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                result.set(responses);
+                completed.countDown();
+                if (batchCallback != null)
+                    batchCallback.completed(topic, responses);
+            }
+        });
+        try {
+            completed.await(window + TimeUnit.MILLISECONDS.toNanos(ackTimeout), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Response> responses = result.get();
+        if (responses == null) {
+            responses = new ArrayList<>(payloads.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                final Response response = new Response();
+                response.addError("Timed out waiting for acknowledgement");
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Number of calls waiting for a flush.
+     *
+     * @return int
+     */
+    public int queueDepth() {
+        return requests.size();
+    }
+
+    /**
+     * Number of batches flushed so far.
+     *
+     * @return long
+     */
+    public long flushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Number of calls flushed so far.
+     *
+     * @return long
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * Method to stop coalescing and flush the waiting calls, waiting at most {@link #DEFAULT_CLOSE_TIMEOUT}.
+     */
+    public void close() {
+        close(DEFAULT_CLOSE_TIMEOUT);
+    }
+
+    /**
+     * Method to stop coalescing and flush the waiting calls. Later calls are produced directly.
+     *
+     * @param timeout time in milliseconds to wait for the flusher thread
+     */
+    public void close(long timeout) {
+        running = false;
+        try {
+            flusher.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        final List<Request> batch = new ArrayList<>();
+        try {
+            while (running || !requests.isEmpty()) {
+                final Request first = requests.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                int records = first.payloads.size();
+                final long deadline = System.nanoTime() + window;
+                while (records < maxRecords) {
+                    final long remaining = deadline - System.nanoTime();
+                    final Request next = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : requests.poll();
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                    records += next.payloads.size();
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // calls queued while stopping are not lost
+            requests.drainTo(batch);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<Request> batch) {
+        if (batch.isEmpty())
+            return;
+        flushes.incrementAndGet();
+        coalesced.addAndGet(batch.size());
+        final Map<DeliveryMode, Map<String, List<Request>>> groups = new EnumMap<>(DeliveryMode.class);
+        for (Request request : batch) {
+            Map<String, List<Request>> topics = groups.get(request.deliveryMode);
+            if (topics == null) {
+                topics = new LinkedHashMap<>();
+                groups.put(request.deliveryMode, topics);
+            }
+            List<Request> group = topics.get(request.topic);
+            if (group == null) {
+                group = new ArrayList<>();
+                topics.put(request.topic, group);
+            }
+            group.add(request);
+        }
+        for (Map.Entry<DeliveryMode, Map<String, List<Request>>> mode : groups.entrySet()) {
+            for (Map.Entry<String, List<Request>> group : mode.getValue().entrySet()) {
+                flush(group.getKey(), mode.getKey(), group.getValue());
+            }
+        }
+    }
+
+    private void flush(String topic, DeliveryMode deliveryMode, List<Request> group) {
+        try {
+            final Producer producer = producerRegistry.producer(topic, deliveryMode);
+            final PayloadPartitioners partitioners = producerRegistry.getPayloadPartitioners();
+            final Integer partition = partitioners != null && partitioners.partitioner(topic) != null ? null : partition(group.get(0).partitions);
+            for (Request request : group) {
+                producer.produceBatchAsync(topic, partition, request.payloads, request.afterCall, request.batchCallback);
+            }
+        } catch (RuntimeException e) {
+            // a failing group must not take the flusher thread down, its callers are answered with the error
+            logger.error("Error while flushing coalesced records for topic: " + topic, e);
+            for (Request request : group) {
+                final List<Response> responses = new ArrayList<>(request.payloads.size());
+                for (int i = 0; i < request.payloads.size(); i++) {
+                    final Response response = new Response();
+                    response.addError(e.getLocalizedMessage());
+                    responses.add(response);
+                }
+                request.batchCallback.completed(topic, responses);
+            }
+        }
+    }
+
+    /**
+     * Cached partitions of a topic, read without waiting for kafka.
+     *
+     * @return partitions of the topic, null if the topic is not listed by the TopicMetadataCache or there is none
+     */
+    private List<PartitionInfo> partitions(String topic) {
+        final TopicMetadataCache metadata = producerRegistry.getTopicMetadataCache();
+        if (metadata == null)
+            return null;
+        final List<PartitionInfo> partitions = metadata.partitions(topic);
+        return partitions == null || partitions.isEmpty() ? null : partitions;
+    }
+
+    /**
+     * Next available partition among the partitions of a topic, null to leave the choice to kafka if none has a leader.
+     */
+    private Integer partition(List<PartitionInfo> partitionInfos) {
+        final int next = nextPartition.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < partitionInfos.size(); i++) {
+            final PartitionInfo partitionInfo = partitionInfos.get((next + i) % partitionInfos.size());
+            if (partitionInfo.leader() != null)
+                return partitionInfo.partition();
+        }
+        return null;
+    }
+
+    private static final class Request {
+        private final String topic;
+        private final List<PartitionInfo> partitions;
+        private final List<Payload> payloads;
+        private final DeliveryMode deliveryMode;
+        private final AfterCall afterCall;
+        private final BatchCallback batchCallback;
+
+        private Request(String topic, List<PartitionInfo> partitions, List<Payload> payloads, DeliveryMode deliveryMode, AfterCall afterCall,
+                        BatchCallback batchCallback) {
+            this.topic = topic;
+            this.partitions = partitions;
+            this.payloads = payloads;
+            this.deliveryMode = deliveryMode;
+            this.afterCall = afterCall;
+            this.batchCallback = batchCallback;
+        }
+    }
+}
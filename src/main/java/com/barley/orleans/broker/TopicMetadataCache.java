@@ -0,0 +1,244 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.exceptions.InvalidPayloadException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.errors.WakeupException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the topics and partitions of the cluster, so produce calls never wait for kafka metadata.
+ * <p>
+ * A background thread lists all topics with a kafka consumer, which does not create topics, every refresh interval,
+ * well before the cached listing expires after its time to live. Lookups only read the last listing: a topic missing
+ * from it is unknown until the next refresh, which is brought forward, at most once per miss refresh interval, so a
+ * newly created topic is seen quickly without every miss hitting kafka. Without a listing younger than the time to live
+ * nothing is known and lookups fall back to the kafka producer.
+ * </p>
+ */
+public final class TopicMetadataCache {
+
+    /**
+     * Maximum length of a topic name accepted by kafka.
+     */
+    public static final int MAX_TOPIC_LENGTH = 249;
+
+    /**
+     * Reason a topic missing from the listing is rejected for, the same for every topic so rejecting allocates
+     * nothing; callers log the topic next to it.
+     */
+    public static final String UNKNOWN_TOPIC = "Topic does not exist";
+
+    private static final String ILLEGAL_TOPIC = "Topic name is illegal, it must be at most " + MAX_TOPIC_LENGTH
+            + " characters of [a-zA-Z0-9._-]";
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final org.apache.kafka.clients.consumer.Consumer<?, ?> kafkaConsumer;
+    private final long ttl;
+    private final long missRefreshInterval;
+    private final boolean rejectUnknownTopics;
+    private final ScheduledExecutorService refresher;
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+        }
+    };
+    private final AtomicLong lastMissRefresh = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile Map<String, List<PartitionInfo>> topics = Collections.emptyMap();
+    private volatile long refreshed = 0;
+
+    /**
+     * TopicMetadataCache constructor, starts refreshing right away.
+     *
+     * @param kafkaConsumer       kafka consumer to list topics with, owned by the cache from now on
+     * @param refreshInterval     time in milliseconds between two listings
+     * @param ttl                 time in milliseconds a listing is trusted
+     * @param missRefreshInterval minimal time in milliseconds between two listings brought forward by unknown topics
+     * @param rejectUnknownTopics whether topics missing from the listing fail validation
+     */
+    public TopicMetadataCache(org.apache.kafka.clients.consumer.Consumer<?, ?> kafkaConsumer, long refreshInterval, long ttl,
+                              long missRefreshInterval, boolean rejectUnknownTopics) {
+        if (refreshInterval < 1 || ttl < refreshInterval)
+            throw new IllegalArgumentException("Metadata refresh interval must be positive and not above the time to live");
+        this.kafkaConsumer = kafkaConsumer;
+        this.ttl = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.missRefreshInterval = TimeUnit.MILLISECONDS.toNanos(missRefreshInterval);
+        this.rejectUnknownTopics = rejectUnknownTopics;
+        this.lastMissRefresh.set(System.nanoTime() - this.missRefreshInterval);
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "orleans-metadata-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.refresher.scheduleWithFixedDelay(refresh, 0, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Partitions of a topic.
+     *
+     * @param topic topic name
+     * @return partitions of the topic, empty if the topic does not exist, null if no listing is fresh enough to tell
+     */
+    public List<PartitionInfo> partitions(String topic) {
+        if (!isFresh())
+            return null;
+        final List<PartitionInfo> partitions = topics.get(topic);
+        if (partitions != null)
+            return partitions;
+        refreshAhead();
+        return Collections.emptyList();
+    }
+
+    /**
+     * All topics with their partitions.
+     *
+     * @return unmodifiable map of topic to partitions, null if no listing is fresh enough
+     */
+    public Map<String, List<PartitionInfo>> topics() {
+        return isFresh() ? topics : null;
+    }
+
+    /**
+     * Method to validate a topic before producing to it, without waiting for kafka.
+     *
+     * @param topic topic name
+     * @throws InvalidPayloadException if the topic name is illegal, or the topic is unknown and unknown topics are rejected
+     */
+    public void validate(String topic) throws InvalidPayloadException {
+        final String invalid = invalid(topic);
+        if (invalid != null)
+            throw new InvalidPayloadException(invalid);
+    }
+
+    /**
+     * Method to tell why a topic cannot be produced to, without waiting for kafka and without building an exception.
+     *
+     * @param topic topic name
+     * @return reason the topic is rejected, null if it is valid or nothing is known about it
+     */
+    public String invalid(String topic) {
+        if (!isLegal(topic))
+            return ILLEGAL_TOPIC;
+        if (rejectUnknownTopics) {
+            final List<PartitionInfo> partitions = partitions(topic);
+            if (partitions != null && partitions.isEmpty())
+                return UNKNOWN_TOPIC;
+        }
+        return null;
+    }
+
+    /**
+     * Tells if a listing younger than the time to live is cached.
+     *
+     * @return boolean
+     */
+    public boolean isFresh() {
+        final long refreshed = this.refreshed;
+        return refreshed != 0 && System.nanoTime() - refreshed < ttl;
+    }
+
+    /**
+     * Age of the cached listing in milliseconds.
+     *
+     * @return long, -1 if nothing was listed yet
+     */
+    public long age() {
+        final long refreshed = this.refreshed;
+        return refreshed != 0 ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - refreshed) : -1;
+    }
+
+    /**
+     * Number of successful listings so far.
+     *
+     * @return long
+     */
+    public long refreshes() {
+        return refreshes.get();
+    }
+
+    /**
+     * Number of failed listings so far.
+     *
+     * @return long
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * Method to stop refreshing and close the kafka consumer.
+     */
+    public void close() {
+        kafkaConsumer.wakeup();
+        refresher.shutdownNow();
+        try {
+            if (!refresher.awaitTermination(5, TimeUnit.SECONDS))
+                logger.warn("Metadata refresh did not stop in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        kafkaConsumer.close();
+    }
+
+    /**
+     * Tells if a topic name is accepted by kafka.
+     *
+     * @param topic topic name
+     * @return boolean
+     */
+    public static boolean isLegal(String topic) {
+        if (topic == null || topic.length() == 0 || topic.length() > MAX_TOPIC_LENGTH || ".".equals(topic) || "..".equals(topic))
+            return false;
+        for (int i = 0; i < topic.length(); i++) {
+            final char c = topic.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '_' || c == '-'))
+                return false;
+        }
+        return true;
+    }
+
+    private void refreshAhead() {
+        final long now = System.nanoTime();
+        final long last = lastMissRefresh.get();
+        if (now - last >= missRefreshInterval && lastMissRefresh.compareAndSet(last, now) && !refresher.isShutdown()) {
+            try {
+                refresher.execute(refresh);
+            } catch (RejectedExecutionException e) {
+                // closing
+            }
+        }
+    }
+
+    private void refresh() {
+        try {
+            final Map<String, List<PartitionInfo>> listed = kafkaConsumer.listTopics();
+            topics = Collections.unmodifiableMap(new HashMap<>(listed));
+            refreshed = System.nanoTime();
+            refreshes.incrementAndGet();
+        } catch (WakeupException e) {
+            // closing
+        } catch (RuntimeException e) {
+            // a failure must not cancel the periodic refresh, the listing just ages
+            failures.incrementAndGet();
+            logger.warn("Error while listing kafka topics, cached metadata is " + age() + " ms old", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.interfaces.PayloadCodec;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.RawJson;
+import com.barley.orleans.structure.Schema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Compact binary codec for the Payload envelope.
+ * <p>
+ * Layout: magic byte, varint schema id, then client, ipAddress, uuid and correlationId as varint length prefixed UTF-8
+ * (length + 1, 0 for null), followed by the JSON bytes of data up to the end of the record. Field names are not repeated
+ * and the schemaId string is replaced by its registered numeric id.
+ * </p>
+ */
+public class BinaryPayloadCodec implements PayloadCodec {
+
+    public static final String NAME = "binary";
+    public static final byte MAGIC = 0x01;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final SchemaRegistry schemaRegistry;
+
+    public BinaryPayloadCodec(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Payload payload, Schema schema) throws IOException {
+        if (schema == null)
+            throw new IOException("Binary codec needs a registered schema, schemaId: " + payload.getSchemaId());
+        final byte[] data = payload.getData() instanceof RawJson ? ((RawJson) payload.getData()).getBytes()
+                : OBJECT_MAPPER.writeValueAsBytes(payload.getData());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 64);
+        out.write(MAGIC);
+        writeVarInt(out, schema.getId());
+        writeString(out, payload.getClient());
+        writeString(out, payload.getIpAddress());
+        writeString(out, payload.getUuid());
+        writeString(out, payload.getCorrelationId());
+        out.write(data);
+        return out.toByteArray();
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == MAGIC;
+    }
+
+    @Override
+    public Payload decode(byte[] bytes) throws IOException {
+        if (!canDecode(bytes))
+            throw new IOException("Not a binary payload");
+        final int[] position = {1};
+        final int id = readVarInt(bytes, position);
+        final Schema schema = schemaRegistry.lookup(id);
+        if (schema == null)
+            throw new IOException("Unknown schema id: " + id);
+        final Payload payload = new Payload();
+        payload.setSchemaId(schema.getSchemaId());
+        payload.setClient(readString(bytes, position));
+        payload.setIpAddress(readString(bytes, position));
+        payload.setUuid(readString(bytes, position));
+        payload.setCorrelationId(readString(bytes, position));
+        payload.setData(new RawJson(Arrays.copyOfRange(bytes, position[0], bytes.length)));
+        return payload;
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(byte[] bytes, int[] position) throws IOException {
+        final int length = readVarInt(bytes, position) - 1;
+        if (length < 0)
+            return null;
+        if (position[0] + length > bytes.length)
+            throw new IOException("Truncated binary payload");
+        final String value = new String(bytes, position[0], length, UTF_8);
+        position[0] += length;
+        return value;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position[0] >= bytes.length)
+                throw new IOException("Truncated binary payload");
+            final byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint in binary payload");
+    }
+}
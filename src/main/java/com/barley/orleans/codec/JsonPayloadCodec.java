@@ -0,0 +1,92 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.interfaces.PayloadCodec;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Schema;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Default codec writing the Payload envelope and its data as JSON.
+ * <p>
+ * Every thread writes through its own JsonGenerator and buffer, kept between calls, so encoding only allocates the
+ * returned bytes. A buffer grown above {@link #MAX_RETAINED_BYTES} by a large payload is dropped after the call.
+ * </p>
+ */
+public class JsonPayloadCodec implements PayloadCodec {
+
+    public static final String NAME = "json";
+
+    static final int MAX_RETAINED_BYTES = 64 * 1024;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ThreadLocal<Writer> WRITERS = new ThreadLocal<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Payload payload, Schema schema) throws IOException {
+        Writer writer = WRITERS.get();
+        if (writer == null) {
+            writer = new Writer();
+            WRITERS.set(writer);
+        }
+        boolean written = false;
+        try {
+            final byte[] bytes = writer.write(payload);
+            written = true;
+            return bytes;
+        } finally {
+            // a failed write leaves the generator in the middle of a value
+            if (!written || writer.capacity() > MAX_RETAINED_BYTES)
+                WRITERS.remove();
+        }
+    }
+
+    @Override
+    public boolean canDecode(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b == '{')
+                return true;
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n')
+                return false;
+        }
+        return false;
+    }
+
+    @Override
+    public Payload decode(byte[] bytes) throws IOException {
+        return OBJECT_MAPPER.readValue(bytes, Payload.class);
+    }
+
+    /**
+     * Buffer of one thread with a generator writing into it.
+     */
+    private static final class Writer extends ByteArrayOutputStream {
+        private final JsonGenerator generator;
+
+        private Writer() throws IOException {
+            super(1024);
+            generator = OBJECT_MAPPER.getFactory().createGenerator(this);
+            // payloads are written one after the other as root values, without a separator in between
+            generator.setRootValueSeparator(null);
+        }
+
+        private byte[] write(Payload payload) throws IOException {
+            reset();
+            OBJECT_MAPPER.writeValue(generator, payload);
+            generator.flush();
+            return toByteArray();
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+    }
+}
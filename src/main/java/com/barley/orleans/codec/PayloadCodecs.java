@@ -0,0 +1,84 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.interfaces.PayloadCodec;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Schema;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the PayloadCodec of a Payload by its schemaId. Payloads without a registered schema are written as JSON.
+ */
+public final class PayloadCodecs {
+
+    private final SchemaRegistry schemaRegistry;
+    private final PayloadCodec defaultCodec = new JsonPayloadCodec();
+    private final ConcurrentMap<String, PayloadCodec> codecs = new ConcurrentHashMap<>();
+
+    /**
+     * PayloadCodecs with the json and binary codecs registered.
+     *
+     * @param schemaRegistry SchemaRegistry resolving schemaIds
+     */
+    public PayloadCodecs(SchemaRegistry schemaRegistry) {
+        this.schemaRegistry = schemaRegistry;
+        register(defaultCodec);
+        register(new BinaryPayloadCodec(schemaRegistry));
+    }
+
+    /**
+     * PayloadCodecs with an empty SchemaRegistry, so every payload is written as JSON.
+     *
+     * @return PayloadCodecs
+     */
+    public static PayloadCodecs json() {
+        return new PayloadCodecs(new SchemaRegistry());
+    }
+
+    /**
+     * Registers a codec under its name, replacing a codec with the same name.
+     *
+     * @param codec PayloadCodec to register
+     */
+    public void register(PayloadCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    public SchemaRegistry getSchemaRegistry() {
+        return schemaRegistry;
+    }
+
+    /**
+     * Method to encode a payload with the codec of its schema.
+     *
+     * @param payload Payload to encode
+     * @return encoded bytes
+     * @throws IOException if the schema refers to an unknown codec or the payload cannot be encoded
+     */
+    public byte[] encode(Payload payload) throws IOException {
+        final Schema schema = schemaRegistry.lookup(payload.getSchemaId());
+        if (schema == null)
+            return defaultCodec.encode(payload, null);
+        final PayloadCodec codec = codecs.get(schema.getCodec());
+        if (codec == null)
+            throw new IOException("Unknown codec " + schema.getCodec() + " for schemaId: " + payload.getSchemaId());
+        return codec.encode(payload, schema);
+    }
+
+    /**
+     * Method to decode a payload with the first codec recognizing the bytes.
+     *
+     * @param bytes record value read from kafka
+     * @return decoded Payload
+     * @throws IOException if no codec recognizes the bytes or they cannot be decoded
+     */
+    public Payload decode(byte[] bytes) throws IOException {
+        for (PayloadCodec codec : codecs.values()) {
+            if (codec.canDecode(bytes))
+                return codec.decode(bytes);
+        }
+        throw new IOException("No codec found for record of " + bytes.length + " bytes");
+    }
+}
@@ -0,0 +1,81 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.structure.Schema;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local stand-in for a schema registry, resolving Payload schemaIds to numeric ids and codec names and back.
+ * <p>
+ * Entries are registered in memory or loaded from a properties file with lines of the form <i>schemaId=id,codec</i>.
+ * </p>
+ */
+public class SchemaRegistry {
+
+    private final ConcurrentMap<String, Schema> bySchemaId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Schema> byId = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a schema, replacing any entry with the same schemaId.
+     *
+     * @param schema Schema to register
+     */
+    public void register(Schema schema) {
+        final Schema existing = byId.get(schema.getId());
+        if (existing != null && !existing.getSchemaId().equals(schema.getSchemaId()))
+            throw new IllegalArgumentException("Schema id " + schema.getId() + " is already registered for " + existing.getSchemaId());
+        final Schema replaced = bySchemaId.put(schema.getSchemaId(), schema);
+        if (replaced != null)
+            byId.remove(replaced.getId());
+        byId.put(schema.getId(), schema);
+    }
+
+    /**
+     * Schema registered for a schemaId.
+     *
+     * @param schemaId Payload schemaId
+     * @return Schema or null if not registered
+     */
+    public Schema lookup(String schemaId) {
+        return schemaId == null ? null : bySchemaId.get(schemaId);
+    }
+
+    /**
+     * Schema registered for a numeric id.
+     *
+     * @param id numeric schema id
+     * @return Schema or null if not registered
+     */
+    public Schema lookup(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Registers all schemas of a properties file with lines of the form <i>schemaId=id,codec</i>.
+     *
+     * @param file properties file
+     * @throws IOException if the file cannot be read or an entry is malformed
+     */
+    public void load(File file) throws IOException {
+        final Properties properties = new Properties();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            properties.load(inputStream);
+        }
+        for (String schemaId : properties.stringPropertyNames()) {
+            final String[] entry = properties.getProperty(schemaId).split(",");
+            if (entry.length != 2)
+                throw new IOException("Schema entry must be of the form id,codec for " + schemaId + " in " + file);
+            try {
+                register(new Schema(schemaId, Integer.parseInt(entry[0].trim()), entry[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid schema id for " + schemaId + " in " + file, e);
+            }
+        }
+    }
+}
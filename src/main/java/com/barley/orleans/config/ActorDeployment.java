@@ -0,0 +1,40 @@
+package com.barley.orleans.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares where a Spring managed actor runs, applied by {@link SpringExtension.SpringExt#props(String)}.
+ * <p>
+ * Actors doing blocking kafka or database calls belong on {@link #BLOCKING_DISPATCHER}, a fixed thread pool of its
+ * own, so they cannot starve the actors sharing the default fork-join dispatcher.
+ * </p>
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ActorDeployment {
+
+    /**
+     * Dispatcher for actors which block, sized by <i>actors.blocking-dispatcher.pool-size</i>.
+     */
+    String BLOCKING_DISPATCHER = "orleans.blocking-dispatcher";
+
+    /**
+     * Id of the dispatcher configured in the actor system, empty for the default dispatcher.
+     */
+    String dispatcher() default "";
+
+    /**
+     * Id of the mailbox configured in the actor system, empty for the default unbounded mailbox.
+     */
+    String mailbox() default "";
+
+    /**
+     * Number of instances behind a round-robin router, 1 for a plain actor.
+     */
+    int poolSize() default 1;
+}
@@ -1,7 +1,12 @@
 package com.barley.orleans.config;
 
 import akka.actor.ActorSystem;
+import com.barley.orleans.akka.Backoff;
+import com.barley.orleans.akka.IngestPipeline;
+import com.barley.orleans.properties.IngestProperties;
+import com.typesafe.config.ConfigFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,14 +18,34 @@ class AppConfiguration {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private IngestProperties ingestProperties;
+
     /**
-     * Actor system singleton for this application.
+     * Actor system singleton for this application, with the ingest dispatcher and mailbox configured.
      */
-    @Bean
+    @Bean(destroyMethod = "shutdown")
     public ActorSystem actorSystem() {
-        ActorSystem system = ActorSystem.create("AkkaJavaSpring");
+        ActorSystem system = ActorSystem.create("AkkaJavaSpring", ingestProperties.akkaConfig().withFallback(ConfigFactory.load()));
         // initialize the application context in the Akka Spring Extension
         SpringExtension.SpringExtProvider.get(system).initialize(applicationContext);
         return system;
     }
-}
\ No newline at end of file
+
+    /**
+     * Backoff of actors retrying a message instead of sleeping in onReceive.
+     */
+    @Bean
+    public Backoff backoff() {
+        return ingestProperties.backoff();
+    }
+
+    /**
+     * Actor pipeline behind the async produce endpoint, only started with <i>ingest.enabled</i>.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "ingest", name = "enabled", havingValue = "true")
+    public IngestPipeline ingestPipeline(ActorSystem actorSystem) {
+        return new IngestPipeline(actorSystem, ingestProperties.getWorkers(), ingestProperties.getRepliers());
+    }
+}
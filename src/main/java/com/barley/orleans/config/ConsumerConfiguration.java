@@ -0,0 +1,50 @@
+package com.barley.orleans.config;
+
+import com.barley.orleans.broker.ConsumerPool;
+import com.barley.orleans.interfaces.ConsumeHandler;
+import com.barley.orleans.metrics.meters.AppMeters;
+import com.barley.orleans.properties.ConsumerProperties;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Starts the consumer pool when <i>consumer.enabled</i> is true. Records are handed to the ConsumeHandler bean of the
+ * application if there is one, otherwise they are only counted per topic in AppMeters.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "consumer", name = "enabled", havingValue = "true")
+class ConsumerConfiguration {
+
+    @Autowired
+    private ConsumerProperties consumerProperties;
+
+    @Autowired
+    private AppMeters appMeters;
+
+    @Autowired(required = false)
+    private ConsumeHandler consumeHandler;
+
+    @Bean(destroyMethod = "close")
+    public ConsumerPool consumerPool() {
+        final ConsumerPool consumerPool = new ConsumerPool(consumerProperties.properties(), consumerProperties.getTopics(),
+                consumerProperties.getThreads(), consumeHandler != null ? consumeHandler : meteringHandler(),
+                consumerProperties.getPollTimeout(), consumerProperties.getCommitInterval(), consumerProperties.getCommitBatchSize());
+        consumerPool.start();
+        return consumerPool;
+    }
+
+    private ConsumeHandler meteringHandler() {
+        return new ConsumeHandler() {
+            @Override
+            public void handle(ConsumerRecords<String, byte[]> records) {
+                for (TopicPartition partition : records.partitions()) {
+                    appMeters.mark("consume." + partition.topic(), records.records(partition).size());
+                }
+            }
+        };
+    }
+}
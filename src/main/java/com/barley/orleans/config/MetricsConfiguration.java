@@ -0,0 +1,61 @@
+package com.barley.orleans.config;
+
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.broker.TopicMetadataCache;
+import com.barley.orleans.metrics.health.ProducerHealth;
+import com.barley.orleans.metrics.meters.AppMeters;
+import com.barley.orleans.properties.MetricsProperties;
+import com.codahale.metrics.CsvReporter;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Slf4jReporter;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic reporting of AppMeters for offline benchmarking, selected by <i>metrics.reporter.type</i>: <i>csv</i> writes
+ * one file per metric into <i>metrics.reporter.directory</i>, <i>log</i> logs every metric to the
+ * <i>com.barley.orleans.metrics</i> logger. The producer health behind the health endpoint is sampled every
+ * <i>metrics.health.interval-ms</i>.
+ */
+@Configuration
+class MetricsConfiguration {
+
+    @Autowired
+    private AppMeters appMeters;
+
+    @Autowired
+    private MetricsProperties metricsProperties;
+
+    @Bean(destroyMethod = "close")
+    public ProducerHealth producerHealth(ProducerRegistry producerRegistry, TopicMetadataCache topicMetadataCache) {
+        return new ProducerHealth(producerRegistry, topicMetadataCache, metricsProperties.healthThresholds(), metricsProperties.getHealthInterval());
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "metrics.reporter", name = "type", havingValue = "csv")
+    public ScheduledReporter csvReporter() {
+        final File directory = new File(metricsProperties.getReporterDirectory());
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalStateException("Cannot create metrics directory " + directory.getAbsolutePath());
+        final CsvReporter reporter = CsvReporter.forRegistry(appMeters.registry()).formatFor(Locale.US)
+                .convertRatesTo(TimeUnit.SECONDS).convertDurationsTo(TimeUnit.MILLISECONDS).build(directory);
+        reporter.start(metricsProperties.getReporterPeriod(), TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "metrics.reporter", name = "type", havingValue = "log")
+    public ScheduledReporter logReporter() {
+        final Slf4jReporter reporter = Slf4jReporter.forRegistry(appMeters.registry()).outputTo(LoggerFactory.getLogger("com.barley.orleans.metrics"))
+                .convertRatesTo(TimeUnit.SECONDS).convertDurationsTo(TimeUnit.MILLISECONDS).build();
+        reporter.start(metricsProperties.getReporterPeriod(), TimeUnit.SECONDS);
+        return reporter;
+    }
+}
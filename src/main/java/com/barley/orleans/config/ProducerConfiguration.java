@@ -0,0 +1,131 @@
+package com.barley.orleans.config;
+
+import com.barley.orleans.admission.InFlightBudget;
+import com.barley.orleans.admission.RateLimiter;
+import com.barley.orleans.broker.AfterCallDispatcher;
+import com.barley.orleans.broker.DedupCache;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.broker.RequestCoalescer;
+import com.barley.orleans.broker.TopicMetadataCache;
+import com.barley.orleans.codec.PayloadCodecs;
+import com.barley.orleans.metrics.meters.AppMeters;
+import com.barley.orleans.metrics.meters.ProducerMeters;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.structure.RateLimit;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Producer side beans shared by the controllers and metrics endpoints, built from the settings of ProducerProperties.
+ * The registry is closed before the AfterCallDispatcher, so AfterCalls of the last acknowledged records still run on
+ * shutdown, and after the RequestCoalescer, so its last flush still has producers.
+ */
+@Configuration
+class ProducerConfiguration {
+
+    @Autowired
+    private ProducerProperties producerProperties;
+
+    @Autowired
+    private AppMeters appMeters;
+
+    /**
+     * AfterCallDispatcher sized by <i>producer.after-call.threads</i> and <i>.queue-capacity</i>.
+     */
+    @Bean(destroyMethod = "close")
+    public AfterCallDispatcher afterCallDispatcher() {
+        return new AfterCallDispatcher(producerProperties.getAfterCallThreads(), producerProperties.getAfterCallQueueCapacity(),
+                producerProperties.getAfterCallOverflow());
+    }
+
+    @Bean
+    public ProducerMeters producerMeters() {
+        return new ProducerMeters(appMeters);
+    }
+
+    /**
+     * TopicMetadataCache listing the topics of <i>bootstrap.servers</i> every <i>producer.metadata.refresh-ms</i>. Its
+     * consumer only lists topics, so it gets the brokers and a client id, none of the producer settings.
+     */
+    @Bean(destroyMethod = "close")
+    public TopicMetadataCache topicMetadataCache() {
+        final Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, producerProperties.getBootstrapServers());
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, "orleans-metadata");
+        return new TopicMetadataCache(new KafkaConsumer<>(properties, new ByteArrayDeserializer(), new ByteArrayDeserializer()),
+                producerProperties.getMetadataRefresh(), producerProperties.getMetadataTtl(), producerProperties.getMetadataMissRefresh(),
+                producerProperties.isRejectUnknownTopics());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ProducerRegistry producerRegistry(AfterCallDispatcher afterCallDispatcher, ProducerMeters producerMeters,
+                                             TopicMetadataCache topicMetadataCache) throws IOException {
+        final ProducerRegistry producerRegistry = new ProducerRegistry(producerProperties, false);
+        producerRegistry.setPayloadCodecs(new PayloadCodecs(producerProperties.schemaRegistry()));
+        producerRegistry.setAfterCallDispatcher(afterCallDispatcher);
+        producerRegistry.setProducerMeters(producerMeters);
+        producerRegistry.setDedupCache(dedupCache());
+        producerRegistry.setTopicMetadataCache(topicMetadataCache);
+        producerRegistry.setPayloadPartitioners(new PayloadPartitioners(producerProperties));
+        return producerRegistry;
+    }
+
+    /**
+     * RateLimiter with the <i>producer.rate-limit</i> defaults and the overrides of <i>producer.client-limits</i> and
+     * <i>producer.topic-limits</i>.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "producer.rate-limit", name = "enabled", havingValue = "true")
+    public RateLimiter rateLimiter() {
+        final RateLimiter rateLimiter = new RateLimiter(new RateLimit(producerProperties.getClientRate(), producerProperties.getClientBurst()),
+                new RateLimit(producerProperties.getTopicRate(), producerProperties.getTopicBurst()), producerProperties.getRateLimitMaxBuckets());
+        for (Map.Entry<String, RateLimit> clientLimit : producerProperties.getClientLimits().entrySet()) {
+            rateLimiter.setLimit(RateLimiter.Scope.CLIENT, clientLimit.getKey(), clientLimit.getValue());
+        }
+        for (Map.Entry<String, RateLimit> topicLimit : producerProperties.getTopicLimits().entrySet()) {
+            rateLimiter.setLimit(RateLimiter.Scope.TOPIC, topicLimit.getKey(), topicLimit.getValue());
+        }
+        return rateLimiter;
+    }
+
+    /**
+     * InFlightBudget of <i>producer.in-flight.max-bytes</i> and <i>.max-records</i>, with the per topic sub-budgets of
+     * <i>producer.in-flight.topic-max-bytes</i> and <i>.topic-max-records</i>.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "producer.in-flight", name = "enabled", havingValue = "true")
+    public InFlightBudget inFlightBudget() {
+        return new InFlightBudget(producerProperties.getInFlightMaxBytes(), producerProperties.getInFlightMaxRecords(),
+                producerProperties.getInFlightTopicMaxBytes(), producerProperties.getInFlightTopicMaxRecords(),
+                producerProperties.getInFlightMaxTopics(), producerProperties.getInFlightMaxWait());
+    }
+
+    /**
+     * RequestCoalescer collecting calls for <i>producer.coalesce.window-ms</i> or <i>.max-records</i>.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "producer.coalesce", name = "enabled", havingValue = "true")
+    public RequestCoalescer requestCoalescer(ProducerRegistry producerRegistry) {
+        return new RequestCoalescer(producerRegistry, producerProperties.getCoalesceWindow(), producerProperties.getCoalesceMaxRecords(),
+                producerProperties.getCoalesceCapacity());
+    }
+
+    /**
+     * DedupCache remembering <i>producer.dedup.capacity</i> uuids for <i>producer.dedup.window-ms</i>, null unless
+     * <i>producer.dedup.enabled</i>.
+     */
+    private DedupCache dedupCache() {
+        return producerProperties.isDedupEnabled() ? new DedupCache(producerProperties.getDedupCapacity(), producerProperties.getDedupShards(),
+                producerProperties.getDedupWindow()) : null;
+    }
+}
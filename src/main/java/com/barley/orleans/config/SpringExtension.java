@@ -4,6 +4,7 @@ import akka.actor.AbstractExtensionId;
 import akka.actor.ExtendedActorSystem;
 import akka.actor.Extension;
 import akka.actor.Props;
+import akka.routing.RoundRobinPool;
 import org.springframework.context.ApplicationContext;
 
 /**
@@ -43,14 +44,28 @@ public class SpringExtension extends
 
         /**
          * Create a Props for the specified actorBeanName using the
-         * SpringActorProducer class.
+         * SpringActorProducer class. The dispatcher, mailbox and pool size
+         * declared by an {@link ActorDeployment} on the bean are applied,
+         * a pool size above 1 gives the Props of a round-robin router.
          *
          * @param actorBeanName The name of the actor bean to create Props for
          * @return a Props that will create the named actor bean using Spring
          */
         public Props props(String actorBeanName) {
-            return Props.create(SpringActorProducer.class,
+            Props props = Props.create(SpringActorProducer.class,
                     applicationContext, actorBeanName);
+            final ActorDeployment deployment = applicationContext.findAnnotationOnBean(actorBeanName, ActorDeployment.class);
+            if (deployment == null)
+                return props;
+            if (deployment.dispatcher().length() > 0)
+                props = props.withDispatcher(deployment.dispatcher());
+            if (deployment.mailbox().length() > 0)
+                props = props.withMailbox(deployment.mailbox());
+            if (deployment.poolSize() > 1) {
+                final RoundRobinPool pool = new RoundRobinPool(deployment.poolSize());
+                props = (deployment.dispatcher().length() > 0 ? pool.withDispatcher(deployment.dispatcher()) : pool).props(props);
+            }
+            return props;
         }
     }
 }
\ No newline at end of file
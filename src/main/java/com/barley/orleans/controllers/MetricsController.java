@@ -0,0 +1,42 @@
+package com.barley.orleans.controllers;
+
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.metrics.export.PrometheusWriter;
+import com.barley.orleans.metrics.meters.AppMeters;
+import com.barley.orleans.properties.MetricsProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Rest controller to expose application, kafka producer and JVM metrics for scraping.
+ */
+@RestController
+@RequestMapping("v1/metrics")
+public class MetricsController {
+
+    private PrometheusWriter prometheusWriter;
+    private ProducerRegistry producerRegistry;
+
+    @Autowired
+    MetricsController(AppMeters appMeters, ProducerRegistry producerRegistry, MetricsProperties metricsProperties) {
+        this.prometheusWriter = new PrometheusWriter(appMeters.registry(), metricsProperties.getKafka());
+        this.producerRegistry = producerRegistry;
+    }
+
+    /**
+     * Metrics in the Prometheus text format, written straight to the response.
+     */
+    @RequestMapping(value = "/prometheus", method = {RequestMethod.GET})
+    public void prometheus(HttpServletResponse response) throws IOException {
+        response.setContentType(PrometheusWriter.CONTENT_TYPE);
+        final Writer writer = response.getWriter();
+        prometheusWriter.write(writer, producerRegistry);
+        writer.flush();
+    }
+}
@@ -1,18 +1,33 @@
 package com.barley.orleans.controllers;
 
-import com.barley.orleans.broker.Producer;
+import com.barley.orleans.admission.InFlightBudget;
+import com.barley.orleans.admission.RateLimiter;
+import com.barley.orleans.akka.IngestPipeline;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.broker.RequestCoalescer;
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.interfaces.IngestCallback;
+import com.barley.orleans.interfaces.StreamAdmission;
 import com.barley.orleans.properties.ProducerProperties;
 import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadReader;
 import com.barley.orleans.structure.Response;
 import com.barley.orleans.structure.ResponseList;
+import com.barley.orleans.structure.StreamResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Rest controller to expose method to produce list of Payloads to Kafka.
@@ -22,37 +37,305 @@ import java.util.List;
 @RequestMapping("v1/produce")
 public class ProducerController {
 
-    private Producer producer;
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String OVER_BUDGET = "Too many payloads in flight, retry later";
+    private static final String RATE_LIMITED = "Rate limit exceeded, retry later";
+
+    private ProducerRegistry producerRegistry;
+    private ProducerProperties producerProperties;
+    private RequestCoalescer requestCoalescer;
+    private RateLimiter rateLimiter;
+    private InFlightBudget inFlightBudget;
+    private IngestPipeline ingestPipeline;
+    private long asyncTimeout;
 
     @Autowired
-    ProducerController(ProducerProperties producerProperties) {
-        this.producer = new Producer(producerProperties.properties(), false);
+    ProducerController(ProducerProperties producerProperties, ProducerRegistry producerRegistry) {
+        this.producerProperties = producerProperties;
+        this.producerRegistry = producerRegistry;
+        this.asyncTimeout = producerProperties.getAsyncTimeout();
+    }
+
+    /**
+     * Sets the coalescer acknowledged calls are produced through, only present with <i>producer.coalesce.enabled</i>.
+     */
+    @Autowired(required = false)
+    void setRequestCoalescer(RequestCoalescer requestCoalescer) {
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    /**
+     * Sets the rate limiter admitting produce calls, only present with <i>producer.rate-limit.enabled</i>.
+     */
+    @Autowired(required = false)
+    void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Sets the budget of payloads in flight, only present with <i>producer.in-flight.enabled</i>.
+     */
+    @Autowired(required = false)
+    void setInFlightBudget(InFlightBudget inFlightBudget) {
+        this.inFlightBudget = inFlightBudget;
+    }
+
+    /**
+     * Sets the actor pipeline async calls are produced through, only present with <i>ingest.enabled</i>.
+     */
+    @Autowired(required = false)
+    void setIngestPipeline(IngestPipeline ingestPipeline) {
+        this.ingestPipeline = ingestPipeline;
     }
 
+    /**
+     * Produce payloads to a topic. The delivery mode defaults to the one configured for the topic and the
+     * acknowledgement deadline to <i>producer.ack.timeout.ms</i>, both can be overridden per request. With
+     * <i>producer.coalesce.enabled</i> acknowledged calls are sent together with those of concurrent callers. With
+     * <i>producer.rate-limit.enabled</i> calls over the limit of their client or topic are answered with 429. With
+     * <i>producer.in-flight.enabled</i> calls over the budget of payloads in flight are answered with 503, the budget of
+     * a call is held until kafka answered every payload, even past the acknowledgement deadline.
+     */
     @RequestMapping(value = "/{topic}", method = {RequestMethod.POST}, produces = {MediaType.APPLICATION_JSON_VALUE}, consumes = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<ResponseList> produce(@PathVariable(value = "topic") String topic, @RequestBody List<Payload> payloads) {
+    public ResponseEntity<ResponseList> produce(@PathVariable(value = "topic") String topic, @RequestBody List<Payload> payloads,
+                                                @RequestParam(value = "delivery", required = false) DeliveryMode delivery,
+                                                @RequestParam(value = "timeout", required = false) Long timeout) {
+        final long wait = rateLimiter != null ? rateLimiter.acquire(topic, payloads) : 0;
+        if (wait > 0)
+            return tooManyRequests(wait);
+        final InFlightBudget.Permit permit = inFlightBudget != null ? inFlightBudget.acquire(topic, payloads) : null;
+        if (inFlightBudget != null && permit == null)
+            return overBudget();
+        final DeliveryMode deliveryMode = delivery != null ? delivery : producerProperties.deliveryMode(topic);
+        final long ackTimeout = timeout != null ? timeout : producerProperties.getAckTimeout();
+        // the budget is held until kafka answered every payload, not until the call returned or timed out
+        final BatchCallback release = permit != null ? new BatchCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                permit.release();
+            }
+        } : null;
+        final List<Response> responses;
+        try {
+            responses = requestCoalescer != null && deliveryMode != DeliveryMode.FIRE_AND_FORGET
+                    ? requestCoalescer.produce(topic, payloads, deliveryMode, null, ackTimeout, release)
+                    : producerRegistry.producer(topic, deliveryMode).produceBatch(topic, payloads, null, deliveryMode, ackTimeout, release);
+        } catch (RuntimeException e) {
+            if (permit != null)
+                permit.release();
+            throw e;
+        }
+        return responseEntity(responses, deliveryMode == DeliveryMode.FIRE_AND_FORGET ? HttpStatus.ACCEPTED : HttpStatus.OK);
+    }
+
+    /**
+     * Asynchronous variant of produce. The request thread is released right away and the response is written
+     * once kafka acknowledged (or failed) every payload, so in-flight requests do not hold servlet threads. With
+     * <i>ingest.enabled</i> payloads are encoded and sent by the actor ingest pipeline, which answers 503 when full.
+     * Budget of <i>producer.in-flight</i> is held until kafka answered every payload.
+     */
+    @RequestMapping(value = "/async/{topic}", method = {RequestMethod.POST}, produces = {MediaType.APPLICATION_JSON_VALUE}, consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public DeferredResult<ResponseEntity<ResponseList>> produceAsync(@PathVariable(value = "topic") String topic, @RequestBody List<Payload> payloads,
+                                                                     @RequestParam(value = "delivery", required = false) DeliveryMode delivery) {
+        final DeliveryMode deliveryMode = delivery != null ? delivery : producerProperties.deliveryMode(topic);
+        if (deliveryMode == DeliveryMode.FIRE_AND_FORGET) {
+            final DeferredResult<ResponseEntity<ResponseList>> accepted = new DeferredResult<>();
+            accepted.setResult(produce(topic, payloads, deliveryMode, null));
+            return accepted;
+        }
+        final long wait = rateLimiter != null ? rateLimiter.acquire(topic, payloads) : 0;
+        if (wait > 0) {
+            final DeferredResult<ResponseEntity<ResponseList>> rejected = new DeferredResult<>();
+            rejected.setResult(tooManyRequests(wait));
+            return rejected;
+        }
+        final InFlightBudget.Permit permit = inFlightBudget != null ? inFlightBudget.acquire(topic, payloads) : null;
+        if (inFlightBudget != null && permit == null) {
+            final DeferredResult<ResponseEntity<ResponseList>> rejected = new DeferredResult<>();
+            rejected.setResult(overBudget());
+            return rejected;
+        }
+        final ResponseList timedOut = new ResponseList();
+        timedOut.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        final DeferredResult<ResponseEntity<ResponseList>> deferredResult =
+                new DeferredResult<>(asyncTimeout, new ResponseEntity<>(timedOut, HttpStatus.SERVICE_UNAVAILABLE));
+        final BatchCallback batchCallback = new BatchCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                // the budget is held until kafka answered, not until the request timed out
+                if (permit != null)
+                    permit.release();
+                deferredResult.setResult(responseEntity(responses, HttpStatus.OK));
+            }
+        };
+        try {
+            produceAsync(topic, payloads, deliveryMode, batchCallback, deferredResult, permit);
+        } catch (RuntimeException e) {
+            if (permit != null)
+                permit.release();
+            throw e;
+        }
+        return deferredResult;
+    }
+
+    private void produceAsync(String topic, List<Payload> payloads, DeliveryMode deliveryMode, final BatchCallback batchCallback,
+                              final DeferredResult<ResponseEntity<ResponseList>> deferredResult, final InFlightBudget.Permit permit) {
+        if (ingestPipeline != null) {
+            ingestPipeline.ingest(topic, payloads, deliveryMode, new IngestCallback() {
+                @Override
+                public void completed(String topic, List<Response> responses) {
+                    batchCallback.completed(topic, responses);
+                }
+
+                @Override
+                public void rejected(String topic, String reason) {
+                    if (permit != null)
+                        permit.release();
+                    final ResponseList rejected = new ResponseList();
+                    rejected.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+                    final Response response = new Response();
+                    response.addError(reason);
+                    rejected.getResponses().add(response);
+                    deferredResult.setResult(new ResponseEntity<>(rejected, HttpStatus.SERVICE_UNAVAILABLE));
+                }
+            });
+        } else if (requestCoalescer != null)
+            requestCoalescer.produceAsync(topic, payloads, deliveryMode, null, batchCallback);
+        else
+            producerRegistry.producer(topic, deliveryMode).produceBatchAsync(topic, payloads, null, batchCallback);
+    }
+
+    /**
+     * Streaming variant of produce for large inputs. Accepts a JSON array or newline delimited JSON and produces the
+     * payloads chunk by chunk as they are parsed, answering with counters instead of one response per payload. With
+     * <i>producer.rate-limit.enabled</i> every chunk is charged to the limits of its clients and topic, a chunk over the
+     * limit stops the stream, which is answered with 429 and the number of payloads received before it. With
+     * <i>producer.in-flight.enabled</i> every chunk takes budget, held until kafka answered each of its payloads, so
+     * a stream cannot have more payloads in flight than the budget; a chunk over the budget waits up to
+     * <i>producer.in-flight.max-wait-ms</i>, then stops the stream, which is answered with 503.
+     */
+    @RequestMapping(value = "/stream/{topic}", method = {RequestMethod.POST}, produces = {MediaType.APPLICATION_JSON_VALUE}, consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_VALUE})
+    public ResponseEntity<StreamResult> produceStream(@PathVariable(value = "topic") String topic, HttpServletRequest request,
+                                                      @RequestParam(value = "timeout", required = false) Long timeout) throws IOException {
+        final long ackTimeout = timeout != null ? timeout : producerProperties.getAckTimeout();
+        final StreamGate gate = rateLimiter != null || inFlightBudget != null ? new StreamGate(rateLimiter, inFlightBudget) : null;
+        final StreamResult result;
+        try (PayloadReader reader = new PayloadReader(OBJECT_MAPPER, request.getInputStream())) {
+            result = producerRegistry.producer(topic, producerProperties.deliveryMode(topic)).produceStream(topic, reader, null, ackTimeout, gate);
+        }
+        final HttpHeaders headers = new HttpHeaders();
+        if (gate != null && gate.rejected != null) {
+            result.setStatus(gate.rejected.value());
+            result.addError(gate.reason + " after " + result.getReceived() + " payloads");
+            headers.set(HttpHeaders.RETRY_AFTER, gate.retryAfter);
+        } else if (result.getFailed() > 0 || result.getErrors().size() > 0) {
+            result.setStatus(HttpStatus.BAD_REQUEST.value());
+        }
+        return new ResponseEntity<>(result, headers, HttpStatus.valueOf(result.getStatus()));
+    }
+
+    /**
+     * Fast rejection of a call over its rate limit, Retry-After is rounded up to whole seconds.
+     */
+    private static ResponseEntity<ResponseList> tooManyRequests(long waitNanos) {
+        final ResponseList responseList = new ResponseList();
+        responseList.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfter(waitNanos));
+        return new ResponseEntity<>(responseList, headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
+    private static String retryAfter(long waitNanos) {
+        return String.valueOf(Math.max(1, (waitNanos + SECOND_NANOS - 1) / SECOND_NANOS));
+    }
+
+    /**
+     * Fast rejection of a call over the budget of payloads in flight, retried after a second.
+     */
+    private static ResponseEntity<ResponseList> overBudget() {
+        final ResponseList responseList = new ResponseList();
+        responseList.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        final Response response = new Response();
+        response.addError(OVER_BUDGET);
+        responseList.getResponses().add(response);
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+        return new ResponseEntity<>(responseList, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private ResponseEntity<ResponseList> responseEntity(List<Response> responses, HttpStatus successStatus) {
         final ResponseList responseList = new ResponseList();
-        for (Payload payload : payloads) {
-            final Response response = producer.produce(topic, payload);
-            if (response.getErrors().size() > 0)
+        responseList.setStatus(successStatus.value());
+        for (Response response : responses) {
+            if (response.getErrors().size() > 0) {
                 responseList.setStatus(HttpStatus.BAD_REQUEST.value());
-            else {
-                responseList.getResponses().add(response);
+                break;
             }
         }
+        responseList.setResponses(responses);
         return new ResponseEntity<>(responseList, HttpStatus.valueOf(responseList.getStatus()));
     }
 
-
     @RequestMapping(value = "/{metrics}", method = {RequestMethod.GET}, produces = {MediaType.APPLICATION_JSON_VALUE})
     public ResponseEntity<String> metrics() {
         String metrics = "{}";
         HttpStatus httpStatus = HttpStatus.OK;
         try {
-            metrics = producer.metrics();
+            metrics = producerRegistry.metrics();
         } catch (IOException ioe) {
             httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
         }
         return new ResponseEntity<>(metrics, httpStatus);
     }
+
+    /**
+     * Admission of the chunks of one stream, remembering why the stream was stopped. Only used by the request thread.
+     */
+    private static final class StreamGate implements StreamAdmission {
+        private static final Runnable ADMITTED = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+
+        private final RateLimiter rateLimiter;
+        private final InFlightBudget inFlightBudget;
+        private HttpStatus rejected;
+        private String reason;
+        private String retryAfter;
+
+        private StreamGate(RateLimiter rateLimiter, InFlightBudget inFlightBudget) {
+            this.rateLimiter = rateLimiter;
+            this.inFlightBudget = inFlightBudget;
+        }
+
+        @Override
+        public Runnable admit(String topic, List<Payload> chunk) {
+            final long wait = rateLimiter != null ? rateLimiter.acquire(topic, chunk) : 0;
+            if (wait > 0) {
+                rejected = HttpStatus.TOO_MANY_REQUESTS;
+                reason = RATE_LIMITED;
+                retryAfter = retryAfter(wait);
+                return null;
+            }
+            if (inFlightBudget == null)
+                return ADMITTED;
+            final InFlightBudget.Permit permit = inFlightBudget.acquire(topic, chunk);
+            if (permit == null) {
+                rejected = HttpStatus.SERVICE_UNAVAILABLE;
+                reason = OVER_BUDGET;
+                retryAfter = "1";
+                return null;
+            }
+            // the budget is held until kafka answered every payload of the chunk, even after the stream returned
+            return new Runnable() {
+                @Override
+                public void run() {
+                    permit.release();
+                }
+            };
+        }
+    }
 }
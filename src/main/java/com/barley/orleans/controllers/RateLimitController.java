@@ -0,0 +1,89 @@
+package com.barley.orleans.controllers;
+
+import com.barley.orleans.admission.RateLimiter;
+import com.barley.orleans.structure.RateLimit;
+import com.barley.orleans.structure.RateLimits;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Rest controller to read and change the produce rate limits at runtime, only present with
+ * <i>producer.rate-limit.enabled</i>. The scope in the path is either <i>clients</i> or <i>topics</i>; changes are not
+ * persisted and the configured limits apply again after a restart.
+ */
+@RestController
+@RequestMapping("v1/limits")
+@ConditionalOnProperty(prefix = "producer.rate-limit", name = "enabled", havingValue = "true")
+public class RateLimitController {
+
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    RateLimitController(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Current limits and the number of rejected calls.
+     */
+    @RequestMapping(method = {RequestMethod.GET}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<RateLimits> limits() {
+        return new ResponseEntity<>(rateLimiter.snapshot(), HttpStatus.OK);
+    }
+
+    /**
+     * Replaces the default limit of every client or topic without a limit of its own.
+     */
+    @RequestMapping(value = "/{scope}", method = {RequestMethod.PUT}, consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<RateLimits> setDefaultLimit(@PathVariable(value = "scope") String scope, @RequestBody RateLimit rateLimit) {
+        final RateLimiter.Scope limitScope = scope(scope);
+        if (limitScope == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        rateLimiter.setDefaultLimit(limitScope, rateLimit);
+        return limits();
+    }
+
+    /**
+     * Sets the limit of one client or topic.
+     */
+    @RequestMapping(value = "/{scope}/{name:.+}", method = {RequestMethod.PUT}, consumes = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<RateLimits> setLimit(@PathVariable(value = "scope") String scope, @PathVariable(value = "name") String name,
+                                               @RequestBody RateLimit rateLimit) {
+        final RateLimiter.Scope limitScope = scope(scope);
+        if (limitScope == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        rateLimiter.setLimit(limitScope, name, rateLimit);
+        return limits();
+    }
+
+    /**
+     * Removes the limit of one client or topic, which falls back to the default limit.
+     */
+    @RequestMapping(value = "/{scope}/{name:.+}", method = {RequestMethod.DELETE})
+    public ResponseEntity<RateLimits> removeLimit(@PathVariable(value = "scope") String scope, @PathVariable(value = "name") String name) {
+        final RateLimiter.Scope limitScope = scope(scope);
+        if (limitScope == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        rateLimiter.setLimit(limitScope, name, null);
+        return limits();
+    }
+
+    private static RateLimiter.Scope scope(String scope) {
+        switch (scope) {
+            case "clients":
+                return RateLimiter.Scope.CLIENT;
+            case "topics":
+                return RateLimiter.Scope.TOPIC;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.barley.orleans.controllers;
+
+import com.barley.orleans.broker.TopicMetadataCache;
+import com.barley.orleans.structure.TopicInfo;
+import org.apache.kafka.common.PartitionInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rest controller to expose the cached topics and partitions of the cluster. Answers come from the TopicMetadataCache
+ * only, with 503 while it holds no fresh metadata.
+ */
+@RestController
+@RequestMapping("v1/topics")
+public class TopicController {
+
+    private TopicMetadataCache topicMetadataCache;
+
+    @Autowired
+    TopicController(TopicMetadataCache topicMetadataCache) {
+        this.topicMetadataCache = topicMetadataCache;
+    }
+
+    /**
+     * All topics with their partitions, ordered by topic name.
+     */
+    @RequestMapping(method = {RequestMethod.GET}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<List<TopicInfo>> topics() {
+        final Map<String, List<PartitionInfo>> topics = topicMetadataCache.topics();
+        if (topics == null)
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        final List<TopicInfo> topicInfos = new ArrayList<>(topics.size());
+        for (Map.Entry<String, List<PartitionInfo>> topic : new TreeMap<>(topics).entrySet()) {
+            topicInfos.add(TopicInfo.of(topic.getKey(), topic.getValue()));
+        }
+        return new ResponseEntity<>(topicInfos, HttpStatus.OK);
+    }
+
+    /**
+     * Partitions of a topic, 404 if the topic does not exist.
+     */
+    @RequestMapping(value = "/{topic:.+}", method = {RequestMethod.GET}, produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<TopicInfo> topic(@PathVariable(value = "topic") String topic) {
+        final List<PartitionInfo> partitions = topicMetadataCache.partitions(topic);
+        if (partitions == null)
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        if (partitions.isEmpty())
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return new ResponseEntity<>(TopicInfo.of(topic, partitions), HttpStatus.OK);
+    }
+}
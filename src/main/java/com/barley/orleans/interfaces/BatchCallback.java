@@ -0,0 +1,20 @@
+package com.barley.orleans.interfaces;
+
+import com.barley.orleans.structure.Response;
+
+import java.util.List;
+
+/**
+ * An interface which user can implement to be notified once all payloads of an asynchronous produce call are complete.
+ */
+public interface BatchCallback {
+
+    /**
+     * Method which client can implement to be executed once every payload of a batch is acknowledged or failed.
+     * It is invoked from the kafka producer I/O thread (or the calling thread when no payload could be sent), so implementations should return quickly.
+     *
+     * @param topic     - topic to which the batch was produced.
+     * @param responses - List of Response in the same order as the payloads, containing offset, partition info if produce was successful else list of error strings.
+     */
+    public void completed(String topic, List<Response> responses);
+}
@@ -0,0 +1,18 @@
+package com.barley.orleans.interfaces;
+
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+
+/**
+ * An interface which user can implement to process records consumed from kafka, one poll batch at a time.
+ */
+public interface ConsumeHandler {
+
+    /**
+     * Method which client can implement to process a batch of records returned by a single poll.
+     * It is invoked from the consumer worker thread owning the records' partitions, offsets of the batch are committed
+     * after it returns.
+     *
+     * @param records - records consumed by one poll, never empty.
+     */
+    public void handle(ConsumerRecords<String, byte[]> records);
+}
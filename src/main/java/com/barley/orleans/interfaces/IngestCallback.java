@@ -0,0 +1,28 @@
+package com.barley.orleans.interfaces;
+
+import com.barley.orleans.structure.Response;
+
+import java.util.List;
+
+/**
+ * An interface to be notified of the outcome of a produce call handed to the actor ingest pipeline.
+ * Both methods are invoked from an ingest replier actor, so implementations should return quickly.
+ */
+public interface IngestCallback {
+
+    /**
+     * Method invoked once every payload of the call is acknowledged or failed.
+     *
+     * @param topic     - topic to which the payloads were produced.
+     * @param responses - List of Response in the same order as the payloads.
+     */
+    public void completed(String topic, List<Response> responses);
+
+    /**
+     * Method invoked when the call was not produced at all, because the pipeline was full or the producer refused it.
+     *
+     * @param topic  - topic to which the payloads were to be produced.
+     * @param reason - why the call was rejected.
+     */
+    public void rejected(String topic, String reason);
+}
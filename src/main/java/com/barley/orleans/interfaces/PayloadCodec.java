@@ -0,0 +1,46 @@
+package com.barley.orleans.interfaces;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.Schema;
+
+import java.io.IOException;
+
+/**
+ * An interface to plug in the wire format of Payloads produced to and consumed from kafka.
+ */
+public interface PayloadCodec {
+
+    /**
+     * Name under which schemas refer to this codec.
+     *
+     * @return codec name
+     */
+    public String getName();
+
+    /**
+     * Method to encode a Payload for kafka.
+     *
+     * @param payload - Payload to encode.
+     * @param schema  - Schema resolved for the payload schemaId, null if the schemaId is not registered.
+     * @return encoded bytes
+     * @throws IOException if the payload cannot be encoded.
+     */
+    public byte[] encode(Payload payload, Schema schema) throws IOException;
+
+    /**
+     * Tells if the bytes were written by this codec.
+     *
+     * @param bytes - record value read from kafka.
+     * @return boolean
+     */
+    public boolean canDecode(byte[] bytes);
+
+    /**
+     * Method to decode a Payload read from kafka.
+     *
+     * @param bytes - record value read from kafka.
+     * @return decoded Payload
+     * @throws IOException if the bytes cannot be decoded.
+     */
+    public Payload decode(byte[] bytes) throws IOException;
+}
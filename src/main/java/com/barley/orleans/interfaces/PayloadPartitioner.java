@@ -0,0 +1,43 @@
+package com.barley.orleans.interfaces;
+
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+
+/**
+ * An interface to plug in the choice of partition for payloads produced without explicit partition or key.
+ * <p>
+ * One instance serves every producer of the application, so implementations must be thread safe. Implementations
+ * plugged in by class name need a public no-argument constructor.
+ * </p>
+ */
+public interface PayloadPartitioner {
+
+    /**
+     * Name under which topics refer to this partitioner.
+     *
+     * @return partitioner name
+     */
+    public String getName();
+
+    /**
+     * Method to choose the partition of a payload.
+     *
+     * @param topic      - topic the payload is produced to.
+     * @param payload    - Payload to produce.
+     * @param size       - size in bytes of the encoded payload.
+     * @param partitions - partitions of the topic, can be null or empty if they are not known.
+     * @return partition, null to leave the choice to kafka.
+     */
+    public Integer partition(String topic, Payload payload, int size, List<PartitionInfo> partitions);
+
+    /**
+     * Method invoked once kafka acknowledged or failed a payload for which {@link #partition} chose a partition.
+     *
+     * @param topic     - topic the payload was produced to.
+     * @param partition - partition chosen for the payload.
+     * @param size      - size in bytes of the encoded payload.
+     */
+    public void completed(String topic, int partition, int size);
+}
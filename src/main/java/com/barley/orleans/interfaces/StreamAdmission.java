@@ -0,0 +1,22 @@
+package com.barley.orleans.interfaces;
+
+import com.barley.orleans.structure.Payload;
+
+import java.util.List;
+
+/**
+ * An interface which user can implement to admit the payloads of a streamed produce call chunk by chunk while the stream is read.
+ */
+public interface StreamAdmission {
+
+    /**
+     * Method invoked with every chunk of payloads read from a stream, before any of them is sent. Reading stops at the
+     * first chunk which is not admitted, neither it nor the rest of the stream is produced.
+     *
+     * @param topic - topic to which the stream is produced.
+     * @param chunk - List of Payloads read since the previous chunk.
+     * @return Runnable invoked once kafka acknowledged or failed every payload of the chunk, or they were spilled or
+     * rejected, from the kafka producer I/O thread or the reading thread; null if the chunk is not admitted.
+     */
+    public Runnable admit(String topic, List<Payload> chunk);
+}
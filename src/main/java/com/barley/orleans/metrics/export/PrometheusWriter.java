@@ -0,0 +1,395 @@
+package com.barley.orleans.metrics.export;
+
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.broker.ProducerPool;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.apache.kafka.common.MetricName;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes metrics in the Prometheus text exposition format (version 0.0.4) straight to a Writer.
+ * <p>
+ * Covers every metric of the Dropwizard registry, the selected kafka producer metrics of every pool shard and a few
+ * JVM memory, GC and thread figures. Topic instruments of {@link com.barley.orleans.metrics.meters.ProducerMeters}
+ * and the consume meters become one family per instrument with a topic label, e.g. <i>produce.&lt;topic&gt;.ack</i>
+ * is written as <i>orleans_produce_ack_seconds{topic="&lt;topic&gt;"}</i>. Families and labels are parsed once per
+ * metric name and cached, a scrape only allocates snapshots of timers and histograms and the grouping of metrics into
+ * families.
+ * </p>
+ * <p>
+ * Timer and histogram percentiles are computed over a sliding window that has no matching sum, so they are written as
+ * gauges with a quantile label next to a <i>_count</i> counter instead of as summaries.
+ * </p>
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final String PREFIX = "orleans_";
+    private static final String KAFKA_PREFIX = "kafka_producer_";
+    private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"quantile=\"0.5\"", "quantile=\"0.75\"", "quantile=\"0.95\"",
+            "quantile=\"0.99\"", "quantile=\"0.999\""};
+    private static final String PRODUCE = "produce.";
+    private static final String PRODUCE_ERRORS = ".errors.";
+    private static final String CONSUME = "consume.";
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final MetricRegistry registry;
+    private final List<String> kafkaMetrics;
+    private final List<String> kafkaFamilies;
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    /**
+     * PrometheusWriter constructor.
+     *
+     * @param registry     MetricRegistry to expose
+     * @param kafkaMetrics names of the kafka producer metrics to expose, e.g. record-send-rate
+     */
+    public PrometheusWriter(MetricRegistry registry, List<String> kafkaMetrics) {
+        this.registry = registry;
+        this.kafkaMetrics = new ArrayList<>(kafkaMetrics);
+        this.kafkaFamilies = new ArrayList<>(kafkaMetrics.size());
+        for (String kafkaMetric : kafkaMetrics) {
+            kafkaFamilies.add(KAFKA_PREFIX + sanitize(kafkaMetric));
+        }
+    }
+
+    /**
+     * Method to write all metrics.
+     *
+     * @param writer           Writer to write to, not flushed or closed
+     * @param producerRegistry ProducerRegistry whose kafka producer metrics are written, can be null.
+     * @throws IOException
+     */
+    public void write(Writer writer, ProducerRegistry producerRegistry) throws IOException {
+        writeRegistry(writer);
+        if (producerRegistry != null)
+            writeKafka(writer, producerRegistry);
+        writeJvm(writer);
+    }
+
+    private void writeRegistry(Writer writer) throws IOException {
+        final Map<String, List<Sample>> families = new LinkedHashMap<>();
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            final Series series = series(entry.getKey(), entry.getValue());
+            List<Sample> samples = families.get(series.family);
+            if (samples == null) {
+                samples = new ArrayList<>();
+                families.put(series.family, samples);
+            }
+            samples.add(new Sample(series, entry.getValue()));
+        }
+        for (Map.Entry<String, List<Sample>> family : families.entrySet()) {
+            writeFamily(writer, family.getKey(), family.getValue());
+        }
+    }
+
+    private void writeFamily(Writer writer, String name, List<Sample> samples) throws IOException {
+        final Metric first = samples.get(0).metric;
+        if (first instanceof Timer) {
+            writeType(writer, name, "_seconds", "gauge");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Timer)
+                    writeQuantiles(writer, name + "_seconds", sample.series.labels, ((Timer) sample.metric).getSnapshot(), NANOS_PER_SECOND);
+            }
+            writeType(writer, name, "_seconds_count", "counter");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Timer)
+                    writeSample(writer, name, "_seconds_count", sample.series.labels, ((Timer) sample.metric).getCount());
+            }
+        } else if (first instanceof Histogram) {
+            writeType(writer, name, "", "gauge");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Histogram)
+                    writeQuantiles(writer, name, sample.series.labels, ((Histogram) sample.metric).getSnapshot(), 1);
+            }
+            writeType(writer, name, "_count", "counter");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Histogram)
+                    writeSample(writer, name, "_count", sample.series.labels, ((Histogram) sample.metric).getCount());
+            }
+        } else if (first instanceof Meter) {
+            writeType(writer, name, "_total", "counter");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Meter)
+                    writeSample(writer, name, "_total", sample.series.labels, ((Meter) sample.metric).getCount());
+            }
+            writeType(writer, name, "_m1_rate", "gauge");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Meter)
+                    writeSample(writer, name, "_m1_rate", sample.series.labels, ((Meter) sample.metric).getOneMinuteRate());
+            }
+        } else if (first instanceof Counter) {
+            writeType(writer, name, "", "gauge");
+            for (Sample sample : samples) {
+                if (sample.metric instanceof Counter)
+                    writeSample(writer, name, "", sample.series.labels, ((Counter) sample.metric).getCount());
+            }
+        } else if (first instanceof Gauge) {
+            boolean typed = false;
+            for (Sample sample : samples) {
+                final Object value = sample.metric instanceof Gauge ? ((Gauge) sample.metric).getValue() : null;
+                if (value instanceof Number) {
+                    if (!typed) {
+                        writeType(writer, name, "", "gauge");
+                        typed = true;
+                    }
+                    writeSample(writer, name, "", sample.series.labels, ((Number) value).doubleValue());
+                }
+            }
+        }
+    }
+
+    private static void writeQuantiles(Writer writer, String name, String labels, Snapshot snapshot, double scale) throws IOException {
+        for (int i = 0; i < QUANTILES.length; i++) {
+            writer.write(name);
+            writer.write('{');
+            if (!labels.isEmpty()) {
+                writer.write(labels);
+                writer.write(',');
+            }
+            writer.write(QUANTILE_LABELS[i]);
+            writer.write("} ");
+            writeValue(writer, snapshot.getValue(QUANTILES[i]) / scale);
+            writer.write('\n');
+        }
+    }
+
+    private void writeKafka(Writer writer, ProducerRegistry producerRegistry) throws IOException {
+        final Map<String, ProducerPool> pools = producerRegistry.pools();
+        for (int m = 0; m < kafkaMetrics.size(); m++) {
+            final String kafkaMetric = kafkaMetrics.get(m);
+            final String family = kafkaFamilies.get(m);
+            boolean typed = false;
+            for (Map.Entry<String, ProducerPool> pool : pools.entrySet()) {
+                final List<Producer> shards = pool.getValue().shards();
+                for (int shard = 0; shard < shards.size(); shard++) {
+                    for (Map.Entry<MetricName, ? extends org.apache.kafka.common.Metric> entry : shards.get(shard).kafkaMetrics().entrySet()) {
+                        final MetricName metricName = entry.getKey();
+                        if (!kafkaMetric.equals(metricName.name()))
+                            continue;
+                        if (!typed) {
+                            writeType(writer, family, "", "gauge");
+                            typed = true;
+                        }
+                        writer.write(family);
+                        writer.write("{pool=\"");
+                        writeLabelValue(writer, pool.getKey());
+                        writer.write("\",shard=\"");
+                        writer.write(Integer.toString(shard));
+                        writer.write('"');
+                        for (Map.Entry<String, String> tag : metricName.tags().entrySet()) {
+                            writer.write(',');
+                            writer.write(sanitize(tag.getKey()));
+                            writer.write("=\"");
+                            writeLabelValue(writer, tag.getValue());
+                            writer.write('"');
+                        }
+                        writer.write("} ");
+                        writeValue(writer, entry.getValue().value());
+                        writer.write('\n');
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeJvm(Writer writer) throws IOException {
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        final MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+        writeType(writer, "jvm_memory_heap_used_bytes", "", "gauge");
+        writeSample(writer, "jvm_memory_heap_used_bytes", "", heap.getUsed());
+        writeType(writer, "jvm_memory_heap_committed_bytes", "", "gauge");
+        writeSample(writer, "jvm_memory_heap_committed_bytes", "", heap.getCommitted());
+        writeType(writer, "jvm_memory_heap_max_bytes", "", "gauge");
+        writeSample(writer, "jvm_memory_heap_max_bytes", "", heap.getMax());
+        writeType(writer, "jvm_memory_non_heap_used_bytes", "", "gauge");
+        writeSample(writer, "jvm_memory_non_heap_used_bytes", "", nonHeap.getUsed());
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        writeType(writer, "jvm_gc_collections_total", "", "counter");
+        for (GarbageCollectorMXBean collector : collectors) {
+            writeGcSample(writer, "jvm_gc_collections_total", collector.getName(), collector.getCollectionCount());
+        }
+        writeType(writer, "jvm_gc_collection_seconds_total", "", "counter");
+        for (GarbageCollectorMXBean collector : collectors) {
+            writeGcSample(writer, "jvm_gc_collection_seconds_total", collector.getName(), collector.getCollectionTime() / 1000d);
+        }
+        writeType(writer, "jvm_threads", "", "gauge");
+        writeSample(writer, "jvm_threads", "", ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private void writeGcSample(Writer writer, String name, String gc, double value) throws IOException {
+        writer.write(name);
+        writer.write("{gc=\"");
+        writeLabelValue(writer, gc);
+        writer.write("\"} ");
+        writeValue(writer, value);
+        writer.write('\n');
+    }
+
+    private static void writeType(Writer writer, String name, String suffix, String type) throws IOException {
+        writer.write("# TYPE ");
+        writer.write(name);
+        writer.write(suffix);
+        writer.write(' ');
+        writer.write(type);
+        writer.write('\n');
+    }
+
+    private static void writeSample(Writer writer, String name, String suffix, double value) throws IOException {
+        writeSample(writer, name, suffix, "", value);
+    }
+
+    private static void writeSample(Writer writer, String name, String suffix, String labels, double value) throws IOException {
+        writer.write(name);
+        writer.write(suffix);
+        if (!labels.isEmpty()) {
+            writer.write('{');
+            writer.write(labels);
+            writer.write('}');
+        }
+        writer.write(' ');
+        writeValue(writer, value);
+        writer.write('\n');
+    }
+
+    private static void writeValue(Writer writer, double value) throws IOException {
+        if (Double.isNaN(value))
+            writer.write("NaN");
+        else if (Double.isInfinite(value))
+            writer.write(value > 0 ? "+Inf" : "-Inf");
+        else if (value == (long) value)
+            writer.write(Long.toString((long) value));
+        else
+            writer.write(Double.toString(value));
+    }
+
+    private static void writeLabelValue(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else {
+                writer.write(c);
+            }
+        }
+    }
+
+    private static String label(String name, String value) {
+        final StringWriter label = new StringWriter(name.length() + value.length() + 3);
+        label.write(name);
+        label.write("=\"");
+        try {
+            writeLabelValue(label, value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        label.write('"');
+        return label.toString();
+    }
+
+    private Series series(String metricName, Metric metric) {
+        Series parsed = series.get(metricName);
+        if (parsed == null) {
+            parsed = parse(metricName, metric);
+            series.putIfAbsent(metricName, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * Family and labels of a registry metric name. <i>produce.&lt;topic&gt;.&lt;instrument&gt;</i> and
+     * <i>consume.&lt;topic&gt;</i> carry the topic as a label, as topics may contain dots the instrument is taken from
+     * the end of the name. The error meters <i>produce.&lt;topic&gt;.errors.&lt;exception&gt;</i> also carry the
+     * exception as a label. Every other name becomes a family of its own.
+     *
+     * @param metricName registry metric name
+     * @param metric     metric registered under the name
+     * @return Series
+     */
+    static Series parse(String metricName, Metric metric) {
+        if (metricName.startsWith(PRODUCE)) {
+            final String rest = metricName.substring(PRODUCE.length());
+            final int errors = rest.lastIndexOf(PRODUCE_ERRORS);
+            if (metric instanceof Meter && errors > 0 && rest.indexOf('.', errors + PRODUCE_ERRORS.length()) < 0) {
+                return new Series(PREFIX + "produce_errors", label("topic", rest.substring(0, errors)) + ","
+                        + label("exception", rest.substring(errors + PRODUCE_ERRORS.length())));
+            }
+            final int instrument = rest.lastIndexOf('.');
+            if (instrument > 0 && instrument < rest.length() - 1) {
+                return new Series(PREFIX + "produce_" + sanitize(rest.substring(instrument + 1)),
+                        label("topic", rest.substring(0, instrument)));
+            }
+        } else if (metricName.startsWith(CONSUME) && metricName.length() > CONSUME.length()) {
+            return new Series(PREFIX + "consume", label("topic", metricName.substring(CONSUME.length())));
+        }
+        return new Series(PREFIX + sanitize(metricName), "");
+    }
+
+    /**
+     * Prometheus metric or label name for a name, every character outside [a-zA-Z0-9_] is replaced by an underscore.
+     *
+     * @param name metric name
+     * @return sanitized name
+     */
+    static String sanitize(String name) {
+        final StringBuilder sanitized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9' && i > 0) || c == '_')
+                sanitized.append(c);
+            else
+                sanitized.append('_');
+        }
+        return sanitized.toString();
+    }
+
+    /**
+     * Family name and preformatted labels of a registry metric.
+     */
+    static final class Series {
+
+        final String family;
+        final String labels;
+
+        Series(String family, String labels) {
+            this.family = family;
+            this.labels = labels;
+        }
+    }
+
+    private static final class Sample {
+
+        final Series series;
+        final Metric metric;
+
+        Sample(Series series, Metric metric) {
+            this.series = series;
+            this.metric = metric;
+        }
+    }
+}
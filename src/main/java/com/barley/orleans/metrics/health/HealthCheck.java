@@ -1,14 +1,27 @@
 package com.barley.orleans.metrics.health;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+/**
+ * Health indicator answering from the last sample of ProducerHealth, so health checks never wait on kafka.
+ * Besides UP and DOWN it reports DEGRADED when producing is close to failing, answered with 429 by default, see
+ * <i>endpoints.health.mapping.DEGRADED</i>.
+ */
 @Component
 public class HealthCheck implements HealthIndicator {
 
+    private ProducerHealth producerHealth;
+
+    @Autowired(required = false)
+    void setProducerHealth(ProducerHealth producerHealth) {
+        this.producerHealth = producerHealth;
+    }
+
     @Override
     public Health health() {
-        return Health.up().build();
+        return producerHealth != null ? producerHealth.health() : Health.up().build();
     }
 }
@@ -0,0 +1,278 @@
+package com.barley.orleans.metrics.health;
+
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.broker.ProducerPool;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.broker.TopicMetadataCache;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of the producers, sampled in the background from the kafka producer metrics of every shard and the topic
+ * metadata cache, so reading it never blocks on kafka.
+ * <p>
+ * The health is {@link Status#DOWN} once producing fails: buffers (nearly) exhausted, most records failing or no topic
+ * metadata within its time to live. It is {@link #DEGRADED} before that, when buffers run low, records queue up,
+ * errors rise, requests pile up in flight, metadata gets old or records are being spilled, telling the load balancer
+ * to shed load while calls still succeed.
+ * </p>
+ */
+public final class ProducerHealth {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProducerHealth.class);
+
+    /**
+     * Status of a producer close to failing.
+     */
+    public static final Status DEGRADED = new Status("DEGRADED", "Producing close to failing, shed load");
+
+    private static final String PRODUCER_METRICS = "producer-metrics";
+
+    private final ProducerRegistry producerRegistry;
+    private final TopicMetadataCache topicMetadataCache;
+    private final Thresholds thresholds;
+    private final long staleAfter;
+    private final ScheduledExecutorService sampler;
+    private volatile Health health = Health.unknown().withDetail("reason", "Not sampled yet").build();
+    private volatile long sampled = 0;
+
+    /**
+     * ProducerHealth constructor, starts sampling right away.
+     *
+     * @param producerRegistry   ProducerRegistry whose pools are sampled
+     * @param topicMetadataCache TopicMetadataCache telling if the brokers are reachable, can be null
+     * @param thresholds         Thresholds of the degraded and down states
+     * @param interval           time in milliseconds between two samples
+     */
+    public ProducerHealth(ProducerRegistry producerRegistry, TopicMetadataCache topicMetadataCache, Thresholds thresholds, long interval) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Health sampling interval must be positive");
+        this.producerRegistry = producerRegistry;
+        this.topicMetadataCache = topicMetadataCache;
+        this.thresholds = thresholds;
+        this.staleAfter = TimeUnit.MILLISECONDS.toNanos(3 * interval);
+        this.sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "orleans-health");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.sampler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    logger.warn("Error while sampling producer health", e);
+                }
+            }
+        }, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Last sampled health, DOWN if sampling stopped.
+     *
+     * @return Health
+     */
+    public Health health() {
+        final long sampled = this.sampled;
+        if (sampled != 0 && System.nanoTime() - sampled > staleAfter)
+            return Health.down().withDetail("reason", "Producer health not sampled for "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sampled) + " ms").build();
+        return health;
+    }
+
+    /**
+     * Samples the health now, the scheduled sampling does so every interval.
+     *
+     * @return sampled Health
+     */
+    public Health sample() {
+        final List<Map<MetricName, ? extends Metric>> shardMetrics = new ArrayList<>();
+        int spilling = 0;
+        for (ProducerPool pool : producerRegistry.pools().values()) {
+            for (Producer shard : pool.shards()) {
+                try {
+                    shardMetrics.add(shard.kafkaMetrics());
+                } catch (IOException e) {
+                    logger.warn("Error while reading producer metrics", e);
+                }
+                if (shard.getSpillQueue() != null && shard.getSpillQueue().isActive())
+                    spilling++;
+            }
+        }
+        final Health sampledHealth = evaluate(shardMetrics, spilling);
+        health = sampledHealth;
+        sampled = System.nanoTime();
+        return sampledHealth;
+    }
+
+    /**
+     * Health from the kafka metrics of every shard, the number of spilling shards and the metadata cache.
+     */
+    Health evaluate(List<Map<MetricName, ? extends Metric>> shardMetrics, int spilling) {
+        double bufferAvailable = 1;
+        double queueTime = 0;
+        double errorRatio = 0;
+        double inFlight = 0;
+        for (Map<MetricName, ? extends Metric> metrics : shardMetrics) {
+            final double available = value(metrics, "buffer-available-bytes");
+            final double total = value(metrics, "buffer-total-bytes");
+            if (total > 0)
+                bufferAvailable = Math.min(bufferAvailable, available / total);
+            queueTime = Math.max(queueTime, value(metrics, "record-queue-time-avg"));
+            final double errors = value(metrics, "record-error-rate");
+            final double sent = value(metrics, "record-send-rate");
+            if (errors + sent > 0)
+                errorRatio = Math.max(errorRatio, errors / (errors + sent));
+            inFlight = Math.max(inFlight, value(metrics, "requests-in-flight"));
+        }
+        final List<String> down = new ArrayList<>();
+        final List<String> degraded = new ArrayList<>();
+        if (bufferAvailable < thresholds.getDownBufferAvailable())
+            down.add("buffer exhausted");
+        else if (bufferAvailable < thresholds.getDegradedBufferAvailable())
+            degraded.add("buffer low");
+        if (thresholds.getDownErrorRatio() > 0 && errorRatio > thresholds.getDownErrorRatio())
+            down.add("records failing");
+        else if (thresholds.getDegradedErrorRatio() > 0 && errorRatio > thresholds.getDegradedErrorRatio())
+            degraded.add("errors rising");
+        if (thresholds.getDegradedQueueTime() > 0 && queueTime > thresholds.getDegradedQueueTime())
+            degraded.add("records queueing");
+        if (thresholds.getDegradedInFlight() > 0 && inFlight > thresholds.getDegradedInFlight())
+            degraded.add("requests piling up");
+        if (spilling > 0)
+            degraded.add("spilling");
+        long metadataAge = -1;
+        final TopicMetadataCache metadata = topicMetadataCache;
+        if (metadata != null) {
+            metadataAge = metadata.age();
+            if (!metadata.isFresh())
+                down.add("brokers unreachable");
+            else if (thresholds.getDegradedMetadataAge() > 0 && metadataAge > thresholds.getDegradedMetadataAge())
+                degraded.add("metadata stale");
+        }
+        final Health.Builder builder = !down.isEmpty() ? Health.down() : !degraded.isEmpty() ? Health.status(DEGRADED) : Health.up();
+        if (!down.isEmpty() || !degraded.isEmpty()) {
+            down.addAll(degraded);
+            builder.withDetail("reasons", down);
+        }
+        return builder.withDetail("buffer-available-ratio", bufferAvailable)
+                .withDetail("record-queue-time-avg-ms", queueTime)
+                .withDetail("error-ratio", errorRatio)
+                .withDetail("requests-in-flight", inFlight)
+                .withDetail("spilling-shards", spilling)
+                .withDetail("metadata-age-ms", metadataAge)
+                .build();
+    }
+
+    /**
+     * Stops sampling.
+     */
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    /**
+     * Value of a producer metric, 0 if the producer does not have it or it has no value yet.
+     */
+    private static double value(Map<MetricName, ? extends Metric> metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+            if (metric.getKey().name().equals(name) && metric.getKey().group().equals(PRODUCER_METRICS)) {
+                final double value = metric.getValue().value();
+                return Double.isNaN(value) || Double.isInfinite(value) ? 0 : value;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Limits between the up, degraded and down states. Ratios are between 0 and 1, a limit of 0 disables the check.
+     */
+    public static final class Thresholds {
+        private double degradedBufferAvailable = 0.25;
+        private double downBufferAvailable = 0.05;
+        private double degradedErrorRatio = 0.01;
+        private double downErrorRatio = 0.5;
+        private double degradedQueueTime = 50;
+        private double degradedInFlight = 50;
+        private long degradedMetadataAge = 60000;
+
+        public double getDegradedBufferAvailable() {
+            return degradedBufferAvailable;
+        }
+
+        public void setDegradedBufferAvailable(double degradedBufferAvailable) {
+            this.degradedBufferAvailable = degradedBufferAvailable;
+        }
+
+        public double getDownBufferAvailable() {
+            return downBufferAvailable;
+        }
+
+        public void setDownBufferAvailable(double downBufferAvailable) {
+            this.downBufferAvailable = downBufferAvailable;
+        }
+
+        public double getDegradedErrorRatio() {
+            return degradedErrorRatio;
+        }
+
+        public void setDegradedErrorRatio(double degradedErrorRatio) {
+            this.degradedErrorRatio = degradedErrorRatio;
+        }
+
+        public double getDownErrorRatio() {
+            return downErrorRatio;
+        }
+
+        public void setDownErrorRatio(double downErrorRatio) {
+            this.downErrorRatio = downErrorRatio;
+        }
+
+        /**
+         * Average milliseconds records wait in the accumulator before they are sent.
+         */
+        public double getDegradedQueueTime() {
+            return degradedQueueTime;
+        }
+
+        public void setDegradedQueueTime(double degradedQueueTime) {
+            this.degradedQueueTime = degradedQueueTime;
+        }
+
+        public double getDegradedInFlight() {
+            return degradedInFlight;
+        }
+
+        public void setDegradedInFlight(double degradedInFlight) {
+            this.degradedInFlight = degradedInFlight;
+        }
+
+        /**
+         * Milliseconds since the last successful topic listing.
+         */
+        public long getDegradedMetadataAge() {
+            return degradedMetadataAge;
+        }
+
+        public void setDegradedMetadataAge(long degradedMetadataAge) {
+            this.degradedMetadataAge = degradedMetadataAge;
+        }
+    }
+}
@@ -1,16 +1,32 @@
 package com.barley.orleans.metrics.meters;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.JmxReporter;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Timer;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+/**
+ * Application metrics on a shared Dropwizard registry, published over JMX.
+ * <p>
+ * Metric handles are created once per name and cached, callers on hot paths should keep the returned handle
+ * instead of looking it up by name on every call.
+ * </p>
+ */
 @Service
 public class AppMeters {
 
+    /**
+     * Number of most recent samples timers and histograms compute their percentiles from.
+     */
+    public static final int SAMPLE_WINDOW = 1028;
+
     static final MetricRegistry metrics = new MetricRegistry();
 
     public AppMeters() {
@@ -18,17 +34,73 @@ public class AppMeters {
         reporter.start();
     }
 
-    private final Map<String, Meter> meters = new HashMap<>();
+    private final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
 
     public void increment(String name) {
-        if (meters.containsKey(name)) {
-            meters.get(name).mark();
-        } else {
-            final Meter requests = metrics.meter(name);
-            meters.put(name, requests);
-            requests.mark();
+        mark(name, 1);
+    }
+
+    public void mark(String name, long count) {
+        meter(name).mark(count);
+    }
+
+    /**
+     * Method to get the meter of a name, created on first use.
+     *
+     * @param name metric name
+     * @return Meter
+     */
+    public Meter meter(String name) {
+        Meter meter = meters.get(name);
+        if (meter == null) {
+            meter = metrics.meter(name);
+            final Meter existing = meters.putIfAbsent(name, meter);
+            if (existing != null)
+                meter = existing;
         }
+        return meter;
+    }
+
+    /**
+     * Method to get the timer of a name, created on first use. Percentiles are computed over the last
+     * {@link #SAMPLE_WINDOW} updates, so recording does not allocate.
+     *
+     * @param name metric name
+     * @return Timer
+     */
+    public Timer timer(String name) {
+        return register(name, new Timer(new SlidingWindowReservoir(SAMPLE_WINDOW)));
+    }
+
+    /**
+     * Method to get the histogram of a name, created on first use. Percentiles are computed over the last
+     * {@link #SAMPLE_WINDOW} updates.
+     *
+     * @param name metric name
+     * @return Histogram
+     */
+    public Histogram histogram(String name) {
+        return register(name, new Histogram(new SlidingWindowReservoir(SAMPLE_WINDOW)));
     }
 
+    /**
+     * Registry every metric of the application is registered in.
+     *
+     * @return MetricRegistry
+     */
+    public MetricRegistry registry() {
+        return metrics;
+    }
 
+    @SuppressWarnings("unchecked")
+    private <T extends Metric> T register(String name, T metric) {
+        final Metric existing = metrics.getMetrics().get(name);
+        if (existing != null)
+            return (T) existing;
+        try {
+            return metrics.register(name, metric);
+        } catch (IllegalArgumentException e) {
+            return (T) metrics.getMetrics().get(name);
+        }
+    }
 }
@@ -0,0 +1,143 @@
+package com.barley.orleans.metrics.meters;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per topic produce instruments registered in AppMeters:
+ * <ul>
+ * <li><i>produce.&lt;topic&gt;.serialize</i> timer of payload encoding</li>
+ * <li><i>produce.&lt;topic&gt;.ack</i> timer from send to kafka acknowledgement</li>
+ * <li><i>produce.&lt;topic&gt;.bytes</i> histogram of encoded record sizes</li>
+ * <li><i>produce.&lt;topic&gt;.errors.&lt;exception&gt;</i> meter per exception type</li>
+ * </ul>
+ * Handles are resolved once per topic and exception type, recording does not allocate afterwards. Instruments are
+ * registered for at most maxTopics topics, the topics after those share the instruments of {@link #OTHER_TOPICS}, so
+ * clients naming arbitrary topics cannot grow the metric registry.
+ */
+public class ProducerMeters {
+
+    /**
+     * Default number of topics with their own instruments.
+     */
+    public static final int DEFAULT_MAX_TOPICS = 1000;
+
+    /**
+     * Name in place of the topic for the instruments shared by topics over the limit.
+     */
+    public static final String OTHER_TOPICS = "_other";
+
+    private final AppMeters appMeters;
+    private final int maxTopics;
+    private final ConcurrentMap<String, TopicMeters> topics = new ConcurrentHashMap<>();
+    private volatile TopicMeters otherTopics = null;
+
+    /**
+     * ProducerMeters constructor with {@link #DEFAULT_MAX_TOPICS}.
+     *
+     * @param appMeters AppMeters to register the instruments in
+     */
+    public ProducerMeters(AppMeters appMeters) {
+        this(appMeters, DEFAULT_MAX_TOPICS);
+    }
+
+    /**
+     * ProducerMeters constructor.
+     *
+     * @param appMeters AppMeters to register the instruments in
+     * @param maxTopics number of topics with their own instruments
+     */
+    public ProducerMeters(AppMeters appMeters, int maxTopics) {
+        this.appMeters = appMeters;
+        this.maxTopics = maxTopics;
+    }
+
+    /**
+     * Instruments of a topic, created on first use, those of {@link #OTHER_TOPICS} once maxTopics topics have theirs.
+     *
+     * @param topic topic name
+     * @return TopicMeters
+     */
+    public TopicMeters topic(String topic) {
+        TopicMeters topicMeters = topics.get(topic);
+        if (topicMeters == null) {
+            if (topics.size() >= maxTopics)
+                return otherTopics();
+            topicMeters = new TopicMeters(appMeters, "produce." + topic);
+            final TopicMeters existing = topics.putIfAbsent(topic, topicMeters);
+            if (existing != null)
+                topicMeters = existing;
+        }
+        return topicMeters;
+    }
+
+    private TopicMeters otherTopics() {
+        TopicMeters topicMeters = otherTopics;
+        if (topicMeters == null) {
+            // AppMeters hands out the registered instruments again, a racing thread gets the same ones
+            topicMeters = new TopicMeters(appMeters, "produce." + OTHER_TOPICS);
+            otherTopics = topicMeters;
+        }
+        return topicMeters;
+    }
+
+    /**
+     * Instruments of one topic.
+     */
+    public static final class TopicMeters {
+
+        private final AppMeters appMeters;
+        private final String prefix;
+        private final Timer serialize;
+        private final Timer ack;
+        private final Histogram bytes;
+        private final ConcurrentMap<Class<?>, Meter> errors = new ConcurrentHashMap<>();
+
+        TopicMeters(AppMeters appMeters, String prefix) {
+            this.appMeters = appMeters;
+            this.prefix = prefix;
+            this.serialize = appMeters.timer(prefix + ".serialize");
+            this.ack = appMeters.timer(prefix + ".ack");
+            this.bytes = appMeters.histogram(prefix + ".bytes");
+        }
+
+        public void serialized(long nanos, int size) {
+            serialize.update(nanos, TimeUnit.NANOSECONDS);
+            bytes.update(size);
+        }
+
+        public void acknowledged(long nanos) {
+            ack.update(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public void error(Throwable error) {
+            error(error.getClass());
+        }
+
+        public void error(Class<?> type) {
+            Meter meter = errors.get(type);
+            if (meter == null) {
+                meter = appMeters.meter(prefix + ".errors." + type.getSimpleName());
+                errors.putIfAbsent(type, meter);
+            }
+            meter.mark();
+        }
+
+        public Timer getSerialize() {
+            return serialize;
+        }
+
+        public Timer getAck() {
+            return ack;
+        }
+
+        public Histogram getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.barley.orleans.partition;
+
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sends all payloads of a client, or of a correlation id, to the same partition by placing the partitions on a hash
+ * ring with virtual nodes. Unlike a hash modulo the partition count, adding partitions only moves the keys which now
+ * fall on the new partitions. Payloads without the field are left to kafka.
+ */
+public final class ConsistentHashPartitioner implements PayloadPartitioner {
+
+    public static final String CLIENT = "client-hash";
+    public static final String CORRELATION_ID = "correlation-hash";
+
+    /**
+     * Number of points every partition owns on the ring.
+     */
+    public static final int VIRTUAL_NODES = 64;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final boolean byClient;
+    private final ConcurrentMap<Integer, Ring> rings = new ConcurrentHashMap<>();
+
+    /**
+     * ConsistentHashPartitioner constructor.
+     *
+     * @param byClient true to hash the client of payloads, false to hash their correlation id
+     */
+    public ConsistentHashPartitioner(boolean byClient) {
+        this.byClient = byClient;
+    }
+
+    @Override
+    public String getName() {
+        return byClient ? CLIENT : CORRELATION_ID;
+    }
+
+    @Override
+    public Integer partition(String topic, Payload payload, int size, List<PartitionInfo> partitions) {
+        final String key = byClient ? payload.getClient() : payload.getCorrelationId();
+        if (key == null || partitions == null || partitions.isEmpty())
+            return null;
+        Ring ring = rings.get(partitions.size());
+        if (ring == null) {
+            ring = new Ring(partitions.size());
+            final Ring existing = rings.putIfAbsent(partitions.size(), ring);
+            if (existing != null)
+                ring = existing;
+        }
+        return ring.partition(hash(key, 0));
+    }
+
+    @Override
+    public void completed(String topic, int partition, int size) {
+    }
+
+    private static long hash(String value, int seed) {
+        long hash = (FNV_OFFSET ^ seed) * FNV_PRIME;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // fnv alone leaves short keys close together on the ring
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Ring of the partitions 0 to count - 1, kept as sorted points and their owners.
+     */
+    private static final class Ring {
+        private final long[] points;
+        private final int[] owners;
+
+        private Ring(int count) {
+            final long[][] entries = new long[count * VIRTUAL_NODES][];
+            for (int partition = 0; partition < count; partition++) {
+                for (int node = 0; node < VIRTUAL_NODES; node++) {
+                    entries[partition * VIRTUAL_NODES + node] = new long[]{hash(Integer.toString(partition), node + 1), partition};
+                }
+            }
+            Arrays.sort(entries, new Comparator<long[]>() {
+                @Override
+                public int compare(long[] a, long[] b) {
+                    return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+                }
+            });
+            points = new long[entries.length];
+            owners = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                points[i] = entries[i][0];
+                owners[i] = (int) entries[i][1];
+            }
+        }
+
+        private int partition(long hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0)
+                index = -index - 1;
+            return owners[index == points.length ? 0 : index];
+        }
+    }
+}
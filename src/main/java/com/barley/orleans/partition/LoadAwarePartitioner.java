@@ -0,0 +1,92 @@
+package com.barley.orleans.partition;
+
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends every payload to the available partition with the fewest bytes in flight, sent but not yet acknowledged, so
+ * a partition whose leader is slow or overloaded gets less while it catches up. Ties are broken round-robin.
+ */
+public final class LoadAwarePartitioner implements PayloadPartitioner {
+
+    public static final String NAME = "load-aware";
+
+    private final ConcurrentMap<String, AtomicLongArray> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Integer partition(String topic, Payload payload, int size, List<PartitionInfo> partitions) {
+        if (partitions == null || partitions.isEmpty())
+            return null;
+        final AtomicLongArray bytes = inFlight(topic, partitions);
+        final int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        int chosen = -1;
+        long least = Long.MAX_VALUE;
+        for (int i = 0; i < partitions.size(); i++) {
+            final PartitionInfo partitionInfo = partitions.get((start + i) % partitions.size());
+            if (partitionInfo.leader() == null)
+                continue;
+            final long partitionBytes = bytes.get(partitionInfo.partition());
+            if (partitionBytes < least) {
+                least = partitionBytes;
+                chosen = partitionInfo.partition();
+            }
+        }
+        if (chosen < 0)
+            return null;
+        bytes.addAndGet(chosen, size);
+        return chosen;
+    }
+
+    @Override
+    public void completed(String topic, int partition, int size) {
+        final AtomicLongArray bytes = inFlight.get(topic);
+        if (bytes != null && partition < bytes.length())
+            bytes.addAndGet(partition, -size);
+    }
+
+    /**
+     * Bytes in flight to a partition of a topic.
+     *
+     * @param topic     topic name
+     * @param partition partition
+     * @return bytes in flight, 0 for an unknown partition
+     */
+    public long inFlight(String topic, int partition) {
+        final AtomicLongArray bytes = inFlight.get(topic);
+        return bytes != null && partition < bytes.length() ? bytes.get(partition) : 0;
+    }
+
+    private AtomicLongArray inFlight(String topic, List<PartitionInfo> partitions) {
+        int count = 0;
+        for (PartitionInfo partitionInfo : partitions) {
+            count = Math.max(count, partitionInfo.partition() + 1);
+        }
+        AtomicLongArray bytes = inFlight.get(topic);
+        while (bytes == null || bytes.length() < count) {
+            // partitions were added, the counters of the existing ones carry over
+            final AtomicLongArray grown = new AtomicLongArray(count);
+            if (bytes != null) {
+                for (int i = 0; i < bytes.length(); i++) {
+                    grown.set(i, bytes.get(i));
+                }
+            }
+            if (bytes == null ? inFlight.putIfAbsent(topic, grown) == null : inFlight.replace(topic, bytes, grown))
+                return grown;
+            bytes = inFlight.get(topic);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,91 @@
+package com.barley.orleans.partition;
+
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.properties.ProducerProfile;
+import com.barley.orleans.properties.ProducerProperties;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the PayloadPartitioner of a topic by the name configured for it, see
+ * {@link ProducerProperties#partitioner(String)}. Topics without one are partitioned by kafka.
+ * <p>
+ * The built-in partitioners are {@value StickyPartitioner#NAME}, {@value LoadAwarePartitioner#NAME},
+ * {@value ConsistentHashPartitioner#CLIENT} and {@value ConsistentHashPartitioner#CORRELATION_ID}. Any other name is
+ * taken as the class name of a PayloadPartitioner implementation, instantiated once. The partitioner of at most
+ * {@link ProducerProperties#MAX_CACHED_TOPICS} topics is cached, further topics are resolved on every call.
+ * </p>
+ */
+public final class PayloadPartitioners {
+
+    // marks topics partitioned by kafka in the topic cache, which takes no null values
+    private static final PayloadPartitioner NONE = new LoadAwarePartitioner();
+
+    private final ProducerProperties producerProperties;
+    private final ConcurrentMap<String, PayloadPartitioner> partitioners = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PayloadPartitioner> topics = new ConcurrentHashMap<>();
+
+    /**
+     * PayloadPartitioners with the built-in partitioners registered. Every configured name is resolved right away, so
+     * a misconfigured partitioner fails on startup rather than on produce.
+     *
+     * @param producerProperties ProducerProperties with the partitioner names
+     */
+    public PayloadPartitioners(ProducerProperties producerProperties) {
+        this.producerProperties = producerProperties;
+        register(new StickyPartitioner(producerProperties.getStickyBytes()));
+        register(new LoadAwarePartitioner());
+        register(new ConsistentHashPartitioner(true));
+        register(new ConsistentHashPartitioner(false));
+        for (String name : producerProperties.getPartitioners().values()) {
+            lookup(name);
+        }
+        for (ProducerProfile producerProfile : producerProperties.getProfiles().values()) {
+            lookup(producerProfile.getPartitioner());
+        }
+        lookup(producerProperties.getDefaultPartitioner());
+    }
+
+    /**
+     * Registers a partitioner under its name, replacing a partitioner with the same name.
+     *
+     * @param partitioner PayloadPartitioner to register
+     */
+    public void register(PayloadPartitioner partitioner) {
+        partitioners.put(partitioner.getName(), partitioner);
+        topics.clear();
+    }
+
+    /**
+     * Partitioner of a topic.
+     *
+     * @param topic topic name
+     * @return PayloadPartitioner, null if kafka partitions the topic
+     */
+    public PayloadPartitioner partitioner(String topic) {
+        PayloadPartitioner partitioner = topics.get(topic);
+        if (partitioner == null) {
+            partitioner = lookup(producerProperties.partitioner(topic));
+            if (topics.size() < ProducerProperties.MAX_CACHED_TOPICS)
+                topics.putIfAbsent(topic, partitioner != null ? partitioner : NONE);
+        }
+        return partitioner != NONE ? partitioner : null;
+    }
+
+    private PayloadPartitioner lookup(String name) {
+        if (name == null || name.length() == 0)
+            return null;
+        PayloadPartitioner partitioner = partitioners.get(name);
+        if (partitioner != null)
+            return partitioner;
+        try {
+            partitioner = Class.forName(name).asSubclass(PayloadPartitioner.class).newInstance();
+        } catch (ClassNotFoundException | ClassCastException | InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Unknown partitioner " + name
+                    + ", neither a built-in one nor a PayloadPartitioner class with a public no-argument constructor", e);
+        }
+        final PayloadPartitioner existing = partitioners.putIfAbsent(name, partitioner);
+        return existing != null ? existing : partitioner;
+    }
+}
@@ -0,0 +1,95 @@
+package com.barley.orleans.partition;
+
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends payloads of a topic to one partition until a batch worth of bytes went there, then moves on to another
+ * available partition chosen at random. Batches fill up instead of every record opening a batch on the next partition,
+ * and over time every partition gets the same share.
+ */
+public final class StickyPartitioner implements PayloadPartitioner {
+
+    public static final String NAME = "sticky";
+
+    private final int batchBytes;
+    private final ConcurrentMap<String, Sticky> topics = new ConcurrentHashMap<>();
+
+    /**
+     * StickyPartitioner constructor.
+     *
+     * @param batchBytes bytes sent to a partition before switching, best aligned with <i>batch.size</i>
+     */
+    public StickyPartitioner(int batchBytes) {
+        if (batchBytes < 1)
+            throw new IllegalArgumentException("Sticky partitioner batch bytes must be positive");
+        this.batchBytes = batchBytes;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Integer partition(String topic, Payload payload, int size, List<PartitionInfo> partitions) {
+        if (partitions == null || partitions.isEmpty())
+            return null;
+        Sticky sticky = topics.get(topic);
+        if (sticky == null) {
+            sticky = new Sticky();
+            final Sticky existing = topics.putIfAbsent(topic, sticky);
+            if (existing != null)
+                sticky = existing;
+        }
+        synchronized (sticky) {
+            if (sticky.partition < 0 || sticky.bytes >= batchBytes || !available(partitions, sticky.partition)) {
+                sticky.partition = next(partitions, sticky.partition);
+                sticky.bytes = 0;
+            }
+            sticky.bytes += size;
+            return sticky.partition;
+        }
+    }
+
+    @Override
+    public void completed(String topic, int partition, int size) {
+    }
+
+    private static boolean available(List<PartitionInfo> partitions, int partition) {
+        for (PartitionInfo partitionInfo : partitions) {
+            if (partitionInfo.partition() == partition)
+                return partitionInfo.leader() != null;
+        }
+        return false;
+    }
+
+    /**
+     * Random available partition other than the current one, the current one if it is the only one available, any
+     * partition if none is available.
+     */
+    private static int next(List<PartitionInfo> partitions, int current) {
+        final int start = ThreadLocalRandom.current().nextInt(partitions.size());
+        int fallback = partitions.get(start).partition();
+        for (int i = 0; i < partitions.size(); i++) {
+            final PartitionInfo partitionInfo = partitions.get((start + i) % partitions.size());
+            if (partitionInfo.leader() == null)
+                continue;
+            if (partitionInfo.partition() != current)
+                return partitionInfo.partition();
+            fallback = current;
+        }
+        return fallback;
+    }
+
+    private static final class Sticky {
+        private int partition = -1;
+        private long bytes;
+    }
+}
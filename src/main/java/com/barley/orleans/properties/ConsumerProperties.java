@@ -0,0 +1,92 @@
+package com.barley.orleans.properties;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Configuration class to serve properties for consumer.
+ * <p>
+ * Topics are bound from <i>consumer.topics</i> and any other kafka consumer setting from <i>consumer.kafka.&lt;name&gt;</i>.
+ * </p>
+ */
+@Configuration
+@ConfigurationProperties(prefix = "consumer")
+public class ConsumerProperties {
+
+    @Value("${bootstrap.servers}")
+    String bootstrapServers;
+
+    @Value("${consumer.group.id:orleans}")
+    String groupId;
+
+    @Value("${consumer.threads:1}")
+    int threads;
+
+    @Value("${consumer.poll.timeout.ms:100}")
+    long pollTimeout;
+
+    @Value("${consumer.commit.interval.ms:1000}")
+    long commitInterval;
+
+    @Value("${consumer.commit.batch.size:10000}")
+    int commitBatchSize;
+
+    private List<String> topics = new ArrayList<>();
+
+    private Map<String, String> kafka = new HashMap<>();
+
+    public String getBootstrapServers() {
+        return bootstrapServers;
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getPollTimeout() {
+        return pollTimeout;
+    }
+
+    public long getCommitInterval() {
+        return commitInterval;
+    }
+
+    public int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(List<String> topics) {
+        this.topics = topics;
+    }
+
+    public Map<String, String> getKafka() {
+        return kafka;
+    }
+
+    public void setKafka(Map<String, String> kafka) {
+        this.kafka = kafka;
+    }
+
+    public Properties properties() {
+        Properties properties = new Properties();
+        properties.putAll(kafka);
+        properties.put("bootstrap.servers", getBootstrapServers());
+        properties.put("group.id", getGroupId());
+        return properties;
+    }
+}
@@ -0,0 +1,102 @@
+package com.barley.orleans.properties;
+
+import com.barley.orleans.akka.Backoff;
+import com.barley.orleans.akka.IngestPipeline;
+import com.barley.orleans.config.ActorDeployment;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration class to serve properties for the actor ingest pipeline, see {@link IngestPipeline}, and the other
+ * dispatchers of the actor system.
+ * <p>
+ * The ingest dispatcher is a fork-join pool sized by <i>ingest.dispatcher.parallelism-*</i> and the mailboxes of the
+ * pipeline workers hold at most <i>ingest.mailbox-capacity</i> calls. Actors which block, the ingest workers among
+ * them, run on {@link ActorDeployment#BLOCKING_DISPATCHER}, a fixed pool of <i>actors.blocking-dispatcher.pool-size</i>
+ * threads.
+ * </p>
+ */
+@Configuration
+public class IngestProperties {
+
+    @Value("${ingest.workers:8}")
+    int workers;
+
+    @Value("${ingest.repliers:2}")
+    int repliers;
+
+    @Value("${ingest.mailbox-capacity:1000}")
+    int mailboxCapacity;
+
+    @Value("${ingest.dispatcher.parallelism-min:2}")
+    int parallelismMin;
+
+    @Value("${ingest.dispatcher.parallelism-factor:2.0}")
+    double parallelismFactor;
+
+    @Value("${ingest.dispatcher.parallelism-max:16}")
+    int parallelismMax;
+
+    @Value("${ingest.dispatcher.throughput:5}")
+    int throughput;
+
+    @Value("${ingest.retry.min-delay-ms:100}")
+    long retryMinDelay;
+
+    @Value("${ingest.retry.max-delay-ms:5000}")
+    long retryMaxDelay;
+
+    @Value("${ingest.retry.max-attempts:5}")
+    int retryMaxAttempts;
+
+    @Value("${actors.blocking-dispatcher.pool-size:16}")
+    int blockingPoolSize;
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getRepliers() {
+        return repliers;
+    }
+
+    /**
+     * Backoff of ingest workers retrying a call, <i>ingest.retry.max-attempts</i> times.
+     *
+     * @return Backoff
+     */
+    public Backoff backoff() {
+        return new Backoff(retryMinDelay, retryMaxDelay, retryMaxAttempts);
+    }
+
+    /**
+     * Akka settings of the ingest dispatcher and mailbox and of the blocking dispatcher. The mailbox rejects calls
+     * right away once full.
+     *
+     * @return Config to fall back on the default akka configuration
+     */
+    public Config akkaConfig() {
+        final Map<String, Object> settings = new HashMap<>();
+        settings.put(IngestPipeline.DISPATCHER + ".type", "Dispatcher");
+        settings.put(IngestPipeline.DISPATCHER + ".executor", "fork-join-executor");
+        settings.put(IngestPipeline.DISPATCHER + ".fork-join-executor.parallelism-min", parallelismMin);
+        settings.put(IngestPipeline.DISPATCHER + ".fork-join-executor.parallelism-factor", parallelismFactor);
+        settings.put(IngestPipeline.DISPATCHER + ".fork-join-executor.parallelism-max", parallelismMax);
+        settings.put(IngestPipeline.DISPATCHER + ".throughput", throughput);
+        settings.put(IngestPipeline.MAILBOX + ".mailbox-type", "akka.dispatch.BoundedMailbox");
+        settings.put(IngestPipeline.MAILBOX + ".mailbox-capacity", mailboxCapacity);
+        settings.put(IngestPipeline.MAILBOX + ".mailbox-push-timeout-time", "0s");
+        settings.put(ActorDeployment.BLOCKING_DISPATCHER + ".type", "Dispatcher");
+        settings.put(ActorDeployment.BLOCKING_DISPATCHER + ".executor", "thread-pool-executor");
+        settings.put(ActorDeployment.BLOCKING_DISPATCHER + ".thread-pool-executor.core-pool-size-min", blockingPoolSize);
+        settings.put(ActorDeployment.BLOCKING_DISPATCHER + ".thread-pool-executor.core-pool-size-max", blockingPoolSize);
+        // one message per turn, a blocked actor should not hold its thread for a whole batch
+        settings.put(ActorDeployment.BLOCKING_DISPATCHER + ".throughput", 1);
+        return ConfigFactory.parseMap(settings);
+    }
+}
@@ -0,0 +1,107 @@
+package com.barley.orleans.properties;
+
+import com.barley.orleans.metrics.health.ProducerHealth;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration class to serve properties for metrics export.
+ * <p>
+ * Kafka producer metrics exposed on the scrape endpoint are bound from <i>metrics.kafka</i>, the periodic reporter is
+ * enabled by setting <i>metrics.reporter.type</i> to <i>csv</i> or <i>log</i>. Thresholds of the degraded and down
+ * producer health are bound from <i>metrics.health</i>.
+ * </p>
+ */
+@Configuration
+@ConfigurationProperties(prefix = "metrics")
+public class MetricsProperties {
+
+    /**
+     * Kafka producer metrics exposed when <i>metrics.kafka</i> is not set.
+     */
+    public static final List<String> DEFAULT_KAFKA_METRICS = Arrays.asList("record-send-rate", "record-error-rate",
+            "record-retry-rate", "request-latency-avg", "request-latency-max", "record-queue-time-avg", "record-queue-time-max",
+            "batch-size-avg", "compression-rate-avg", "buffer-available-bytes", "buffer-total-bytes", "waiting-threads",
+            "requests-in-flight", "outgoing-byte-rate", "metadata-age");
+
+    @Value("${metrics.reporter.type:none}")
+    String reporterType;
+
+    @Value("${metrics.reporter.period.seconds:10}")
+    long reporterPeriod;
+
+    @Value("${metrics.reporter.directory:metrics}")
+    String reporterDirectory;
+
+    @Value("${metrics.health.interval-ms:1000}")
+    long healthInterval;
+
+    @Value("${metrics.health.degraded-buffer-available:0.25}")
+    double degradedBufferAvailable;
+
+    @Value("${metrics.health.down-buffer-available:0.05}")
+    double downBufferAvailable;
+
+    @Value("${metrics.health.degraded-error-ratio:0.01}")
+    double degradedErrorRatio;
+
+    @Value("${metrics.health.down-error-ratio:0.5}")
+    double downErrorRatio;
+
+    @Value("${metrics.health.degraded-queue-time-ms:50}")
+    double degradedQueueTime;
+
+    @Value("${metrics.health.degraded-in-flight:50}")
+    double degradedInFlight;
+
+    @Value("${metrics.health.degraded-metadata-age-ms:60000}")
+    long degradedMetadataAge;
+
+    private List<String> kafka = new ArrayList<>(DEFAULT_KAFKA_METRICS);
+
+    public String getReporterType() {
+        return reporterType;
+    }
+
+    public long getReporterPeriod() {
+        return reporterPeriod;
+    }
+
+    public String getReporterDirectory() {
+        return reporterDirectory;
+    }
+
+    public long getHealthInterval() {
+        return healthInterval;
+    }
+
+    /**
+     * Thresholds of the producer health from <i>metrics.health</i>.
+     *
+     * @return ProducerHealth.Thresholds
+     */
+    public ProducerHealth.Thresholds healthThresholds() {
+        final ProducerHealth.Thresholds thresholds = new ProducerHealth.Thresholds();
+        thresholds.setDegradedBufferAvailable(degradedBufferAvailable);
+        thresholds.setDownBufferAvailable(downBufferAvailable);
+        thresholds.setDegradedErrorRatio(degradedErrorRatio);
+        thresholds.setDownErrorRatio(downErrorRatio);
+        thresholds.setDegradedQueueTime(degradedQueueTime);
+        thresholds.setDegradedInFlight(degradedInFlight);
+        thresholds.setDegradedMetadataAge(degradedMetadataAge);
+        return thresholds;
+    }
+
+    public List<String> getKafka() {
+        return kafka;
+    }
+
+    public void setKafka(List<String> kafka) {
+        this.kafka = kafka;
+    }
+}
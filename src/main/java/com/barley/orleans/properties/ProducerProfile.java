@@ -0,0 +1,172 @@
+package com.barley.orleans.properties;
+
+import com.barley.orleans.broker.DeliveryMode;
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Typed producer tuning for a group of topics, bound from <i>producer.profiles.&lt;name&gt;</i>.
+ * <p>
+ * Topics are matched against the regular expressions in topics. Settings left empty keep the kafka client defaults.
+ * </p>
+ */
+public class ProducerProfile {
+    private List<String> topics = new ArrayList<>();
+    private String compressionType;
+    private Integer lingerMs;
+    private Integer batchSize;
+    private Long bufferMemory;
+    private Integer maxInFlightRequestsPerConnection;
+    private String acks;
+    private Integer poolSize;
+    private DeliveryMode deliveryMode;
+    private String partitioner;
+    private Map<String, String> kafka = new HashMap<>();
+
+    private volatile List<Pattern> patterns;
+
+    public List<String> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(List<String> topics) {
+        this.topics = topics;
+        this.patterns = null;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(String compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    public Integer getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(Integer lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Long getBufferMemory() {
+        return bufferMemory;
+    }
+
+    public void setBufferMemory(Long bufferMemory) {
+        this.bufferMemory = bufferMemory;
+    }
+
+    public Integer getMaxInFlightRequestsPerConnection() {
+        return maxInFlightRequestsPerConnection;
+    }
+
+    public void setMaxInFlightRequestsPerConnection(Integer maxInFlightRequestsPerConnection) {
+        this.maxInFlightRequestsPerConnection = maxInFlightRequestsPerConnection;
+    }
+
+    public String getAcks() {
+        return acks;
+    }
+
+    public void setAcks(String acks) {
+        this.acks = acks;
+    }
+
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Partitioner of the topics of this profile, see {@link ProducerProperties#partitioner(String)}.
+     *
+     * @return partitioner name, null to fall back to the default one
+     */
+    public String getPartitioner() {
+        return partitioner;
+    }
+
+    public void setPartitioner(String partitioner) {
+        this.partitioner = partitioner;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public void setDeliveryMode(DeliveryMode deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    public Map<String, String> getKafka() {
+        return kafka;
+    }
+
+    public void setKafka(Map<String, String> kafka) {
+        this.kafka = kafka;
+    }
+
+    /**
+     * Tells if a topic belongs to this profile.
+     *
+     * @param topic topic name
+     * @return boolean
+     */
+    public boolean matches(String topic) {
+        List<Pattern> compiled = patterns;
+        if (compiled == null) {
+            compiled = new ArrayList<>(topics.size());
+            for (String regex : topics) {
+                compiled.add(Pattern.compile(regex));
+            }
+            patterns = compiled;
+        }
+        for (Pattern pattern : compiled) {
+            if (pattern.matcher(topic).matches())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Applies the settings of this profile on top of base properties.
+     *
+     * @param properties base Properties, modified in place
+     * @return the given properties
+     */
+    public Properties apply(Properties properties) {
+        properties.putAll(kafka);
+        if (compressionType != null)
+            properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        if (lingerMs != null)
+            properties.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(lingerMs));
+        if (batchSize != null)
+            properties.put(ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(batchSize));
+        if (bufferMemory != null)
+            properties.put(ProducerConfig.BUFFER_MEMORY_CONFIG, String.valueOf(bufferMemory));
+        if (maxInFlightRequestsPerConnection != null)
+            properties.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, String.valueOf(maxInFlightRequestsPerConnection));
+        if (acks != null)
+            properties.put(ProducerConfig.ACKS_CONFIG, acks);
+        return properties;
+    }
+}
@@ -1,27 +1,509 @@
 package com.barley.orleans.properties;
 
+import com.barley.orleans.broker.AfterCallDispatcher;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.codec.SchemaRegistry;
+import com.barley.orleans.spill.SpillQueue;
+import com.barley.orleans.structure.RateLimit;
+import com.barley.orleans.structure.Schema;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Configuration class to serve properties for producer.
+ * <p>
+ * Per topic delivery modes are bound from <i>producer.delivery-modes.&lt;topic&gt;</i> and payload schemas from
+ * <i>producer.schemas.&lt;schemaId&gt;.id</i> and <i>.codec</i>, per topic partitioners from
+ * <i>producer.partitioners.&lt;topic&gt;</i>, rate limits of single clients and topics from
+ * <i>producer.client-limits.&lt;client&gt;</i> and <i>producer.topic-limits.&lt;topic&gt;</i>. Producer tuning for groups
+ * of topics is bound from <i>producer.profiles.&lt;name&gt;</i>, see {@link ProducerProfile}.
+ * </p>
  */
 @Configuration
+@ConfigurationProperties(prefix = "producer")
 public class ProducerProperties {
 
+    /**
+     * Name of the profile serving topics not matched by any configured profile.
+     */
+    public static final String DEFAULT_PROFILE = "default";
+
+    /**
+     * Topics whose profile is cached.
+     */
+    public static final int MAX_CACHED_TOPICS = 10000;
+
     @Value("${bootstrap.servers}")
     String bootstrapServers;
 
+    @Value("${producer.async.timeout.ms:30000}")
+    long asyncTimeout;
+
+    @Value("${producer.ack.timeout.ms:100}")
+    long ackTimeout;
+
+    @Value("${producer.delivery.mode:LEADER_ACK}")
+    DeliveryMode deliveryMode;
+
+    @Value("${producer.pool.size:1}")
+    int poolSize;
+
+    @Value("${producer.schema.registry.file:}")
+    String schemaRegistryFile;
+
+    @Value("${producer.spill.enabled:false}")
+    boolean spillEnabled;
+
+    @Value("${producer.spill.directory:spill}")
+    String spillDirectory;
+
+    @Value("${producer.spill.segment-bytes:67108864}")
+    int spillSegmentBytes;
+
+    @Value("${producer.spill.max-bytes:1073741824}")
+    long spillMaxBytes;
+
+    @Value("${producer.spill.sync:INTERVAL}")
+    SpillQueue.SyncPolicy spillSync;
+
+    @Value("${producer.spill.sync-interval-ms:1000}")
+    long spillSyncInterval;
+
+    @Value("${producer.spill.replay-interval-ms:1000}")
+    long spillReplayInterval;
+
+    @Value("${producer.spill.max-block-ms:100}")
+    long spillMaxBlock;
+
+    @Value("${producer.dedup.enabled:false}")
+    boolean dedupEnabled;
+
+    @Value("${producer.dedup.window-ms:60000}")
+    long dedupWindow;
+
+    @Value("${producer.dedup.capacity:1048576}")
+    int dedupCapacity;
+
+    @Value("${producer.dedup.shards:16}")
+    int dedupShards;
+
+    @Value("${producer.coalesce.window-ms:2}")
+    long coalesceWindow;
+
+    @Value("${producer.coalesce.max-records:500}")
+    int coalesceMaxRecords;
+
+    @Value("${producer.coalesce.capacity:10000}")
+    int coalesceCapacity;
+
+    @Value("${producer.metadata.refresh-ms:30000}")
+    long metadataRefresh;
+
+    @Value("${producer.metadata.ttl-ms:300000}")
+    long metadataTtl;
+
+    @Value("${producer.metadata.miss-refresh-ms:1000}")
+    long metadataMissRefresh;
+
+    @Value("${producer.metadata.reject-unknown-topics:false}")
+    boolean rejectUnknownTopics;
+
+    @Value("${producer.partitioning.default:}")
+    String defaultPartitioner;
+
+    @Value("${producer.partitioning.sticky-bytes:16384}")
+    int stickyBytes;
+
+    @Value("${producer.rate-limit.client-rate:0}")
+    double clientRate;
+
+    @Value("${producer.rate-limit.client-burst:0}")
+    int clientBurst;
+
+    @Value("${producer.rate-limit.topic-rate:0}")
+    double topicRate;
+
+    @Value("${producer.rate-limit.topic-burst:0}")
+    int topicBurst;
+
+    @Value("${producer.rate-limit.max-buckets:100000}")
+    int rateLimitMaxBuckets;
+
+    @Value("${producer.in-flight.max-bytes:67108864}")
+    long inFlightMaxBytes;
+
+    @Value("${producer.in-flight.max-records:100000}")
+    long inFlightMaxRecords;
+
+    @Value("${producer.in-flight.topic-max-bytes:0}")
+    long inFlightTopicMaxBytes;
+
+    @Value("${producer.in-flight.topic-max-records:0}")
+    long inFlightTopicMaxRecords;
+
+    @Value("${producer.in-flight.max-topics:10000}")
+    int inFlightMaxTopics;
+
+    @Value("${producer.in-flight.max-wait-ms:0}")
+    long inFlightMaxWait;
+
+    @Value("${producer.after-call.threads:2}")
+    int afterCallThreads;
+
+    @Value("${producer.after-call.queue-capacity:10000}")
+    int afterCallQueueCapacity;
+
+    @Value("${producer.after-call.overflow:DROP}")
+    AfterCallDispatcher.OverflowPolicy afterCallOverflow;
+
+    private Map<String, DeliveryMode> deliveryModes = new HashMap<>();
+
+    private Map<String, Schema> schemas = new HashMap<>();
+
+    private Map<String, String> partitioners = new HashMap<>();
+
+    private Map<String, RateLimit> clientLimits = new HashMap<>();
+
+    private Map<String, RateLimit> topicLimits = new HashMap<>();
+
+    private Map<String, ProducerProfile> profiles = new LinkedHashMap<>();
+
+    private final ConcurrentMap<String, String> topicProfiles = new ConcurrentHashMap<>();
+
     public String getBootstrapServers() {
         return bootstrapServers;
     }
 
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public long getAckTimeout() {
+        return ackTimeout;
+    }
+
+    public DeliveryMode getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getAfterCallThreads() {
+        return afterCallThreads;
+    }
+
+    public int getAfterCallQueueCapacity() {
+        return afterCallQueueCapacity;
+    }
+
+    public AfterCallDispatcher.OverflowPolicy getAfterCallOverflow() {
+        return afterCallOverflow;
+    }
+
+    public boolean isSpillEnabled() {
+        return spillEnabled;
+    }
+
+    public String getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public int getSpillSegmentBytes() {
+        return spillSegmentBytes;
+    }
+
+    public long getSpillMaxBytes() {
+        return spillMaxBytes;
+    }
+
+    public SpillQueue.SyncPolicy getSpillSync() {
+        return spillSync;
+    }
+
+    public long getSpillSyncInterval() {
+        return spillSyncInterval;
+    }
+
+    public long getSpillReplayInterval() {
+        return spillReplayInterval;
+    }
+
+    public boolean isDedupEnabled() {
+        return dedupEnabled;
+    }
+
+    public long getDedupWindow() {
+        return dedupWindow;
+    }
+
+    public int getDedupCapacity() {
+        return dedupCapacity;
+    }
+
+    public int getDedupShards() {
+        return dedupShards;
+    }
+
+    public long getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public int getCoalesceMaxRecords() {
+        return coalesceMaxRecords;
+    }
+
+    public int getCoalesceCapacity() {
+        return coalesceCapacity;
+    }
+
+    public long getMetadataRefresh() {
+        return metadataRefresh;
+    }
+
+    public long getMetadataTtl() {
+        return metadataTtl;
+    }
+
+    public long getMetadataMissRefresh() {
+        return metadataMissRefresh;
+    }
+
+    public boolean isRejectUnknownTopics() {
+        return rejectUnknownTopics;
+    }
+
+    public double getClientRate() {
+        return clientRate;
+    }
+
+    public int getClientBurst() {
+        return clientBurst;
+    }
+
+    public double getTopicRate() {
+        return topicRate;
+    }
+
+    public int getTopicBurst() {
+        return topicBurst;
+    }
+
+    public int getRateLimitMaxBuckets() {
+        return rateLimitMaxBuckets;
+    }
+
+    public long getInFlightMaxBytes() {
+        return inFlightMaxBytes;
+    }
+
+    public long getInFlightMaxRecords() {
+        return inFlightMaxRecords;
+    }
+
+    public long getInFlightTopicMaxBytes() {
+        return inFlightTopicMaxBytes;
+    }
+
+    public long getInFlightTopicMaxRecords() {
+        return inFlightTopicMaxRecords;
+    }
+
+    public int getInFlightMaxTopics() {
+        return inFlightMaxTopics;
+    }
+
+    public long getInFlightMaxWait() {
+        return inFlightMaxWait;
+    }
+
+    public Map<String, DeliveryMode> getDeliveryModes() {
+        return deliveryModes;
+    }
+
+    public void setDeliveryModes(Map<String, DeliveryMode> deliveryModes) {
+        this.deliveryModes = deliveryModes;
+    }
+
+    public String getDefaultPartitioner() {
+        return defaultPartitioner;
+    }
+
+    public int getStickyBytes() {
+        return stickyBytes;
+    }
+
+    public Map<String, String> getPartitioners() {
+        return partitioners;
+    }
+
+    public void setPartitioners(Map<String, String> partitioners) {
+        this.partitioners = partitioners;
+    }
+
+    public Map<String, RateLimit> getClientLimits() {
+        return clientLimits;
+    }
+
+    public void setClientLimits(Map<String, RateLimit> clientLimits) {
+        this.clientLimits = clientLimits;
+    }
+
+    public Map<String, RateLimit> getTopicLimits() {
+        return topicLimits;
+    }
+
+    public void setTopicLimits(Map<String, RateLimit> topicLimits) {
+        this.topicLimits = topicLimits;
+    }
+
+    public String getSchemaRegistryFile() {
+        return schemaRegistryFile;
+    }
+
+    public Map<String, Schema> getSchemas() {
+        return schemas;
+    }
+
+    public void setSchemas(Map<String, Schema> schemas) {
+        this.schemas = schemas;
+    }
+
+    public Map<String, ProducerProfile> getProfiles() {
+        return profiles;
+    }
+
+    public void setProfiles(Map<String, ProducerProfile> profiles) {
+        this.profiles = profiles;
+        this.topicProfiles.clear();
+    }
+
+    /**
+     * Name of the first profile whose topic patterns match the topic, the default profile if none does. Matches are
+     * cached for at most {@link #MAX_CACHED_TOPICS} topics, further topics are matched on every call, so arbitrary
+     * topic names of clients cannot grow the cache.
+     *
+     * @param topic topic name
+     * @return profile name
+     */
+    public String profile(String topic) {
+        String profile = topicProfiles.get(topic);
+        if (profile == null) {
+            profile = DEFAULT_PROFILE;
+            for (Map.Entry<String, ProducerProfile> entry : profiles.entrySet()) {
+                if (entry.getValue().matches(topic)) {
+                    profile = entry.getKey();
+                    break;
+                }
+            }
+            if (topicProfiles.size() < MAX_CACHED_TOPICS)
+                topicProfiles.put(topic, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Number of kafka producers for a profile, falls back to <i>producer.pool.size</i>.
+     *
+     * @param profile profile name
+     * @return pool size
+     */
+    public int poolSize(String profile) {
+        final ProducerProfile producerProfile = profiles.get(profile);
+        return producerProfile != null && producerProfile.getPoolSize() != null ? producerProfile.getPoolSize() : poolSize;
+    }
+
+    /**
+     * SchemaRegistry with the schemas of <i>producer.schemas</i> and of the file <i>producer.schema.registry.file</i> if set.
+     *
+     * @return SchemaRegistry
+     * @throws IOException if the schema registry file cannot be read
+     */
+    public SchemaRegistry schemaRegistry() throws IOException {
+        final SchemaRegistry schemaRegistry = new SchemaRegistry();
+        if (schemaRegistryFile != null && schemaRegistryFile.length() > 0)
+            schemaRegistry.load(new File(schemaRegistryFile));
+        for (Map.Entry<String, Schema> schema : schemas.entrySet()) {
+            schemaRegistry.register(new Schema(schema.getKey(), schema.getValue().getId(), schema.getValue().getCodec()));
+        }
+        return schemaRegistry;
+    }
+
+    /**
+     * Delivery mode configured for a topic, falls back to the delivery mode of its profile and then to the default delivery mode.
+     *
+     * @param topic topic name
+     * @return DeliveryMode for the topic
+     */
+    public DeliveryMode deliveryMode(String topic) {
+        final DeliveryMode topicMode = deliveryModes.get(topic);
+        if (topicMode != null)
+            return topicMode;
+        final ProducerProfile producerProfile = profiles.get(profile(topic));
+        return producerProfile != null && producerProfile.getDeliveryMode() != null ? producerProfile.getDeliveryMode() : deliveryMode;
+    }
+
+    /**
+     * Partitioner configured for a topic, falls back to the partitioner of its profile and then to
+     * <i>producer.partitioning.default</i>.
+     *
+     * @param topic topic name
+     * @return partitioner name, null or empty if kafka partitions the topic
+     */
+    public String partitioner(String topic) {
+        final String topicPartitioner = partitioners.get(topic);
+        if (topicPartitioner != null)
+            return topicPartitioner;
+        final ProducerProfile producerProfile = profiles.get(profile(topic));
+        return producerProfile != null && producerProfile.getPartitioner() != null ? producerProfile.getPartitioner() : defaultPartitioner;
+    }
+
     public Properties properties() {
         Properties properties = new Properties();
         properties.put("bootstrap.servers", getBootstrapServers());
         return properties;
     }
 
+    /**
+     * Properties for a producer serving the given delivery mode.
+     *
+     * @param deliveryMode DeliveryMode the producer is used for
+     * @return Properties with <i>acks</i> set for the mode
+     */
+    public Properties properties(DeliveryMode deliveryMode) {
+        return properties(DEFAULT_PROFILE, deliveryMode);
+    }
+
+    /**
+     * Properties for a producer of a profile serving the given delivery mode. The acks of the profile are kept
+     * unless the mode needs all replicas. With spilling enabled <i>max.block.ms</i> defaults to <i>producer.spill.max-block-ms</i>.
+     *
+     * @param profile      profile name
+     * @param deliveryMode DeliveryMode the producer is used for
+     * @return Properties with the profile settings and <i>acks</i> applied
+     */
+    public Properties properties(String profile, DeliveryMode deliveryMode) {
+        Properties properties = properties();
+        final ProducerProfile producerProfile = profiles.get(profile);
+        if (producerProfile != null)
+            producerProfile.apply(properties);
+        if (deliveryMode == DeliveryMode.ALL_REPLICAS || !properties.containsKey("acks"))
+            properties.put("acks", deliveryMode.getAcks());
+        // with a spill queue, waiting long for metadata or buffer space would only hold up the request
+        if (spillEnabled && !properties.containsKey("max.block.ms"))
+            properties.put("max.block.ms", String.valueOf(spillMaxBlock));
+        return properties;
+    }
+
 }
@@ -0,0 +1,468 @@
+package com.barley.orleans.spill;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Durable FIFO of kafka records on local disk, made of append-only, memory-mapped segment files.
+ * <p>
+ * A record is laid out as <i>int length, int crc32, short topic length, topic, int partition (-1 for none),
+ * int key length (-1 for null), key, value</i>.
+ * The length is written last, so a record torn by a crash reads as the end of its segment. Segments are named after
+ * a growing sequence number and deleted once read and committed; the read position survives restarts in a
+ * <i>checkpoint</i> file next to them.
+ * </p>
+ * <p>
+ * Records are read in batches: {@link #read(int, int)} returns the next records, {@link #commit()} consumes them and
+ * {@link #rewind()} makes them readable again, so a failed replay is retried from the same record.
+ * </p>
+ */
+public class SpillQueue implements Closeable {
+
+    /**
+     * When appended records are forced to disk.
+     */
+    public enum SyncPolicy {
+        /**
+         * Leave it to the operating system.
+         */
+        NEVER,
+        /**
+         * At most once per sync interval.
+         */
+        INTERVAL,
+        /**
+         * After every record.
+         */
+        ALWAYS
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".spill";
+    private static final String CHECKPOINT = "checkpoint";
+    private static final int HEADER = 8;
+    private static final Object UNSAFE = unsafe();
+    private static final Method INVOKE_CLEANER = invokeCleaner();
+    private static final Method CLEANER = INVOKE_CLEANER == null ? cleaner() : null;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final SyncPolicy syncPolicy;
+    private final long syncInterval;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private long nextBase;
+    private int readIndex;
+    private int readPosition;
+    private int pendingIndex = -1;
+    private int pendingPosition;
+    private long pendingRecords;
+    private long records;
+    private long lastSync = System.currentTimeMillis();
+    private boolean dirty;
+    private boolean closed;
+    private volatile boolean active;
+
+    /**
+     * SpillQueue constructor, recovering the segments and read position left in the directory.
+     *
+     * @param directory    directory of the segment files, created if missing
+     * @param segmentBytes size of one segment file, also the largest record accepted
+     * @param maxBytes     disk space the segment files may take, appends fail beyond it
+     * @param syncPolicy   SyncPolicy of appended records
+     * @param syncInterval time in milliseconds between forced writes with {@link SyncPolicy#INTERVAL}
+     * @throws IOException if the directory or its files cannot be read
+     */
+    public SpillQueue(File directory, int segmentBytes, long maxBytes, SyncPolicy syncPolicy, long syncInterval) throws IOException {
+        if (segmentBytes <= HEADER || maxBytes < segmentBytes)
+            throw new IllegalArgumentException("Spill segments need more than " + HEADER + " bytes and must fit in the disk cap");
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.syncPolicy = syncPolicy;
+        this.syncInterval = syncInterval;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create spill directory " + directory.getAbsolutePath());
+        recover();
+    }
+
+    /**
+     * Method to append a record.
+     *
+     * @param topic     topic of the record
+     * @param partition partition of the record, can be null
+     * @param key       key of the record, can be null
+     * @param value     encoded value of the record
+     * @return false if the record does not fit in a segment, the disk cap is reached or the queue is closed
+     * @throws IOException if a new segment file cannot be created
+     */
+    public synchronized boolean append(String topic, Integer partition, String key, byte[] value) throws IOException {
+        if (closed)
+            return false;
+        final byte[] topicBytes = topic.getBytes(UTF8);
+        final byte[] keyBytes = key != null ? key.getBytes(UTF8) : null;
+        final int bodyLength = 2 + topicBytes.length + 4 + 4 + (keyBytes != null ? keyBytes.length : 0) + value.length;
+        if (HEADER + bodyLength > segmentBytes)
+            return false;
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (tail == null || tail.writePosition + HEADER + bodyLength > segmentBytes) {
+            if ((segments.size() + 1L) * segmentBytes > maxBytes)
+                return false;
+            tail = openSegment(nextBase++, true);
+            segments.add(tail);
+        }
+        final ByteBuffer body = ByteBuffer.allocate(bodyLength);
+        body.putShort((short) topicBytes.length).put(topicBytes).putInt(partition != null ? partition : -1);
+        if (keyBytes != null)
+            body.putInt(keyBytes.length).put(keyBytes);
+        else
+            body.putInt(-1);
+        body.put(value);
+        final CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, bodyLength);
+
+        final ByteBuffer buffer = tail.buffer.duplicate();
+        buffer.position(tail.writePosition + 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body.array(), 0, bodyLength);
+        buffer.putInt(tail.writePosition, bodyLength);
+        tail.writePosition += HEADER + bodyLength;
+        records++;
+        active = true;
+        dirty = true;
+        if (syncPolicy == SyncPolicy.ALWAYS || (syncPolicy == SyncPolicy.INTERVAL && System.currentTimeMillis() - lastSync >= syncInterval))
+            sync();
+        return true;
+    }
+
+    /**
+     * Method to read the next records without consuming them. A second read before commit or rewind continues after
+     * the records returned by the first one.
+     *
+     * @param maxRecords maximum number of records to return
+     * @param maxBytes   maximum number of value bytes to return, at least one record is returned if there is any
+     * @return records in append order, empty if there are none
+     */
+    public synchronized List<SpillRecord> read(int maxRecords, int maxBytes) {
+        int index = pendingIndex >= 0 ? pendingIndex : readIndex;
+        int position = pendingIndex >= 0 ? pendingPosition : readPosition;
+        final List<SpillRecord> batch = new ArrayList<>();
+        int bytes = 0;
+        while (index < segments.size() && batch.size() < maxRecords && (batch.isEmpty() || bytes < maxBytes)) {
+            final Segment segment = segments.get(index);
+            if (position >= segment.writePosition) {
+                if (index == segments.size() - 1)
+                    break;
+                index++;
+                position = 0;
+                continue;
+            }
+            final ByteBuffer buffer = segment.buffer.duplicate();
+            final int length = buffer.getInt(position);
+            buffer.position(position + HEADER);
+            final byte[] topic = new byte[buffer.getShort()];
+            buffer.get(topic);
+            final int partition = buffer.getInt();
+            final int keyLength = buffer.getInt();
+            byte[] key = null;
+            if (keyLength >= 0) {
+                key = new byte[keyLength];
+                buffer.get(key);
+            }
+            final byte[] value = new byte[length - 2 - topic.length - 4 - 4 - Math.max(keyLength, 0)];
+            buffer.get(value);
+            batch.add(new SpillRecord(new String(topic, UTF8), partition >= 0 ? partition : null, key != null ? new String(key, UTF8) : null, value));
+            bytes += value.length;
+            position += HEADER + length;
+        }
+        if (!batch.isEmpty()) {
+            pendingIndex = index;
+            pendingPosition = position;
+            pendingRecords += batch.size();
+        }
+        return batch;
+    }
+
+    /**
+     * Method to consume the records read so far, deleting segments which are read completely.
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized void commit() throws IOException {
+        if (pendingIndex < 0)
+            return;
+        readIndex = pendingIndex;
+        readPosition = pendingPosition;
+        records -= pendingRecords;
+        pendingIndex = -1;
+        pendingRecords = 0;
+        while (readIndex > 0) {
+            delete(segments.remove(0));
+            readIndex--;
+        }
+        if (records == 0) {
+            for (Segment segment : segments) {
+                delete(segment);
+            }
+            segments.clear();
+            readIndex = 0;
+            readPosition = 0;
+            active = false;
+        }
+        writeCheckpoint();
+    }
+
+    /**
+     * Method to make the records read since the last commit readable again.
+     */
+    public synchronized void rewind() {
+        pendingIndex = -1;
+        pendingRecords = 0;
+    }
+
+    /**
+     * Method to force appended records to disk.
+     */
+    public synchronized void sync() {
+        if (!dirty)
+            return;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        dirty = false;
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Tells if records were spilled and not yet replayed. While active, new records should be appended here as well
+     * to keep them in order behind the spilled ones.
+     *
+     * @return boolean
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Number of records not yet committed.
+     *
+     * @return long
+     */
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Disk space taken by the segment files.
+     *
+     * @return bytes
+     */
+    public synchronized long bytes() {
+        return (long) segments.size() * segmentBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        sync();
+        writeCheckpoint();
+    }
+
+    private void recover() throws IOException {
+        long checkpointBase = -1;
+        int checkpointPosition = 0;
+        final File checkpoint = new File(directory, CHECKPOINT);
+        if (checkpoint.isFile()) {
+            final String[] parts = new String(Files.readAllBytes(checkpoint.toPath()), UTF8).trim().split(" ");
+            checkpointBase = Long.parseLong(parts[0]);
+            checkpointPosition = Integer.parseInt(parts[1]);
+        }
+        final File[] files = directory.listFiles();
+        final List<Long> bases = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SUFFIX))
+                    bases.add(Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(bases);
+        nextBase = checkpointBase + 1;
+        for (Long base : bases) {
+            final Segment segment = openSegment(base, false);
+            nextBase = Math.max(nextBase, base + 1);
+            if (base < checkpointBase) {
+                delete(segment);
+                continue;
+            }
+            int position = 0;
+            int next;
+            while ((next = next(segment, position)) > 0) {
+                position = next;
+            }
+            segment.writePosition = position;
+            segments.add(segment);
+        }
+        readPosition = !segments.isEmpty() && segments.get(0).base == checkpointBase ? checkpointPosition : 0;
+        for (int i = 0; i < segments.size(); i++) {
+            int position = i == 0 ? readPosition : 0;
+            while (position < segments.get(i).writePosition) {
+                position = next(segments.get(i), position);
+                records++;
+            }
+        }
+        active = records > 0;
+        if (active)
+            logger.info(records + " spilled records to replay from " + directory.getAbsolutePath());
+    }
+
+    /**
+     * Position after the valid record at a position of a segment.
+     *
+     * @return next position, -1 if there is no valid record at the position
+     */
+    private int next(Segment segment, int position) {
+        if (position + HEADER > segmentBytes)
+            return -1;
+        final int length = segment.buffer.getInt(position);
+        if (length <= 0 || position + HEADER + length > segmentBytes)
+            return -1;
+        final byte[] body = new byte[length];
+        final ByteBuffer buffer = segment.buffer.duplicate();
+        buffer.position(position + HEADER);
+        buffer.get(body);
+        final CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+        return (int) crc.getValue() == segment.buffer.getInt(position + 4) ? position + HEADER + length : -1;
+    }
+
+    private Segment openSegment(long base, boolean create) throws IOException {
+        final File file = new File(directory, String.format("%020d%s", base, SUFFIX));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            final MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            if (create)
+                logger.info("Spilling to new segment " + file.getAbsolutePath());
+            return new Segment(base, file, buffer);
+        }
+    }
+
+    private void delete(Segment segment) {
+        // the file keeps its disk blocks while it is mapped, callers hold the lock and never touch the segment again
+        unmap(segment.buffer);
+        if (!segment.file.delete())
+            logger.warn("Cannot delete spill segment " + segment.file.getAbsolutePath());
+    }
+
+    /**
+     * Method to release the mapping of a buffer right away instead of once it is garbage collected. Uses
+     * sun.misc.Unsafe#invokeCleaner where available and DirectBuffer#cleaner otherwise, both looked up reflectively;
+     * if neither is accessible the mapping is left to the garbage collector.
+     *
+     * @param buffer MappedByteBuffer which must not be accessed afterwards
+     */
+    private void unmap(MappedByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEANER != null) {
+                final Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null)
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            logger.debug("Cannot unmap spill segment, leaving it to the garbage collector", e);
+        }
+    }
+
+    private static Object unsafe() {
+        try {
+            final Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return field.get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Method invokeCleaner() {
+        try {
+            return UNSAFE != null ? UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Method cleaner() {
+        try {
+            final Method method = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+            method.setAccessible(true);
+            return method;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        final long base = segments.isEmpty() ? nextBase : segments.get(readIndex).base;
+        final File temporary = new File(directory, CHECKPOINT + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            out.write((base + " " + readPosition).getBytes(UTF8));
+            out.getFD().sync();
+        }
+        Files.move(temporary.toPath(), new File(directory, CHECKPOINT).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return "SpillQueue{" +
+                "directory=" + directory +
+                ", segments=" + Arrays.toString(segments.toArray()) +
+                ", records=" + records +
+                '}';
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final File file;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+
+        private Segment(long base, File file, MappedByteBuffer buffer) {
+            this.base = base;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + "@" + writePosition;
+        }
+    }
+}
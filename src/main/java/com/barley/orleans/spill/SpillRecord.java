@@ -0,0 +1,44 @@
+package com.barley.orleans.spill;
+
+/**
+ * Encoded kafka record kept in a SpillQueue.
+ */
+public class SpillRecord {
+    private final String topic;
+    private final Integer partition;
+    private final String key;
+    private final byte[] value;
+
+    public SpillRecord(String topic, Integer partition, String key, byte[] value) {
+        this.topic = topic;
+        this.partition = partition;
+        this.key = key;
+        this.value = value;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public Integer getPartition() {
+        return partition;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "SpillRecord{" +
+                "topic='" + topic + '\'' +
+                ", partition=" + partition +
+                ", key='" + key + '\'' +
+                ", value=" + value.length + " bytes" +
+                '}';
+    }
+}
@@ -0,0 +1,166 @@
+package com.barley.orleans.spill;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Replays a SpillQueue to kafka in append order. Records are sent in batches and committed once the whole batch is
+ * acknowledged, a failed batch is retried after the replay interval, so a record can be delivered more than once.
+ * <p>
+ * Records kafka failed are handed off from its I/O thread with {@link #handoff(String, Integer, String, byte[])} and
+ * appended to the queue by the replay thread, so the kafka producer never waits on the disk. They are appended in the
+ * order kafka failed them; records a request thread spills meanwhile can be appended ahead of them.
+ * </p>
+ */
+public class SpillReplayer implements Runnable {
+
+    public static final int BATCH_RECORDS = 1000;
+    public static final int BATCH_BYTES = 4 * 1024 * 1024;
+    public static final long SEND_TIMEOUT = 30000;
+    public static final int HANDOFF_RECORDS = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final SpillQueue spillQueue;
+    private final Producer<String, byte[]> kafkaProducer;
+    private final long replayInterval;
+    private final BlockingQueue<SpillRecord> handoff = new ArrayBlockingQueue<>(HANDOFF_RECORDS);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    /**
+     * SpillReplayer constructor.
+     *
+     * @param spillQueue     SpillQueue to replay
+     * @param kafkaProducer  kafka producer to send the records with
+     * @param replayInterval time in milliseconds between attempts while the queue is empty or kafka fails
+     */
+    public SpillReplayer(SpillQueue spillQueue, Producer<String, byte[]> kafkaProducer, long replayInterval) {
+        this.spillQueue = spillQueue;
+        this.kafkaProducer = kafkaProducer;
+        this.replayInterval = replayInterval;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                appendHandedOff();
+                if (!replayBatch()) {
+                    spillQueue.sync();
+                    synchronized (this) {
+                        if (running && handoff.isEmpty())
+                            wait(replayInterval);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // records handed off while stopping still reach the disk, they are replayed after a restart
+            appendHandedOff();
+            stopped.countDown();
+        }
+    }
+
+    /**
+     * Method to hand a record kafka failed to the replay thread, which appends it to the queue.
+     *
+     * @param topic     topic of the record
+     * @param partition partition of the record, can be null
+     * @param key       key of the record, can be null
+     * @param value     encoded value of the record
+     * @return true if the record was taken, false if too many records wait to be appended
+     */
+    public boolean handoff(String topic, Integer partition, String key, byte[] value) {
+        if (!handoff.offer(new SpillRecord(topic, partition, key, value)))
+            return false;
+        synchronized (this) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Tells if handed off records wait to be appended to the queue.
+     *
+     * @return boolean
+     */
+    public boolean hasPending() {
+        return !handoff.isEmpty();
+    }
+
+    /**
+     * Method to append the handed off records to the queue. A record the queue cannot take is lost, as kafka failed it
+     * and its response already tells it was spilled.
+     */
+    public void appendHandedOff() {
+        SpillRecord record;
+        while ((record = handoff.poll()) != null) {
+            try {
+                if (!spillQueue.append(record.getTopic(), record.getPartition(), record.getKey(), record.getValue()))
+                    logger.error("Spill queue " + spillQueue.getDirectory() + " is full, record for topic: " + record.getTopic() + " is lost");
+            } catch (IOException e) {
+                logger.error("Error while spilling record for topic: " + record.getTopic() + ", record is lost", e);
+            }
+        }
+    }
+
+    /**
+     * Method to replay the next batch of records.
+     *
+     * @return true if a batch was replayed and committed
+     */
+    boolean replayBatch() throws InterruptedException {
+        final List<SpillRecord> batch = spillQueue.read(BATCH_RECORDS, BATCH_BYTES);
+        if (batch.isEmpty())
+            return false;
+        final List<Future<RecordMetadata>> futures = new ArrayList<>(batch.size());
+        try {
+            for (SpillRecord record : batch) {
+                futures.add(kafkaProducer.send(new ProducerRecord<>(record.getTopic(), record.getPartition(), record.getKey(), record.getValue())));
+            }
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SEND_TIMEOUT);
+            for (Future<RecordMetadata> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            spillQueue.commit();
+            return true;
+        } catch (KafkaException | ExecutionException | TimeoutException e) {
+            logger.warn("Replaying " + batch.size() + " spilled records from " + spillQueue.getDirectory() + " failed, retrying in " + replayInterval + " ms", e);
+        } catch (IOException e) {
+            logger.error("Cannot commit replayed records of " + spillQueue.getDirectory(), e);
+        }
+        spillQueue.rewind();
+        return false;
+    }
+
+    /**
+     * Stop replaying and wait for the current batch.
+     *
+     * @param timeout time in milliseconds to wait
+     * @return true if the replayer stopped in time
+     */
+    public boolean shutdown(long timeout) throws InterruptedException {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+        return stopped.await(timeout, TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,7 +1,12 @@
 package com.barley.orleans.structure;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+
 /**
  * Payload class wrapper for collect info about data being produced.
+ * <p>
+ * When read from JSON, data is kept as {@link RawJson} so it is written to kafka without being re-encoded.
+ * </p>
  */
 public class Payload {
     private String client;
@@ -9,6 +14,7 @@ public class Payload {
     private String uuid;
     private String correlationId;
     private String schemaId;
+    @JsonDeserialize(using = RawJsonDeserializer.class)
     private Object data;
 
     public Payload() {
@@ -0,0 +1,53 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads Payloads one at a time from a JSON array or from newline delimited JSON (NDJSON) without materializing the whole input.
+ */
+public class PayloadReader implements Closeable {
+
+    private final ObjectMapper objectMapper;
+    private final JsonParser parser;
+    private JsonToken token;
+
+    public PayloadReader(ObjectMapper objectMapper, InputStream inputStream) throws IOException {
+        this.objectMapper = objectMapper;
+        this.parser = objectMapper.getFactory().createParser(inputStream);
+        this.token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY)
+            this.token = parser.nextToken();
+    }
+
+    /**
+     * Tells if there is another Payload to read.
+     *
+     * @return boolean
+     */
+    public boolean hasNext() {
+        return token != null && token != JsonToken.END_ARRAY;
+    }
+
+    /**
+     * Reads the next Payload, a JSON null is returned as null.
+     *
+     * @return next Payload
+     * @throws IOException if the input is not valid JSON or cannot be mapped to a Payload.
+     */
+    public Payload next() throws IOException {
+        final Payload payload = objectMapper.readValue(parser, Payload.class);
+        token = parser.nextToken();
+        return payload;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
@@ -0,0 +1,42 @@
+package com.barley.orleans.structure;
+
+/**
+ * Token bucket limit of a client or topic: payloads per second and the burst of payloads admitted at once.
+ * A rate of 0 or less means unlimited, a missing burst defaults to one second worth of payloads.
+ */
+public class RateLimit {
+    private double rate;
+    private Integer burst;
+
+    public RateLimit() {
+    }
+
+    public RateLimit(double rate, Integer burst) {
+        this.rate = rate;
+        this.burst = burst;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public Integer getBurst() {
+        return burst;
+    }
+
+    public void setBurst(Integer burst) {
+        this.burst = burst;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit{" +
+                "rate=" + rate +
+                ", burst=" + burst +
+                '}';
+    }
+}
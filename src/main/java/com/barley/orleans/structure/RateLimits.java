@@ -0,0 +1,55 @@
+package com.barley.orleans.structure;
+
+import java.util.Map;
+
+/**
+ * Limits currently applied by the rate limiter: the defaults of clients and topics, the overrides of single clients
+ * and topics, and the number of calls rejected so far.
+ */
+public class RateLimits {
+    private RateLimit clientLimit;
+    private RateLimit topicLimit;
+    private Map<String, RateLimit> clientLimits;
+    private Map<String, RateLimit> topicLimits;
+    private long rejected;
+
+    public RateLimit getClientLimit() {
+        return clientLimit;
+    }
+
+    public void setClientLimit(RateLimit clientLimit) {
+        this.clientLimit = clientLimit;
+    }
+
+    public RateLimit getTopicLimit() {
+        return topicLimit;
+    }
+
+    public void setTopicLimit(RateLimit topicLimit) {
+        this.topicLimit = topicLimit;
+    }
+
+    public Map<String, RateLimit> getClientLimits() {
+        return clientLimits;
+    }
+
+    public void setClientLimits(Map<String, RateLimit> clientLimits) {
+        this.clientLimits = clientLimits;
+    }
+
+    public Map<String, RateLimit> getTopicLimits() {
+        return topicLimits;
+    }
+
+    public void setTopicLimits(Map<String, RateLimit> topicLimits) {
+        this.topicLimits = topicLimits;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(long rejected) {
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,167 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Holder for an already encoded JSON value. It is written to the output as is, so payload data taken from a request
+ * is never turned into an object tree and back into JSON again.
+ */
+public final class RawJson implements SerializableString, JsonSerializable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final byte[] utf8;
+    private String value;
+
+    /**
+     * @param utf8 UTF-8 encoded JSON value
+     */
+    public RawJson(byte[] utf8) {
+        this.utf8 = utf8;
+    }
+
+    /**
+     * @param json JSON value
+     */
+    public RawJson(String json) {
+        this.utf8 = json.getBytes(UTF_8);
+        this.value = json;
+    }
+
+    /**
+     * UTF-8 encoded JSON value, not copied so must not be modified.
+     *
+     * @return bytes of the value
+     */
+    public byte[] getBytes() {
+        return utf8;
+    }
+
+    @Override
+    public String getValue() {
+        if (value == null)
+            value = new String(utf8, UTF_8);
+        return value;
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return utf8;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        final char[] quoted = asQuotedChars();
+        if (offset + quoted.length > buffer.length)
+            return -1;
+        System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+        return quoted.length;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        return append(utf8, buffer, offset);
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        final String str = getValue();
+        if (offset + str.length() > buffer.length)
+            return -1;
+        str.getChars(0, str.length(), buffer, offset);
+        return str.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        final byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(utf8);
+        return utf8.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+        return put(asQuotedUTF8(), buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+        return put(utf8, buffer);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(this);
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    private static int append(byte[] source, byte[] buffer, int offset) {
+        if (offset + source.length > buffer.length)
+            return -1;
+        System.arraycopy(source, 0, buffer, offset, source.length);
+        return source.length;
+    }
+
+    private static int put(byte[] source, ByteBuffer buffer) {
+        if (source.length > buffer.remaining())
+            return -1;
+        buffer.put(source);
+        return source.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof RawJson && Arrays.equals(utf8, ((RawJson) o).utf8));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(utf8);
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+}
@@ -0,0 +1,28 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserializer copying the tokens of a JSON value straight into a {@link RawJson} instead of binding them to maps and lists.
+ */
+public class RawJsonDeserializer extends JsonDeserializer<Object> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public Object deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        final ByteArrayBuilder bytes = new ByteArrayBuilder();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(bytes, JsonEncoding.UTF8)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return new RawJson(bytes.toByteArray());
+    }
+}
@@ -1,13 +1,16 @@
 package com.barley.orleans.structure;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Class to wrap individual response from produce method
+ * Class to wrap individual response from produce method. The list of errors is only allocated once an error is added,
+ * most responses never have one.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Response {
@@ -16,7 +19,13 @@ public class Response {
     @JsonProperty
     private Long offset;
     @JsonProperty
-    private List<String> errors = new ArrayList<>();
+    private List<String> errors;
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean spilled;
+    @JsonProperty
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean duplicate;
 
     public Integer getPartition() {
         return partition;
@@ -35,14 +44,42 @@ public class Response {
     }
 
     public List<String> getErrors() {
-        return errors;
+        return errors != null ? errors : Collections.<String>emptyList();
     }
 
     public void setErrors(List<String> errors) {
         this.errors = errors;
     }
 
+    /**
+     * True if the payload was written to the local spill queue to be produced once kafka is available again.
+     *
+     * @return Boolean, null if not spilled
+     */
+    public Boolean getSpilled() {
+        return spilled;
+    }
+
+    public void setSpilled(Boolean spilled) {
+        this.spilled = spilled;
+    }
+
+    /**
+     * True if a payload with the same uuid was produced to the topic shortly before, so this one was not produced again.
+     *
+     * @return Boolean, null if not a duplicate
+     */
+    public Boolean getDuplicate() {
+        return duplicate;
+    }
+
+    public void setDuplicate(Boolean duplicate) {
+        this.duplicate = duplicate;
+    }
+
     public void addError(String error) {
+        if (this.errors == null)
+            this.errors = new ArrayList<>(1);
         this.errors.add(error);
     }
 
@@ -51,7 +88,9 @@ public class Response {
         return "Response{" +
                 "partition=" + partition +
                 ", offset=" + offset +
-                ", errors=" + errors +
+                ", errors=" + getErrors() +
+                ", spilled=" + spilled +
+                ", duplicate=" + duplicate +
                 '}';
     }
 }
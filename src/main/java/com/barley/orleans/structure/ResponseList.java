@@ -3,6 +3,7 @@ package com.barley.orleans.structure;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,7 +14,7 @@ public class ResponseList {
     @JsonProperty
     private Integer status = 200;
     @JsonProperty
-    private List<Response> responses;
+    private List<Response> responses = new ArrayList<>();
 
     public Integer getStatus() {
         return status;
@@ -0,0 +1,52 @@
+package com.barley.orleans.structure;
+
+/**
+ * Schema registry entry resolving a Payload schemaId to a compact numeric id and the codec used to encode it.
+ */
+public class Schema {
+    private String schemaId;
+    private int id;
+    private String codec;
+
+    public Schema() {
+    }
+
+    public Schema(String schemaId, int id, String codec) {
+        this.schemaId = schemaId;
+        this.id = id;
+        this.codec = codec;
+    }
+
+    public String getSchemaId() {
+        return schemaId;
+    }
+
+    public void setSchemaId(String schemaId) {
+        this.schemaId = schemaId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public String toString() {
+        return "Schema{" +
+                "schemaId='" + schemaId + '\'' +
+                ", id=" + id +
+                ", codec='" + codec + '\'' +
+                '}';
+    }
+}
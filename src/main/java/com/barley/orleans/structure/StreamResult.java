@@ -0,0 +1,117 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to summarize a streamed produce call with counters instead of one response per payload.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class StreamResult {
+    /**
+     * Maximum number of error strings kept in a result.
+     */
+    public static final int MAX_ERRORS = 100;
+
+    @JsonProperty
+    private Integer status = 200;
+    @JsonProperty
+    private long received;
+    @JsonProperty
+    private long produced;
+    @JsonProperty
+    private long failed;
+    @JsonProperty
+    private long spilled;
+    @JsonProperty
+    private long duplicates;
+    @JsonProperty
+    private List<String> errors = new ArrayList<>();
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public long getReceived() {
+        return received;
+    }
+
+    public void setReceived(long received) {
+        this.received = received;
+    }
+
+    public long getProduced() {
+        return produced;
+    }
+
+    public void setProduced(long produced) {
+        this.produced = produced;
+    }
+
+    public long getSpilled() {
+        return spilled;
+    }
+
+    public void setSpilled(long spilled) {
+        this.spilled = spilled;
+    }
+
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public void setDuplicates(long duplicates) {
+        this.duplicates = duplicates;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * Method to get a copy of the error strings, taken under the same lock as addError.
+     *
+     * @return snapshot of the error strings
+     */
+    public synchronized List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    public synchronized void setErrors(List<String> errors) {
+        this.errors = new ArrayList<>(errors);
+    }
+
+    /**
+     * Adds an error string unless MAX_ERRORS are already kept.
+     *
+     * @param error error string
+     */
+    public synchronized void addError(String error) {
+        if (errors.size() < MAX_ERRORS)
+            errors.add(error);
+    }
+
+    @Override
+    public String toString() {
+        return "StreamResult{" +
+                "status=" + status +
+                ", received=" + received +
+                ", produced=" + produced +
+                ", failed=" + failed +
+                ", spilled=" + spilled +
+                ", duplicates=" + duplicates +
+                ", errors=" + getErrors() +
+                '}';
+    }
+}
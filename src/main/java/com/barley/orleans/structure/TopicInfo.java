@@ -0,0 +1,129 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class to describe a topic with its partitions, leaders and replicas by broker id.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class TopicInfo {
+    @JsonProperty
+    private String topic;
+    @JsonProperty
+    private List<Partition> partitions = new ArrayList<>();
+
+    /**
+     * TopicInfo of a topic from its kafka partition metadata.
+     *
+     * @param topic          topic name
+     * @param partitionInfos PartitionInfo of every partition
+     * @return TopicInfo with partitions in partition order
+     */
+    public static TopicInfo of(String topic, List<PartitionInfo> partitionInfos) {
+        final TopicInfo topicInfo = new TopicInfo();
+        topicInfo.setTopic(topic);
+        final Partition[] partitions = new Partition[partitionInfos.size()];
+        final List<Partition> unordered = new ArrayList<>();
+        for (PartitionInfo partitionInfo : partitionInfos) {
+            final Partition partition = new Partition();
+            partition.setPartition(partitionInfo.partition());
+            partition.setLeader(partitionInfo.leader() != null ? partitionInfo.leader().id() : null);
+            partition.setReplicas(ids(partitionInfo.replicas()));
+            partition.setIsr(ids(partitionInfo.inSyncReplicas()));
+            if (partitionInfo.partition() >= 0 && partitionInfo.partition() < partitions.length && partitions[partitionInfo.partition()] == null)
+                partitions[partitionInfo.partition()] = partition;
+            else
+                unordered.add(partition);
+        }
+        for (Partition partition : partitions) {
+            if (partition != null)
+                topicInfo.partitions.add(partition);
+        }
+        topicInfo.partitions.addAll(unordered);
+        return topicInfo;
+    }
+
+    private static List<Integer> ids(Node[] nodes) {
+        final List<Integer> ids = new ArrayList<>(nodes != null ? nodes.length : 0);
+        if (nodes != null) {
+            for (Node node : nodes) {
+                ids.add(node.id());
+            }
+        }
+        return ids;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public void setTopic(String topic) {
+        this.topic = topic;
+    }
+
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(List<Partition> partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * Class to describe one partition of a topic.
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Partition {
+        @JsonProperty
+        private int partition;
+        @JsonProperty
+        private Integer leader;
+        @JsonProperty
+        private List<Integer> replicas = new ArrayList<>();
+        @JsonProperty
+        private List<Integer> isr = new ArrayList<>();
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public void setPartition(int partition) {
+            this.partition = partition;
+        }
+
+        /**
+         * Broker id of the partition leader.
+         *
+         * @return Integer, null if the partition has no leader
+         */
+        public Integer getLeader() {
+            return leader;
+        }
+
+        public void setLeader(Integer leader) {
+            this.leader = leader;
+        }
+
+        public List<Integer> getReplicas() {
+            return replicas;
+        }
+
+        public void setReplicas(List<Integer> replicas) {
+            this.replicas = replicas;
+        }
+
+        public List<Integer> getIsr() {
+            return isr;
+        }
+
+        public void setIsr(List<Integer> isr) {
+            this.isr = isr;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.barley.orleans.admission;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.RawJson;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for InFlightBudget
+ */
+public class InFlightBudgetTest {
+
+    private static List<Payload> payloads(int count, int dataBytes) {
+        final List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final Payload payload = new Payload();
+            payload.setData(new RawJson(new byte[dataBytes]));
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    @Test
+    public void testBudgets() {
+        // 10 records over all topics, 4 per topic
+        final InFlightBudget budget = new InFlightBudget(0, 10, 0, 4, 100, 0);
+        final InFlightBudget.Permit first = budget.acquire("a", payloads(3, 10));
+        assertTrue(first != null && budget.inFlightRecords() == 3);
+        assertTrue(budget.acquire("a", payloads(2, 10)) == null);
+        final InFlightBudget.Permit second = budget.acquire("b", payloads(4, 10));
+        final InFlightBudget.Permit third = budget.acquire("c", payloads(3, 10));
+        assertTrue(second != null && third != null && budget.inFlightRecords() == 10);
+        assertTrue(budget.acquire("d", payloads(1, 10)) == null && budget.rejected() == 2);
+        first.release();
+        first.release();
+        assertTrue(budget.inFlightRecords() == 7 && budget.acquire("a", payloads(2, 10)) != null);
+        second.release();
+        third.release();
+        // a call larger than the budget is admitted once the budget is empty
+        final InFlightBudget bytes = new InFlightBudget(1000, 0, 0, 0, 100, 0);
+        final InFlightBudget.Permit large = bytes.acquire("a", payloads(1, 5000));
+        assertTrue(large != null && large.getBytes() == bytes.inFlightBytes() && large.getBytes() > 5000);
+        assertTrue(bytes.acquire("a", payloads(1, 10)) == null);
+        large.release();
+        assertTrue(bytes.inFlightBytes() == 0 && bytes.acquire("a", payloads(1, 10)) != null);
+    }
+
+    @Test
+    public void testWait() throws Exception {
+        final InFlightBudget budget = new InFlightBudget(0, 1, 0, 0, 100, 5000);
+        final InFlightBudget.Permit held = budget.acquire("a", payloads(1, 10));
+        final AtomicReference<InFlightBudget.Permit> waited = new AtomicReference<>();
+        final CountDownLatch admitted = new CountDownLatch(1);
+        final Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                waited.set(budget.acquire("a", payloads(1, 10)));
+                admitted.countDown();
+            }
+        });
+        waiter.start();
+        assertTrue(!admitted.await(100, TimeUnit.MILLISECONDS));
+        held.release();
+        assertTrue(admitted.await(2, TimeUnit.SECONDS) && waited.get() != null);
+        // the deadline rejects a call still over the budget
+        final InFlightBudget deadline = new InFlightBudget(0, 1, 0, 0, 100, 50);
+        deadline.acquire("a", payloads(1, 10));
+        final long start = System.nanoTime();
+        assertTrue(deadline.acquire("a", payloads(1, 10)) == null);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
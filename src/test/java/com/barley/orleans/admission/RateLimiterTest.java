@@ -0,0 +1,89 @@
+package com.barley.orleans.admission;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.RateLimit;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for RateLimiter
+ */
+public class RateLimiterTest {
+
+    private static List<Payload> payloads(int count, String... clients) {
+        List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Payload payload = new Payload();
+            payload.setClient(clients[i % clients.length]);
+            payload.setData("data");
+            payloads.add(payload);
+        }
+        return payloads;
+    }
+
+    @Test
+    public void testClientLimit() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(new RateLimit(1, 10), null, 100);
+        assertTrue(rateLimiter.acquire("events", payloads(6, "noisy")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(4, "noisy")) == 0);
+        long wait = rateLimiter.acquire("events", payloads(1, "noisy"));
+        // one token per second
+        assertTrue(wait > 0 && wait <= 1000000000L);
+        assertTrue(rateLimiter.rejected() == 1);
+        // other clients keep their own buckets
+        assertTrue(rateLimiter.acquire("events", payloads(10, "quiet")) == 0);
+        // a call larger than the burst gets into a full bucket only
+        assertTrue(rateLimiter.acquire("events", payloads(50, "bulk")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "bulk")) > 40000000000L);
+    }
+
+    @Test
+    public void testTopicLimitAndRelease() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(new RateLimit(1, 5), new RateLimit(1, 20), 100);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "b")) == 0);
+        // the second client is over its limit, so neither the topic nor the first client is charged
+        assertTrue(rateLimiter.acquire("events", payloads(12, "a", "b", "b")) > 0);
+        assertTrue(rateLimiter.acquire("events", payloads(5, "a")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(4, "b")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(10, "c", "d")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "e")) > 0);
+        assertTrue(rateLimiter.acquire("other", payloads(1, "e")) == 0);
+    }
+
+    @Test
+    public void testReconfigure() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(new RateLimit(1, 2), null, 100);
+        assertTrue(rateLimiter.acquire("events", payloads(2, "a")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(2, "a")) > 0);
+        rateLimiter.setLimit(RateLimiter.Scope.CLIENT, "a", new RateLimit(0, null));
+        assertTrue(rateLimiter.acquire("events", payloads(100, "a")) == 0);
+        assertTrue(rateLimiter.snapshot().getClientLimits().containsKey("a"));
+        rateLimiter.setLimit(RateLimiter.Scope.CLIENT, "a", null);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) > 0);
+        rateLimiter.setDefaultLimit(RateLimiter.Scope.CLIENT, null);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) == 0);
+        rateLimiter.setDefaultLimit(RateLimiter.Scope.TOPIC, new RateLimit(1, 1));
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) > 0);
+        assertTrue(rateLimiter.snapshot().getRejected() == 3);
+    }
+
+    @Test
+    public void testMaxBuckets() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(new RateLimit(1000, 1000), null, 2);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "b")) == 0);
+        // neither bucket is full again yet, so no room for a third one
+        assertTrue(rateLimiter.acquire("events", payloads(1, "c")) > 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "a")) == 0);
+        Thread.sleep(RateLimiter.SWEEP_INTERVAL_MS + 100);
+        // the next sweep drops the full buckets
+        assertTrue(rateLimiter.acquire("events", payloads(1, "c")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "d")) == 0);
+        assertTrue(rateLimiter.acquire("events", payloads(1, "e")) > 0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.barley.orleans.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for Backoff
+ */
+public class BackoffTest {
+
+    /**
+     * Fails every message until its third retry, counting down the latch for every message handled meanwhile.
+     */
+    public static class FlakyActor extends UntypedActor {
+        private final Backoff backoff;
+        private final CountDownLatch succeeded;
+        private final CountDownLatch handled;
+
+        public FlakyActor(Backoff backoff, CountDownLatch succeeded, CountDownLatch handled) {
+            this.backoff = backoff;
+            this.succeeded = succeeded;
+            this.handled = handled;
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            final int attempts = message instanceof Retry ? ((Retry) message).getAttempt() : 0;
+            final Object original = message instanceof Retry ? ((Retry) message).getMessage() : message;
+            if ("flaky".equals(original)) {
+                if (attempts == 3)
+                    succeeded.countDown();
+                else
+                    assertTrue(backoff.retry(getContext(), original, attempts));
+            } else {
+                handled.countDown();
+            }
+        }
+    }
+
+    private ActorSystem actorSystem = null;
+
+    @Before
+    public void setUp() {
+        actorSystem = ActorSystem.create("BackoffTest");
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.shutdown();
+        actorSystem.awaitTermination();
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        Backoff backoff = new Backoff(100, 1000, 10);
+        for (int i = 0; i < 100; i++) {
+            long first = backoff.delay(1);
+            long third = backoff.delay(3);
+            long tenth = backoff.delay(10);
+            assertTrue(first >= 75 && first <= 100);
+            assertTrue(third >= 300 && third <= 400);
+            assertTrue(tenth >= 750 && tenth <= 1000);
+        }
+    }
+
+    @Test
+    public void testRetryDoesNotBlock() throws Exception {
+        Backoff backoff = new Backoff(200, 200, 3);
+        CountDownLatch succeeded = new CountDownLatch(1);
+        CountDownLatch handled = new CountDownLatch(1);
+        ActorRef flaky = actorSystem.actorOf(Props.create(FlakyActor.class, backoff, succeeded, handled));
+        final long started = System.nanoTime();
+        flaky.tell("flaky", ActorRef.noSender());
+        flaky.tell("other", ActorRef.noSender());
+        // the actor keeps handling messages while the retry is pending
+        assertTrue(handled.await(150, TimeUnit.MILLISECONDS));
+        assertTrue(succeeded.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) >= 3 * 150);
+        assertTrue(!backoff.retry(null, "flaky", 3));
+    }
+}
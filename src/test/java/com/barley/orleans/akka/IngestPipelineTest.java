@@ -0,0 +1,144 @@
+package com.barley.orleans.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.Props;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.config.SpringExtension;
+import com.barley.orleans.interfaces.IngestCallback;
+import com.barley.orleans.properties.IngestProperties;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.Response;
+import com.typesafe.config.ConfigFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for IngestPipeline
+ */
+public class IngestPipelineTest {
+
+    private ProducerRegistry producerRegistry = null;
+    private AnnotationConfigApplicationContext applicationContext = null;
+    private ActorSystem actorSystem = null;
+    private PayloadBuilder payloadBuilder = null;
+
+    @Before
+    public void setUp() {
+        final ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "bootstrapServers", "localhost:9092");
+        ReflectionTestUtils.setField(producerProperties, "poolSize", 2);
+        producerRegistry = new ProducerRegistry(producerProperties, true);
+        applicationContext = new AnnotationConfigApplicationContext();
+        applicationContext.getBeanFactory().registerSingleton("producerRegistry", producerRegistry);
+        applicationContext.register(ProducerWorker.class);
+        applicationContext.refresh();
+
+        final IngestProperties ingestProperties = new IngestProperties();
+        ReflectionTestUtils.setField(ingestProperties, "mailboxCapacity", 10);
+        ReflectionTestUtils.setField(ingestProperties, "parallelismMin", 2);
+        ReflectionTestUtils.setField(ingestProperties, "parallelismFactor", 1.0);
+        ReflectionTestUtils.setField(ingestProperties, "parallelismMax", 4);
+        ReflectionTestUtils.setField(ingestProperties, "throughput", 5);
+        ReflectionTestUtils.setField(ingestProperties, "blockingPoolSize", 4);
+        actorSystem = ActorSystem.create("IngestPipelineTest", ingestProperties.akkaConfig().withFallback(ConfigFactory.load()));
+        SpringExtension.SpringExtProvider.get(actorSystem).initialize(applicationContext);
+        payloadBuilder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withSchemaId("").withUuid(UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.shutdown();
+        actorSystem.awaitTermination();
+        applicationContext.close();
+        producerRegistry.close();
+    }
+
+    @Test
+    public void testIngest() throws Exception {
+        final IngestPipeline ingestPipeline = new IngestPipeline(actorSystem, 4, 2);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger produced = new AtomicInteger();
+        ingestPipeline.ingest("events", Arrays.asList(payloadBuilder.withData("one").build(), payloadBuilder.withData("two").build()),
+                DeliveryMode.LEADER_ACK, new IngestCallback() {
+                    @Override
+                    public void completed(String topic, List<Response> responses) {
+                        for (Response response : responses) {
+                            if (response.getErrors().isEmpty() && response.getOffset() != null)
+                                produced.incrementAndGet();
+                        }
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void rejected(String topic, String reason) {
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(produced.get() == 2);
+    }
+
+    @Test
+    public void testEveryCallAnswered() throws Exception {
+        final IngestPipeline ingestPipeline = new IngestPipeline(actorSystem, 1, 1);
+        final int calls = 2000;
+        final CountDownLatch done = new CountDownLatch(calls);
+        final AtomicInteger rejected = new AtomicInteger();
+        final IngestCallback callback = new IngestCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                done.countDown();
+            }
+
+            @Override
+            public void rejected(String topic, String reason) {
+                if (IngestReplier.FULL.equals(reason))
+                    rejected.incrementAndGet();
+                done.countDown();
+            }
+        };
+        final List<Payload> payloads = Arrays.asList(payloadBuilder.withData("data").build());
+        for (int i = 0; i < calls; i++) {
+            ingestPipeline.ingest("events", payloads, DeliveryMode.LEADER_ACK, callback);
+        }
+        // calls beyond the mailbox capacity are rejected, none is lost
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(rejected.get() > 0);
+    }
+
+    @Test
+    public void testDeadLetterRejected() throws Exception {
+        final ActorRef replier = actorSystem.actorOf(Props.create(IngestReplier.class));
+        final CountDownLatch rejected = new CountDownLatch(1);
+        final IngestRequest request = new IngestRequest("events", Arrays.asList(payloadBuilder.withData("data").build()), DeliveryMode.LEADER_ACK,
+                new IngestCallback() {
+                    @Override
+                    public void completed(String topic, List<Response> responses) {
+                    }
+
+                    @Override
+                    public void rejected(String topic, String reason) {
+                        rejected.countDown();
+                    }
+                });
+        replier.tell(new DeadLetter(request, actorSystem.deadLetters(), actorSystem.deadLetters()), ActorRef.noSender());
+        assertTrue(rejected.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,79 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.structure.Payload;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for AfterCallDispatcher
+ */
+public class AfterCallDispatcherTest {
+
+    @Test
+    public void testDispatchOffCallerThread() throws Exception {
+        final AfterCallDispatcher dispatcher = new AfterCallDispatcher(1, 10, AfterCallDispatcher.OverflowPolicy.BLOCK);
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger onCaller = new AtomicInteger();
+        dispatcher.dispatch(new AfterCall() {
+            @Override
+            public void after(String topic, Integer partition, Long offset, Exception exception, Payload payload, Properties properties) {
+                if (Thread.currentThread() == caller)
+                    onCaller.incrementAndGet();
+                latch.countDown();
+            }
+        }, "test", 0, 0L, null, null, null);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(onCaller.get() == 0);
+        dispatcher.close(1000);
+    }
+
+    @Test
+    public void testOverflowPolicies() throws Exception {
+        for (AfterCallDispatcher.OverflowPolicy policy : new AfterCallDispatcher.OverflowPolicy[]{
+                AfterCallDispatcher.OverflowPolicy.DROP, AfterCallDispatcher.OverflowPolicy.CALLER_RUNS}) {
+            final AfterCallDispatcher dispatcher = new AfterCallDispatcher(1, 1, policy);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicInteger calls = new AtomicInteger();
+            final AfterCall afterCall = new AfterCall() {
+                @Override
+                public void after(String topic, Integer partition, Long offset, Exception exception, Payload payload, Properties properties) {
+                    calls.incrementAndGet();
+                    if (!"inline".equals(Thread.currentThread().getName())) {
+                        try {
+                            release.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            };
+            final String callerName = Thread.currentThread().getName();
+            Thread.currentThread().setName("inline");
+            try {
+                for (int i = 0; i < 4; i++) {
+                    dispatcher.dispatch(afterCall, "test", 0, (long) i, null, null, null);
+                }
+            } finally {
+                Thread.currentThread().setName(callerName);
+            }
+            release.countDown();
+            dispatcher.close(5000);
+            assertTrue(dispatcher.dispatched() == 4);
+            if (policy == AfterCallDispatcher.OverflowPolicy.DROP) {
+                assertTrue(dispatcher.dropped() > 0);
+                assertTrue(calls.get() + dispatcher.dropped() == 4);
+            } else {
+                assertTrue(dispatcher.callerRuns() > 0);
+                assertTrue(calls.get() == 4);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.codec.PayloadCodecs;
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.interfaces.ConsumeHandler;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for Consumer
+ */
+public class ConsumerTest {
+
+    @Test
+    public void testConsumeAndCommit() throws Exception {
+        final TopicPartition partition = new TopicPartition("topic", 0);
+        final List<Boolean> closed = new ArrayList<>();
+        final MockConsumer<String, byte[]> mockConsumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public void close() {
+                // keep committed offsets readable after the worker stopped
+                closed.add(true);
+            }
+        };
+        final List<Payload> consumed = Collections.synchronizedList(new ArrayList<Payload>());
+        final PayloadCodecs payloadCodecs = PayloadCodecs.json();
+        Consumer consumer = new Consumer(mockConsumer, new AfterCallHandler(new AfterCall() {
+            @Override
+            public void after(String topic, Integer partition, Long offset, Exception exception, Payload payload, Properties properties) {
+                consumed.add(payload);
+            }
+        }, payloadCodecs, null), 10, 60000, 2);
+        consumer.assign(Collections.singletonList(partition));
+        mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+        PayloadBuilder payloadBuilder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withData("mydata");
+        for (int i = 0; i < 3; i++) {
+            mockConsumer.addRecord(new ConsumerRecord<>("topic", 0, i, (String) null, payloadCodecs.encode(payloadBuilder.withUuid().build())));
+        }
+
+        Thread thread = new Thread(consumer);
+        thread.start();
+        for (int i = 0; i < 100 && consumer.consumed() < 3; i++) {
+            Thread.sleep(10);
+        }
+        consumer.shutdown();
+        assertTrue(consumer.awaitStopped(5000));
+        assertTrue(consumed.size() == 3 && consumed.get(0).getClient().equals("TEST"));
+        assertTrue(mockConsumer.committed(partition).offset() == 3 && closed.size() == 1);
+    }
+
+    @Test
+    public void testFailedBatchNotCommitted() throws Exception {
+        final TopicPartition partition = new TopicPartition("topic", 0);
+        final MockConsumer<String, byte[]> mockConsumer = new MockConsumer<String, byte[]>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public void close() {
+            }
+        };
+        final AtomicInteger attempts = new AtomicInteger();
+        final Consumer consumer = new Consumer(mockConsumer, new ConsumeHandler() {
+            @Override
+            public void handle(ConsumerRecords<String, byte[]> records) {
+                attempts.incrementAndGet();
+                throw new IllegalStateException("handler down");
+            }
+        }, 10, 0, 1);
+        consumer.assign(Collections.singletonList(partition));
+        mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+        for (int i = 0; i < 3; i++) {
+            mockConsumer.addRecord(new ConsumerRecord<>("topic", 0, i, (String) null, new byte[1]));
+        }
+
+        final Thread thread = new Thread(consumer);
+        thread.start();
+        for (int i = 0; i < 100 && attempts.get() == 0; i++) {
+            Thread.sleep(10);
+        }
+        consumer.shutdown();
+        assertTrue(consumer.awaitStopped(5000));
+        // nothing is committed and the consumer is back at the first record of the failed batch
+        assertTrue(attempts.get() == 1 && consumer.consumed() == 0);
+        assertTrue(mockConsumer.committed(partition) == null && mockConsumer.position(partition) == 0);
+    }
+}
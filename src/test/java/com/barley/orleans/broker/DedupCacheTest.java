@@ -0,0 +1,92 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for DedupCache
+ */
+public class DedupCacheTest {
+
+    @Test
+    public void testDuplicateWithinWindow() throws Exception {
+        final DedupCache cache = new DedupCache(1024, 4, 60000);
+        final String uuid = UUID.randomUUID().toString();
+        assertTrue(!cache.contains("topic", uuid) && cache.add("topic", uuid));
+        // both copies of an in-flight retry acknowledged, not a duplicate answered to a client
+        assertTrue(!cache.add("topic", uuid));
+        assertTrue(cache.add("other", uuid));
+        assertTrue(cache.duplicates() == 0);
+        assertTrue(cache.contains("topic", uuid) && !cache.contains("other", UUID.randomUUID().toString()));
+        assertTrue(cache.duplicates() == 1);
+    }
+
+    @Test
+    public void testWindowExpiry() throws Exception {
+        final DedupCache cache = new DedupCache(1024, 1, 50);
+        final String uuid = UUID.randomUUID().toString();
+        assertTrue(cache.add("topic", uuid));
+        Thread.sleep(120);
+        assertTrue(cache.add("topic", uuid));
+    }
+
+    @Test
+    public void testBoundedSize() throws Exception {
+        final DedupCache cache = new DedupCache(1024, 4, 60000);
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(cache.add("topic", UUID.randomUUID().toString()));
+        }
+        assertTrue(cache.size() <= 1024);
+        // the most recent ids survive generation rotation
+        final String uuid = UUID.randomUUID().toString();
+        cache.add("topic", uuid);
+        assertTrue(!cache.add("topic", uuid));
+    }
+
+    @Test
+    public void testProducerAcknowledgesRetry() throws Exception {
+        final MockProducer<String, byte[]> mockProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        final Producer producer = new Producer(mockProducer, null, 1000);
+        final DedupCache cache = new DedupCache(1024, 4, 60000);
+        producer.setDedupCache(cache);
+        final List<Payload> payloads = Collections.singletonList(PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1")
+                .withSchemaId("").withUuid(UUID.randomUUID().toString()).withData("mydata").build());
+
+        Response response = producer.produceBatch("topic", payloads, null, DeliveryMode.FIRE_AND_FORGET, 0).get(0);
+        assertTrue(response.getDuplicate() == null && response.getErrors().isEmpty());
+        assertTrue(mockProducer.history().size() == 1);
+
+        // still in flight, a retry is produced so it is not lost if the first copy fails
+        response = producer.produceBatch("topic", payloads, null, DeliveryMode.FIRE_AND_FORGET, 0).get(0);
+        assertTrue(response.getDuplicate() == null && response.getErrors().isEmpty());
+        assertTrue(mockProducer.history().size() == 2);
+
+        // a failed record is not remembered, so its retry is produced
+        mockProducer.errorNext(new RuntimeException("broker down"));
+        response = producer.produceBatch("topic", payloads, null, DeliveryMode.FIRE_AND_FORGET, 0).get(0);
+        assertTrue(response.getDuplicate() == null);
+        assertTrue(mockProducer.history().size() == 3);
+
+        // once acknowledged, a retry is answered without sending it again
+        mockProducer.completeNext();
+        response = producer.produceBatch("topic", payloads, null, DeliveryMode.FIRE_AND_FORGET, 0).get(0);
+        assertTrue(Boolean.TRUE.equals(response.getDuplicate()) && response.getErrors().isEmpty());
+        assertTrue(mockProducer.history().size() == 3);
+
+        // the second in-flight copy acknowledged as well is not counted, only the retry answered above
+        mockProducer.completeNext();
+        assertTrue(cache.duplicates() == 1);
+        producer.close();
+    }
+}
@@ -0,0 +1,36 @@
+package com.barley.orleans.broker;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ProducerPool
+ */
+public class ProducerPoolTest {
+
+    @Test
+    public void testKeyAffinity() throws Exception {
+        ProducerPool producerPool = new ProducerPool(null, 4, true);
+        Producer producer = producerPool.shard("my-key");
+        for (int i = 0; i < 10; i++) {
+            assertTrue(producerPool.shard("my-key") == producer);
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        ProducerPool producerPool = new ProducerPool(null, 3, true);
+        for (int i = 0; i < 9; i++) {
+            producerPool.shard();
+        }
+        for (long selections : producerPool.selections()) {
+            assertTrue(selections == 3);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() throws Exception {
+        new ProducerPool(null, 0, true);
+    }
+}
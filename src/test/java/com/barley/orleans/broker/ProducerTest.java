@@ -1,16 +1,27 @@
 package com.barley.orleans.broker;
 
 import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.interfaces.StreamAdmission;
 import com.barley.orleans.structure.Payload;
 import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.PayloadReader;
 import com.barley.orleans.structure.Response;
+import com.barley.orleans.structure.StreamResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertTrue;
 
@@ -116,4 +127,128 @@ public class ProducerTest {
         assertTrue(hasAfterCallHpnd.get(0));
         offset++;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProduceBatch() throws Exception {
+        List<Payload> payloads = new ArrayList<>();
+        payloads.add(payloadBuilder.withData("{\"event\": \"test-event-1\"}").build());
+        payloads.add(null);
+        payloads.add(payloadBuilder.withData("{\"event\": \"test-event-2\"}").build());
+        List<Response> responses = producer.produceBatch("topic", payloads);
+        assertTrue(responses.size() == 3);
+        assertTrue(responses.get(0).getOffset() != null && responses.get(0).getErrors().isEmpty());
+        assertTrue(responses.get(1).getErrors().size() > 0 && responses.get(1).getErrors().get(0).equalsIgnoreCase("Payload cannot be null"));
+        assertTrue(responses.get(2).getOffset() != null && responses.get(2).getOffset() > responses.get(0).getOffset());
+    }
+
+    @Test
+    public void testProduceBatchAsync() throws Exception {
+        List<Payload> payloads = new ArrayList<>();
+        payloads.add(payloadBuilder.withData("{\"event\": \"test-event-1\"}").build());
+        payloads.add(null);
+        final List<List<Response>> completed = new ArrayList<>();
+        producer.produceBatchAsync("topic", payloads, null, new BatchCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                completed.add(responses);
+            }
+        });
+        assertTrue(completed.size() == 1 && completed.get(0).size() == 2);
+        assertTrue(completed.get(0).get(0).getOffset() != null);
+        assertTrue(completed.get(0).get(1).getErrors().size() > 0);
+    }
+
+    @Test
+    public void testProduceStream() throws Exception {
+        String array = "[{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": {\"event\": \"test-event\"}}, null," +
+                " {\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": \"mydata\"}]";
+        StreamResult result = producer.produceStream("topic", new PayloadReader(new ObjectMapper(), new ByteArrayInputStream(array.getBytes("UTF-8"))), null, 100);
+        assertTrue(result.getReceived() == 3 && result.getProduced() == 2 && result.getFailed() == 1);
+
+        String ndjson = "{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": 1}\n{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": 2}\n";
+        result = producer.produceStream("topic", new PayloadReader(new ObjectMapper(), new ByteArrayInputStream(ndjson.getBytes("UTF-8"))), null, 100);
+        assertTrue(result.getReceived() == 2 && result.getProduced() == 2 && result.getErrors().isEmpty());
+    }
+
+    @Test
+    public void testProduceStreamAdmission() throws Exception {
+        final MockProducer<String, byte[]> slowProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        final Producer slow = new Producer(slowProducer, new Properties(), Producer.DEFAULT_ACK_TIMEOUT);
+        final StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 3 * Producer.STREAM_CHUNK; i++) {
+            ndjson.append("{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": ").append(i).append("}\n");
+        }
+        final AtomicInteger admitted = new AtomicInteger();
+        final AtomicInteger released = new AtomicInteger();
+        final StreamAdmission twoChunks = new StreamAdmission() {
+            @Override
+            public Runnable admit(String topic, List<Payload> chunk) {
+                if (admitted.incrementAndGet() > 2)
+                    return null;
+                return new Runnable() {
+                    @Override
+                    public void run() {
+                        released.incrementAndGet();
+                    }
+                };
+            }
+        };
+        final StreamResult result = slow.produceStream("topic", new PayloadReader(new ObjectMapper(),
+                new ByteArrayInputStream(ndjson.toString().getBytes("UTF-8"))), null, 10, twoChunks);
+        // the third chunk is not admitted, the first two are still in flight after the deadline
+        assertTrue(result.getReceived() == 2 * Producer.STREAM_CHUNK && slowProducer.history().size() == 2 * Producer.STREAM_CHUNK);
+        assertTrue(result.getFailed() == 2 * Producer.STREAM_CHUNK && released.get() == 0);
+        // admissions are released by the late acknowledgements, once per chunk
+        while (slowProducer.completeNext()) {
+        }
+        assertTrue(released.get() == 2 && result.getProduced() == 0);
+        slow.close();
+    }
+
+    @Test
+    public void testAckDeadlinePerBatch() throws Exception {
+        final MockProducer<String, byte[]> slowProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        final Producer slow = new Producer(slowProducer, new Properties(), Producer.DEFAULT_ACK_TIMEOUT);
+        final List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            payloads.add(payloadBuilder.withData("{\"event\": \"test-event\"}").build());
+        }
+        final long started = System.nanoTime();
+        final List<Response> responses = slow.produceBatch("topic", payloads, null, DeliveryMode.LEADER_ACK, 100);
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        // one deadline for the whole batch, not one per payload
+        assertTrue(elapsed >= 100 && elapsed < 400);
+        for (Response response : responses) {
+            assertTrue(response.getOffset() == null && response.getErrors().size() == 1);
+        }
+        slow.close();
+    }
+
+    @Test
+    public void testBatchCallbackAfterReturn() throws Exception {
+        final MockProducer<String, byte[]> slowProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        final Producer slow = new Producer(slowProducer, new Properties(), Producer.DEFAULT_ACK_TIMEOUT);
+        final List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            payloads.add(payloadBuilder.withData("{\"event\": \"test-event\"}").build());
+        }
+        final AtomicInteger completed = new AtomicInteger();
+        final BatchCallback batchCallback = new BatchCallback() {
+            @Override
+            public void completed(String topic, List<Response> responses) {
+                completed.incrementAndGet();
+            }
+        };
+        // both calls return before kafka answered, the callback waits for the last acknowledgement
+        slow.produceBatch("topic", payloads, null, DeliveryMode.FIRE_AND_FORGET, 0, batchCallback);
+        slow.produceBatch("topic", payloads, null, DeliveryMode.LEADER_ACK, 10, batchCallback);
+        assertTrue(completed.get() == 0);
+        slowProducer.completeNext();
+        slowProducer.errorNext(new RuntimeException("broker down"));
+        assertTrue(completed.get() == 1);
+        slowProducer.completeNext();
+        slowProducer.completeNext();
+        assertTrue(completed.get() == 2);
+        slow.close();
+    }
+}
@@ -0,0 +1,160 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.interfaces.BatchCallback;
+import com.barley.orleans.interfaces.PayloadPartitioner;
+import com.barley.orleans.partition.PayloadPartitioners;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for RequestCoalescer
+ */
+public class RequestCoalescerTest {
+
+    private static final Node NODE = new Node(0, "localhost", 9092);
+
+    private ProducerRegistry producerRegistry = null;
+    private TopicMetadataCache topicMetadataCache = null;
+    private PayloadBuilder payloadBuilder = null;
+
+    @Before
+    public void setUp() throws Exception {
+        final ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "bootstrapServers", "localhost:9092");
+        ReflectionTestUtils.setField(producerProperties, "poolSize", 2);
+        producerRegistry = new ProducerRegistry(producerProperties, true);
+        final MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        for (String topic : Arrays.asList("even", "odd", "topic")) {
+            mockConsumer.updatePartitions(topic, Arrays.asList(new PartitionInfo(topic, 0, NODE, new Node[]{NODE}, new Node[]{NODE}),
+                    new PartitionInfo(topic, 1, NODE, new Node[]{NODE}, new Node[]{NODE})));
+        }
+        topicMetadataCache = new TopicMetadataCache(mockConsumer, 60000, 120000, 60000, false);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!topicMetadataCache.isFresh() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        producerRegistry.setTopicMetadataCache(topicMetadataCache);
+        payloadBuilder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withSchemaId("").withUuid(UUID.randomUUID().toString());
+    }
+
+    @After
+    public void tearDown() {
+        producerRegistry.close();
+        topicMetadataCache.close();
+    }
+
+    @Test
+    public void testConcurrentCallersShareFlush() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(producerRegistry, 200, 1000, 100);
+        final int callers = 20;
+        final CountDownLatch completed = new CountDownLatch(callers);
+        final List<List<Response>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            coalescer.produceAsync(i % 2 == 0 ? "even" : "odd", Arrays.asList(payloadBuilder.withData("data-" + i).build(), payloadBuilder.withData("more").build()),
+                    DeliveryMode.LEADER_ACK, null, new BatchCallback() {
+                        @Override
+                        public void completed(String topic, List<Response> responses) {
+                            synchronized (results) {
+                                results.add(responses);
+                            }
+                            completed.countDown();
+                        }
+                    });
+        }
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(coalescer.flushes() == 1 && coalescer.coalesced() == callers);
+        for (List<Response> responses : results) {
+            assertTrue(responses.size() == 2);
+            for (Response response : responses) {
+                assertTrue(response.getErrors().isEmpty() && response.getOffset() != null);
+            }
+        }
+        coalescer.close();
+    }
+
+    @Test
+    public void testMaxRecordsFlushesEarly() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(producerRegistry, 60000, 1, 100);
+        final long started = System.nanoTime();
+        final List<Response> responses = coalescer.produce("topic", Arrays.asList(payloadBuilder.withData("data").build()), DeliveryMode.LEADER_ACK, null, 1000);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 5000);
+        assertTrue(responses.size() == 1 && responses.get(0).getOffset() != null);
+
+        final List<Payload> invalid = new ArrayList<>();
+        invalid.add(null);
+        final Response response = coalescer.produce("topic", invalid, DeliveryMode.LEADER_ACK, null, 1000).get(0);
+        assertTrue(response.getErrors().size() == 1 && "Payload cannot be null".equals(response.getErrors().get(0)));
+        coalescer.close();
+    }
+
+    @Test
+    public void testClosedCoalescerProducesDirectly() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(producerRegistry, 1, 10, 10);
+        coalescer.close();
+        final List<Response> responses = coalescer.produce("topic", Arrays.asList(payloadBuilder.withData("data").build()), DeliveryMode.LEADER_ACK, null, 1000);
+        assertTrue(responses.get(0).getOffset() != null && coalescer.flushes() == 0);
+    }
+
+    @Test
+    public void testPartitionerPlacesCoalescedPayloads() throws Exception {
+        final ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "defaultPartitioner", "");
+        ReflectionTestUtils.setField(producerProperties, "stickyBytes", 16384);
+        final PayloadPartitioners payloadPartitioners = new PayloadPartitioners(producerProperties);
+        producerProperties.setPartitioners(Collections.singletonMap("even", "counting"));
+        final AtomicInteger partitioned = new AtomicInteger();
+        payloadPartitioners.register(new PayloadPartitioner() {
+            @Override
+            public String getName() {
+                return "counting";
+            }
+
+            @Override
+            public Integer partition(String topic, Payload payload, int size, List<PartitionInfo> partitions) {
+                partitioned.incrementAndGet();
+                return null;
+            }
+
+            @Override
+            public void completed(String topic, int partition, int size) {
+            }
+        });
+        producerRegistry.setPayloadPartitioners(payloadPartitioners);
+        final RequestCoalescer coalescer = new RequestCoalescer(producerRegistry, 1, 1000, 100);
+        coalescer.produce("even", Arrays.asList(payloadBuilder.withData("data").build(), payloadBuilder.withData("more").build()), DeliveryMode.LEADER_ACK, null, 1000);
+        coalescer.produce("odd", Arrays.asList(payloadBuilder.withData("data").build()), DeliveryMode.LEADER_ACK, null, 1000);
+        // only the payloads of the topic with a partitioner went through it, none were pinned
+        assertTrue(partitioned.get() == 2 && coalescer.flushes() == 2);
+        coalescer.close();
+    }
+
+    @Test
+    public void testUnlistedTopicProducedDirectly() throws Exception {
+        final RequestCoalescer coalescer = new RequestCoalescer(producerRegistry, 60000, 1000, 100);
+        // the flusher would wait for the metadata of a topic the cache does not list
+        final List<Response> responses = coalescer.produce("unlisted", Arrays.asList(payloadBuilder.withData("data").build()), DeliveryMode.LEADER_ACK, null, 1000);
+        assertTrue(responses.get(0).getOffset() != null && coalescer.queueDepth() == 0 && coalescer.flushes() == 0);
+        coalescer.close();
+    }
+}
@@ -0,0 +1,121 @@
+package com.barley.orleans.broker;
+
+import com.barley.orleans.exceptions.InvalidPayloadException;
+import com.barley.orleans.metrics.meters.AppMeters;
+import com.barley.orleans.metrics.meters.ProducerMeters;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for TopicMetadataCache
+ */
+public class TopicMetadataCacheTest {
+
+    private static final Node NODE = new Node(1, "localhost", 9092);
+
+    @Test
+    public void testLookupAndRefreshAhead() throws Exception {
+        final MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.updatePartitions("orders", partitions("orders", 2));
+        final TopicMetadataCache cache = new TopicMetadataCache(mockConsumer, 60000, 120000, 10, true);
+        awaitRefreshes(cache, 1);
+        assertTrue(cache.isFresh() && cache.partitions("orders").size() == 2 && cache.topics().size() == 1);
+
+        // an unknown topic is negative until the refresh it brings forward lists it
+        mockConsumer.updatePartitions("created", partitions("created", 1));
+        assertTrue(cache.partitions("created").isEmpty());
+        awaitRefreshes(cache, 2);
+        assertTrue(cache.partitions("created").size() == 1);
+        cache.close();
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        final MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.updatePartitions("orders", partitions("orders", 1));
+        final TopicMetadataCache cache = new TopicMetadataCache(mockConsumer, 60000, 120000, 60000, true);
+        awaitRefreshes(cache, 1);
+        cache.validate("orders");
+        assertTrue(invalid(cache, "missing") && invalid(cache, "bad topic") && invalid(cache, "..") && !TopicMetadataCache.isLegal(null));
+        assertTrue(cache.invalid("orders") == null && TopicMetadataCache.UNKNOWN_TOPIC.equals(cache.invalid("missing")));
+
+        final MockProducer<String, byte[]> mockProducer = new MockProducer<>(true, new StringSerializer(), new ByteArraySerializer());
+        final Producer producer = new Producer(mockProducer, null, 1000);
+        producer.setTopicMetadataCache(cache);
+        final AppMeters appMeters = new AppMeters();
+        producer.setProducerMeters(new ProducerMeters(appMeters));
+        final PayloadBuilder payloadBuilder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withSchemaId("")
+                .withUuid(UUID.randomUUID().toString()).withData("mydata");
+        final Response response = producer.produce("missing", payloadBuilder.build());
+        assertTrue(response.getErrors().size() == 1 && TopicMetadataCache.UNKNOWN_TOPIC.equals(response.getErrors().get(0)));
+        assertTrue(mockProducer.history().isEmpty());
+        // rejected topics do not register meters
+        for (String name : appMeters.registry().getNames()) {
+            assertTrue(!name.startsWith("produce.missing."));
+        }
+        assertTrue(producer.produce("orders", payloadBuilder.build()).getOffset() != null);
+        assertTrue(producer.partitionInfo("orders").size() == 1);
+        producer.close();
+        cache.close();
+    }
+
+    @Test
+    public void testUnknownWithoutListing() throws Exception {
+        final MockConsumer<byte[], byte[]> mockConsumer = new MockConsumer<byte[], byte[]>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public Map<String, List<PartitionInfo>> listTopics() {
+                throw new KafkaException("broker down");
+            }
+        };
+        final TopicMetadataCache cache = new TopicMetadataCache(mockConsumer, 60000, 120000, 60000, true);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (cache.failures() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // nothing is known, so nothing is rejected
+        assertTrue(!cache.isFresh() && cache.partitions("orders") == null && cache.topics() == null);
+        cache.validate("orders");
+        cache.close();
+    }
+
+    private static boolean invalid(TopicMetadataCache cache, String topic) {
+        try {
+            cache.validate(topic);
+            return false;
+        } catch (InvalidPayloadException e) {
+            return true;
+        }
+    }
+
+    private static void awaitRefreshes(TopicMetadataCache cache, long refreshes) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (cache.refreshes() < refreshes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(cache.refreshes() >= refreshes);
+    }
+
+    private static List<PartitionInfo> partitions(String topic, int count) {
+        final PartitionInfo[] partitions = new PartitionInfo[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new PartitionInfo(topic, i, NODE, new Node[]{NODE}, new Node[]{NODE});
+        }
+        return Arrays.asList(partitions);
+    }
+}
@@ -0,0 +1,88 @@
+package com.barley.orleans.codec;
+
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.RawJson;
+import com.barley.orleans.structure.Schema;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for PayloadCodecs
+ */
+public class PayloadCodecsTest {
+
+    private static PayloadCodecs payloadCodecs = null;
+    private static PayloadBuilder payloadBuilder = null;
+
+    @BeforeClass
+    public static void setUp() {
+        SchemaRegistry schemaRegistry = new SchemaRegistry();
+        schemaRegistry.register(new Schema("telemetry-v1", 7, BinaryPayloadCodec.NAME));
+        payloadCodecs = new PayloadCodecs(schemaRegistry);
+        payloadBuilder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withUuid()
+                .withData(new RawJson("{\"event\":\"test-event\"}"));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        Payload payload = payloadBuilder.withSchemaId("telemetry-v1").build();
+        byte[] binary = payloadCodecs.encode(payload);
+        assertTrue(binary[0] == BinaryPayloadCodec.MAGIC);
+        Payload decoded = payloadCodecs.decode(binary);
+        assertTrue(decoded.getSchemaId().equals("telemetry-v1"));
+        assertTrue(decoded.getClient().equals("TEST") && decoded.getIpAddress().equals("10.0.0.1"));
+        assertTrue(decoded.getUuid().equals(payload.getUuid()) && decoded.getCorrelationId() == null);
+        assertTrue(decoded.getData().equals(payload.getData()));
+    }
+
+    @Test
+    public void testBinarySmallerThanJson() throws Exception {
+        byte[] binary = payloadCodecs.encode(payloadBuilder.withSchemaId("telemetry-v1").build());
+        byte[] json = new JsonPayloadCodec().encode(payloadBuilder.withSchemaId("telemetry-v1").build(), null);
+        assertTrue(binary.length < json.length / 2);
+    }
+
+    @Test
+    public void testUnregisteredSchemaIsJson() throws Exception {
+        byte[] json = payloadCodecs.encode(payloadBuilder.withSchemaId("unknown").build());
+        assertTrue(json[0] == '{');
+        Payload decoded = payloadCodecs.decode(json);
+        assertTrue(decoded.getSchemaId().equals("unknown") && decoded.getData().toString().equals("{\"event\":\"test-event\"}"));
+    }
+
+    @Test
+    public void testJsonWriterReused() throws Exception {
+        final ObjectMapper objectMapper = new ObjectMapper();
+        final JsonPayloadCodec codec = new JsonPayloadCodec();
+        final PayloadBuilder builder = PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withUuid()
+                .withData(new RawJson("{\"event\":\"test-event\"}"));
+        final Payload payload = builder.build();
+        final byte[] expected = objectMapper.writeValueAsBytes(payload);
+        assertTrue(Arrays.equals(codec.encode(payload, null), expected));
+        assertTrue(Arrays.equals(codec.encode(payload, null), expected));
+        // a payload larger than the retained buffer and a failing one do not affect the next payload
+        final char[] large = new char[JsonPayloadCodec.MAX_RETAINED_BYTES * 2];
+        Arrays.fill(large, 'a');
+        final Payload largePayload = builder.withData(new RawJson("\"" + new String(large) + "\"")).build();
+        assertTrue(Arrays.equals(codec.encode(largePayload, null), objectMapper.writeValueAsBytes(largePayload)));
+        final Payload failing = builder.withData(new Object() {
+            public String getValue() throws IOException {
+                throw new IOException("not serializable");
+            }
+        }).build();
+        try {
+            codec.encode(failing, null);
+            assertTrue(false);
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not serializable"));
+        }
+        assertTrue(Arrays.equals(codec.encode(payload, null), expected));
+    }
+}
@@ -0,0 +1,72 @@
+package com.barley.orleans.config;
+
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.routing.RoundRobinPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Scope;
+
+import javax.inject.Named;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for SpringExtension props
+ */
+public class SpringExtensionTest {
+
+    @Named("PlainActor")
+    @Scope("prototype")
+    public static class PlainActor extends UntypedActor {
+        @Override
+        public void onReceive(Object message) {
+            unhandled(message);
+        }
+    }
+
+    @Named("BlockingActor")
+    @Scope("prototype")
+    @ActorDeployment(dispatcher = ActorDeployment.BLOCKING_DISPATCHER, mailbox = "bounded-mailbox", poolSize = 3)
+    public static class BlockingActor extends UntypedActor {
+        @Override
+        public void onReceive(Object message) {
+            unhandled(message);
+        }
+    }
+
+    private AnnotationConfigApplicationContext applicationContext = null;
+    private SpringExtension.SpringExt springExt = null;
+
+    @Before
+    public void setUp() {
+        applicationContext = new AnnotationConfigApplicationContext(PlainActor.class, BlockingActor.class);
+        springExt = new SpringExtension.SpringExt();
+        springExt.initialize(applicationContext);
+    }
+
+    @After
+    public void tearDown() {
+        applicationContext.close();
+    }
+
+    @Test
+    public void testPlainActor() throws Exception {
+        Props props = springExt.props("PlainActor");
+        assertTrue(props.dispatcher().equals(Props.empty().dispatcher()));
+        assertTrue(props.mailbox().equals(Props.empty().mailbox()));
+        assertTrue(props.routerConfig().equals(Props.empty().routerConfig()));
+    }
+
+    @Test
+    public void testDeployment() throws Exception {
+        Props props = springExt.props("BlockingActor");
+        assertTrue(props.routerConfig() instanceof RoundRobinPool);
+        assertTrue(((RoundRobinPool) props.routerConfig()).nrOfInstances() == 3);
+        assertTrue(((RoundRobinPool) props.routerConfig()).routerDispatcher().equals(ActorDeployment.BLOCKING_DISPATCHER));
+        assertTrue(props.dispatcher().equals(ActorDeployment.BLOCKING_DISPATCHER));
+        assertTrue(props.mailbox().equals("bounded-mailbox"));
+    }
+}
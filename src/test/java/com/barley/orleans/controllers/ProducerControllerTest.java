@@ -0,0 +1,132 @@
+package com.barley.orleans.controllers;
+
+import com.barley.orleans.admission.InFlightBudget;
+import com.barley.orleans.admission.RateLimiter;
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.interfaces.AfterCall;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.RateLimit;
+import com.barley.orleans.structure.Response;
+import com.barley.orleans.structure.ResponseList;
+import com.barley.orleans.structure.StreamResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ProducerController delivery modes
+ */
+public class ProducerControllerTest {
+
+    private ProducerProperties producerProperties = null;
+    private ProducerRegistry producerRegistry = null;
+    private ProducerController producerController = null;
+
+    @Before
+    public void setUp() {
+        producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "bootstrapServers", "localhost:9092");
+        ReflectionTestUtils.setField(producerProperties, "poolSize", 1);
+        ReflectionTestUtils.setField(producerProperties, "ackTimeout", 1000L);
+        ReflectionTestUtils.setField(producerProperties, "deliveryMode", DeliveryMode.LEADER_ACK);
+        final Map<String, DeliveryMode> deliveryModes = new HashMap<>();
+        deliveryModes.put("telemetry", DeliveryMode.FIRE_AND_FORGET);
+        producerProperties.setDeliveryModes(deliveryModes);
+        producerRegistry = new ProducerRegistry(producerProperties, true);
+        producerController = new ProducerController(producerProperties, producerRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        producerRegistry.close();
+    }
+
+    private static List<Payload> payloads() {
+        return Collections.singletonList(PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withUuid()
+                .withData("{\"event\": \"test-event\"}").build());
+    }
+
+    @Test
+    public void testFireAndForget() throws Exception {
+        final ResponseEntity<ResponseList> accepted = producerController.produce("events", payloads(), DeliveryMode.FIRE_AND_FORGET, null);
+        assertTrue(accepted.getStatusCode() == HttpStatus.ACCEPTED);
+        final Response response = accepted.getBody().getResponses().get(0);
+        assertTrue(response.getOffset() == null && response.getPartition() == null && response.getErrors().isEmpty());
+        final ResponseEntity<ResponseList> acknowledged = producerController.produce("events", payloads(), null, null);
+        assertTrue(acknowledged.getStatusCode() == HttpStatus.OK && acknowledged.getBody().getResponses().get(0).getOffset() != null);
+    }
+
+    @Test
+    public void testTopicDeliveryModeFallback() throws Exception {
+        // telemetry falls back to its configured mode when the request does not name one
+        assertTrue(producerController.produce("telemetry", payloads(), null, null).getStatusCode() == HttpStatus.ACCEPTED);
+        assertTrue(producerController.produce("telemetry", payloads(), DeliveryMode.LEADER_ACK, null).getStatusCode() == HttpStatus.OK);
+        assertTrue(producerProperties.deliveryMode("telemetry") == DeliveryMode.FIRE_AND_FORGET);
+        assertTrue(producerProperties.deliveryMode("events") == DeliveryMode.LEADER_ACK);
+    }
+
+    @Test
+    public void testAllReplicasPool() throws Exception {
+        final List<String> acks = new ArrayList<>();
+        final AfterCall afterCall = new AfterCall() {
+            @Override
+            public void after(String topic, Integer partition, Long offset, Exception exception, Payload payload, Properties properties) {
+                acks.add(properties.getProperty("acks"));
+            }
+        };
+        producerRegistry.producer("events", DeliveryMode.ALL_REPLICAS).produce("events", payloads().get(0), afterCall);
+        producerRegistry.producer("events", DeliveryMode.LEADER_ACK).produce("events", payloads().get(0), afterCall);
+        assertTrue(acks.size() == 2 && "all".equals(acks.get(0)) && "1".equals(acks.get(1)));
+        assertTrue(producerRegistry.producer("events", DeliveryMode.ALL_REPLICAS) != producerRegistry.producer("events", DeliveryMode.LEADER_ACK));
+        assertTrue(producerController.produce("events", payloads(), DeliveryMode.ALL_REPLICAS, null).getStatusCode() == HttpStatus.OK);
+    }
+
+    @Test
+    public void testStreamRateLimit() throws Exception {
+        producerController.setRateLimiter(new RateLimiter(new RateLimit(1, 150), null, 100));
+        final StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            ndjson.append("{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": ").append(i).append("}\n");
+        }
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/produce/stream/events");
+        request.setContent(ndjson.toString().getBytes("UTF-8"));
+        final ResponseEntity<StreamResult> response = producerController.produceStream("events", request, null);
+        // the first chunk fits the burst, the second does not
+        assertTrue(response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS && response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER) != null);
+        assertTrue(response.getBody().getReceived() == Producer.STREAM_CHUNK && response.getBody().getProduced() == Producer.STREAM_CHUNK);
+    }
+
+    @Test
+    public void testStreamInFlightBudget() throws Exception {
+        final InFlightBudget inFlightBudget = new InFlightBudget(0, Producer.STREAM_CHUNK, 0, 0, 100, 0);
+        producerController.setInFlightBudget(inFlightBudget);
+        final StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            ndjson.append("{\"client\": \"TEST\", \"ipAddress\": \"10.0.0.1\", \"data\": ").append(i).append("}\n");
+        }
+        final MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/produce/stream/events");
+        request.setContent(ndjson.toString().getBytes("UTF-8"));
+        // mock producers acknowledge right away, so every chunk gives its budget back before the next one is read
+        final ResponseEntity<StreamResult> response = producerController.produceStream("events", request, null);
+        assertTrue(response.getStatusCode() == HttpStatus.OK && response.getBody().getProduced() == 250);
+        assertTrue(inFlightBudget.inFlightRecords() == 0 && inFlightBudget.rejected() == 0);
+    }
+}
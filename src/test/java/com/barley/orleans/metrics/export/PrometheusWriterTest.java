@@ -0,0 +1,57 @@
+package com.barley.orleans.metrics.export;
+
+import com.barley.orleans.properties.MetricsProperties;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for PrometheusWriter
+ */
+public class PrometheusWriterTest {
+
+    @Test
+    public void testRegistryMetrics() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.meter("produce.my-topic.errors.IOException").mark(3);
+        registry.timer("produce.my-topic.ack").update(2, TimeUnit.MILLISECONDS);
+        final StringWriter writer = new StringWriter();
+        new PrometheusWriter(registry, MetricsProperties.DEFAULT_KAFKA_METRICS).write(writer, null);
+        final String text = writer.toString();
+        assertTrue(text.contains("# TYPE orleans_produce_errors_total counter\norleans_produce_errors_total{topic=\"my-topic\",exception=\"IOException\"} 3\n"));
+        assertTrue(text.contains("# TYPE orleans_produce_ack_seconds gauge\n"));
+        assertTrue(text.contains("orleans_produce_ack_seconds{topic=\"my-topic\",quantile=\"0.99\"} 0.002\n"));
+        assertTrue(text.contains("# TYPE orleans_produce_ack_seconds_count counter\norleans_produce_ack_seconds_count{topic=\"my-topic\"} 1\n"));
+        assertTrue(!text.contains("summary"));
+        assertTrue(text.contains("jvm_memory_heap_used_bytes "));
+    }
+
+    @Test
+    public void testTopicsShareFamilies() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.timer("produce.a.b.ack").update(1, TimeUnit.MILLISECONDS);
+        registry.timer("produce.a_b.ack").update(1, TimeUnit.MILLISECONDS);
+        registry.timer("produce.a-b.ack").update(1, TimeUnit.MILLISECONDS);
+        registry.meter("produce.x.errors.y.errors.TimeoutException").mark();
+        registry.meter("consume.a.b").mark(2);
+        final StringWriter writer = new StringWriter();
+        new PrometheusWriter(registry, MetricsProperties.DEFAULT_KAFKA_METRICS).write(writer, null);
+        final String text = writer.toString();
+        assertTrue(text.indexOf("# TYPE orleans_produce_ack_seconds gauge") == text.lastIndexOf("# TYPE orleans_produce_ack_seconds gauge"));
+        assertTrue(text.contains("orleans_produce_ack_seconds_count{topic=\"a.b\"} 1\n"));
+        assertTrue(text.contains("orleans_produce_ack_seconds_count{topic=\"a_b\"} 1\n"));
+        assertTrue(text.contains("orleans_produce_ack_seconds_count{topic=\"a-b\"} 1\n"));
+        assertTrue(text.contains("orleans_produce_errors_total{topic=\"x.errors.y\",exception=\"TimeoutException\"} 1\n"));
+        assertTrue(text.contains("orleans_consume_total{topic=\"a.b\"} 2\n"));
+    }
+
+    @Test
+    public void testSanitize() throws Exception {
+        assertTrue(PrometheusWriter.sanitize("record-send-rate").equals("record_send_rate"));
+        assertTrue(PrometheusWriter.sanitize("9lives.x").equals("_lives_x"));
+    }
+}
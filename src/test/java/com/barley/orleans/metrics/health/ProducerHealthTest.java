@@ -0,0 +1,113 @@
+package com.barley.orleans.metrics.health;
+
+import com.barley.orleans.broker.ProducerRegistry;
+import com.barley.orleans.broker.TopicMetadataCache;
+import com.barley.orleans.properties.ProducerProperties;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ProducerHealth
+ */
+public class ProducerHealthTest {
+
+    private ProducerRegistry producerRegistry = null;
+
+    @Before
+    public void setUp() {
+        final ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "bootstrapServers", "localhost:9092");
+        ReflectionTestUtils.setField(producerProperties, "poolSize", 1);
+        producerRegistry = new ProducerRegistry(producerProperties, true);
+    }
+
+    @After
+    public void tearDown() {
+        producerRegistry.close();
+    }
+
+    private static Map<MetricName, Metric> metrics(double available, double total, double queueTime, double errorRate, double sendRate) {
+        final Map<MetricName, Metric> metrics = new HashMap<>();
+        put(metrics, "buffer-available-bytes", available);
+        put(metrics, "buffer-total-bytes", total);
+        put(metrics, "record-queue-time-avg", queueTime);
+        put(metrics, "record-error-rate", errorRate);
+        put(metrics, "record-send-rate", sendRate);
+        put(metrics, "requests-in-flight", 1);
+        return metrics;
+    }
+
+    private static void put(Map<MetricName, Metric> metrics, String name, final double value) {
+        final MetricName metricName = new MetricName(name, "producer-metrics", "", new HashMap<String, String>());
+        metrics.put(metricName, new Metric() {
+            @Override
+            public MetricName metricName() {
+                return metricName;
+            }
+
+            @Override
+            public double value() {
+                return value;
+            }
+        });
+    }
+
+    @SafeVarargs
+    private static List<Map<MetricName, ? extends Metric>> shards(Map<MetricName, Metric>... shards) {
+        final List<Map<MetricName, ? extends Metric>> list = new ArrayList<>(shards.length);
+        for (Map<MetricName, Metric> shard : shards) {
+            list.add(shard);
+        }
+        return list;
+    }
+
+    @Test
+    public void testStates() throws Exception {
+        final ProducerHealth health = new ProducerHealth(producerRegistry, null, new ProducerHealth.Thresholds(), 60000);
+        final Map<MetricName, Metric> healthy = metrics(900, 1000, 5, 0, 1000);
+        assertTrue(health.evaluate(shards(healthy), 0).getStatus().equals(Status.UP));
+        // the worst shard decides
+        assertTrue(health.evaluate(shards(healthy, metrics(200, 1000, 5, 0, 1000)), 0).getStatus().equals(ProducerHealth.DEGRADED));
+        assertTrue(health.evaluate(shards(healthy, metrics(10, 1000, 5, 0, 1000)), 0).getStatus().equals(Status.DOWN));
+        assertTrue(health.evaluate(shards(metrics(900, 1000, 80, 0, 1000)), 0).getStatus().equals(ProducerHealth.DEGRADED));
+        assertTrue(health.evaluate(shards(metrics(900, 1000, 5, 50, 950)), 0).getStatus().equals(ProducerHealth.DEGRADED));
+        assertTrue(health.evaluate(shards(metrics(900, 1000, 5, 600, 400)), 0).getStatus().equals(Status.DOWN));
+        assertTrue(health.evaluate(shards(healthy), 1).getStatus().equals(ProducerHealth.DEGRADED));
+        assertTrue(((List<?>) health.evaluate(shards(healthy), 1).getDetails().get("reasons")).contains("spilling"));
+        // mock producers have no metrics
+        assertTrue(health.sample().getStatus().equals(Status.UP) && health.health().getStatus().equals(Status.UP));
+        health.close();
+    }
+
+    @Test
+    public void testBrokersUnreachable() throws Exception {
+        final MockConsumer<byte[], byte[]> failing = new MockConsumer<byte[], byte[]>(OffsetResetStrategy.EARLIEST) {
+            @Override
+            public Map<String, List<PartitionInfo>> listTopics() {
+                throw new KafkaException("unreachable");
+            }
+        };
+        final TopicMetadataCache cache = new TopicMetadataCache(failing, 60000, 120000, 60000, true);
+        final ProducerHealth health = new ProducerHealth(producerRegistry, cache, new ProducerHealth.Thresholds(), 60000);
+        assertTrue(health.sample().getStatus().equals(Status.DOWN));
+        assertTrue(((List<?>) health.health().getDetails().get("reasons")).contains("brokers unreachable"));
+        health.close();
+        cache.close();
+    }
+}
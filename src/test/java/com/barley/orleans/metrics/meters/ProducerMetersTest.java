@@ -0,0 +1,53 @@
+package com.barley.orleans.metrics.meters;
+
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.structure.PayloadBuilder;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ProducerMeters
+ */
+public class ProducerMetersTest {
+
+    @Test
+    public void testProduceRecorded() throws Exception {
+        final AppMeters appMeters = new AppMeters();
+        final ProducerMeters producerMeters = new ProducerMeters(appMeters);
+        final Producer producer = new Producer(null, true);
+        producer.setProducerMeters(producerMeters);
+        producer.produce("meters-topic", PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1").withSchemaId("")
+                .withUuid(UUID.randomUUID().toString()).withData("{\"event\": \"test-event\"}").build());
+        producer.produce("meters-topic", null);
+        final ProducerMeters.TopicMeters topicMeters = producerMeters.topic("meters-topic");
+        assertTrue(topicMeters.getSerialize().getCount() == 1);
+        assertTrue(topicMeters.getAck().getCount() == 1);
+        assertTrue(topicMeters.getBytes().getSnapshot().getMax() > 0);
+        assertTrue(appMeters.meter("produce.meters-topic.errors.InvalidPayloadException").getCount() == 1);
+    }
+
+    @Test
+    public void testCachedHandles() throws Exception {
+        final AppMeters appMeters = new AppMeters();
+        assertTrue(appMeters.meter("cached") == appMeters.meter("cached"));
+        assertTrue(appMeters.timer("cached-timer") == appMeters.timer("cached-timer"));
+        assertTrue(new ProducerMeters(appMeters).topic("t").getAck() == new ProducerMeters(appMeters).topic("t").getAck());
+    }
+
+    @Test
+    public void testTopicsCapped() throws Exception {
+        final AppMeters appMeters = new AppMeters();
+        final ProducerMeters producerMeters = new ProducerMeters(appMeters, 2);
+        final ProducerMeters.TopicMeters first = producerMeters.topic("first");
+        assertTrue(producerMeters.topic("second") != first && producerMeters.topic("first") == first);
+        final ProducerMeters.TopicMeters other = producerMeters.topic("third");
+        assertTrue(producerMeters.topic("fourth") == other && other != first);
+        assertTrue(other.getAck() == appMeters.timer("produce." + ProducerMeters.OTHER_TOPICS + ".ack"));
+        for (String name : appMeters.registry().getNames()) {
+            assertTrue(!name.startsWith("produce.third.") && !name.startsWith("produce.fourth."));
+        }
+    }
+}
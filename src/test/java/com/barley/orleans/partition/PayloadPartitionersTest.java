@@ -0,0 +1,138 @@
+package com.barley.orleans.partition;
+
+import com.barley.orleans.properties.ProducerProfile;
+import com.barley.orleans.properties.ProducerProperties;
+import com.barley.orleans.structure.Payload;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for PayloadPartitioners and the built-in partitioners
+ */
+public class PayloadPartitionersTest {
+
+    private static final Node LEADER = new Node(0, "localhost", 9092);
+
+    private static List<PartitionInfo> partitions(String topic, int count) {
+        List<PartitionInfo> partitions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            partitions.add(new PartitionInfo(topic, i, LEADER, new Node[]{LEADER}, new Node[]{LEADER}));
+        }
+        return partitions;
+    }
+
+    private static Payload payload(String client) {
+        Payload payload = new Payload();
+        payload.setClient(client);
+        payload.setData("data");
+        return payload;
+    }
+
+    @Test
+    public void testSticky() throws Exception {
+        StickyPartitioner sticky = new StickyPartitioner(100);
+        List<PartitionInfo> partitions = partitions("events", 4);
+        Integer first = sticky.partition("events", payload("a"), 40, partitions);
+        assertTrue(first != null);
+        assertTrue(first.equals(sticky.partition("events", payload("b"), 40, partitions)));
+        assertTrue(first.equals(sticky.partition("events", payload("c"), 40, partitions)));
+        // 120 bytes went to the first partition, the next payload opens a batch elsewhere
+        assertTrue(!first.equals(sticky.partition("events", payload("d"), 40, partitions)));
+
+        List<PartitionInfo> withoutLeader = new ArrayList<>(partitions);
+        withoutLeader.set(first, new PartitionInfo("events", first, null, new Node[0], new Node[0]));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(!first.equals(sticky.partition("events", payload("e"), 40, withoutLeader)));
+        }
+    }
+
+    @Test
+    public void testLoadAware() throws Exception {
+        LoadAwarePartitioner loadAware = new LoadAwarePartitioner();
+        List<PartitionInfo> partitions = partitions("events", 3);
+        int first = loadAware.partition("events", payload("a"), 1000, partitions);
+        int second = loadAware.partition("events", payload("a"), 10, partitions);
+        int third = loadAware.partition("events", payload("a"), 10, partitions);
+        assertTrue(first != second && first != third && second != third);
+        // the partition holding 1000 bytes is avoided until it is acknowledged
+        assertTrue(loadAware.partition("events", payload("a"), 10, partitions) != first);
+        assertTrue(loadAware.inFlight("events", first) == 1000);
+        loadAware.completed("events", first, 1000);
+        assertTrue(loadAware.inFlight("events", first) == 0);
+        assertTrue(loadAware.partition("events", payload("a"), 10, partitions) == first);
+    }
+
+    @Test
+    public void testConsistentHash() throws Exception {
+        ConsistentHashPartitioner byClient = new ConsistentHashPartitioner(true);
+        assertTrue(byClient.partition("events", new Payload(), 10, partitions("events", 8)) == null);
+        int moved = 0;
+        for (int i = 0; i < 1000; i++) {
+            Integer before = byClient.partition("events", payload("client-" + i), 10, partitions("events", 8));
+            assertTrue(before.equals(byClient.partition("events", payload("client-" + i), 10, partitions("events", 8))));
+            Integer after = byClient.partition("events", payload("client-" + i), 10, partitions("events", 9));
+            if (!before.equals(after)) {
+                assertTrue(after == 8);
+                moved++;
+            }
+        }
+        // about a ninth of the clients move to the new partition, none move between the old ones
+        assertTrue(moved > 50 && moved < 250);
+    }
+
+    @Test
+    public void testTopicResolution() throws Exception {
+        ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "defaultPartitioner", "");
+        ReflectionTestUtils.setField(producerProperties, "stickyBytes", 16384);
+        ProducerProfile audit = new ProducerProfile();
+        audit.setTopics(Arrays.asList("audit-.*"));
+        audit.setPartitioner(ConsistentHashPartitioner.CLIENT);
+        Map<String, ProducerProfile> profiles = new LinkedHashMap<>();
+        profiles.put("audit", audit);
+        producerProperties.setProfiles(profiles);
+        Map<String, String> partitioners = new HashMap<>();
+        partitioners.put("events", StickyPartitioner.NAME);
+        partitioners.put("audit-orders", LoadAwarePartitioner.class.getName());
+        producerProperties.setPartitioners(partitioners);
+
+        PayloadPartitioners payloadPartitioners = new PayloadPartitioners(producerProperties);
+        assertTrue(payloadPartitioners.partitioner("events") instanceof StickyPartitioner);
+        assertTrue(payloadPartitioners.partitioner("audit-orders") instanceof LoadAwarePartitioner);
+        assertTrue(payloadPartitioners.partitioner("audit-users").getName().equals(ConsistentHashPartitioner.CLIENT));
+        assertTrue(payloadPartitioners.partitioner("other") == null);
+
+        partitioners.put("broken", "no-such-partitioner");
+        try {
+            new PayloadPartitioners(producerProperties);
+            assertTrue(false);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("no-such-partitioner"));
+        }
+    }
+
+    @Test
+    public void testTopicCacheBounded() throws Exception {
+        ProducerProperties producerProperties = new ProducerProperties();
+        ReflectionTestUtils.setField(producerProperties, "defaultPartitioner", StickyPartitioner.NAME);
+        ReflectionTestUtils.setField(producerProperties, "stickyBytes", 16384);
+        PayloadPartitioners payloadPartitioners = new PayloadPartitioners(producerProperties);
+        for (int i = 0; i < ProducerProperties.MAX_CACHED_TOPICS + 100; i++) {
+            payloadPartitioners.partitioner("topic-" + i);
+        }
+        final Map<?, ?> topics = (Map<?, ?>) ReflectionTestUtils.getField(payloadPartitioners, "topics");
+        assertTrue(topics.size() == ProducerProperties.MAX_CACHED_TOPICS);
+        assertTrue(payloadPartitioners.partitioner("late") instanceof StickyPartitioner && topics.size() == ProducerProperties.MAX_CACHED_TOPICS);
+    }
+}
@@ -0,0 +1,74 @@
+package com.barley.orleans.properties;
+
+import com.barley.orleans.broker.DeliveryMode;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for ProducerProperties profiles
+ */
+public class ProducerPropertiesTest {
+
+    private ProducerProperties producerProperties = null;
+
+    @Before
+    public void setUp() {
+        producerProperties = new ProducerProperties();
+        producerProperties.bootstrapServers = "localhost:9092";
+        producerProperties.poolSize = 1;
+        producerProperties.deliveryMode = DeliveryMode.LEADER_ACK;
+
+        ProducerProfile bulk = new ProducerProfile();
+        bulk.setTopics(Arrays.asList("bulk-.*", "telemetry"));
+        bulk.setCompressionType("lz4");
+        bulk.setLingerMs(50);
+        bulk.setPoolSize(4);
+        bulk.setDeliveryMode(DeliveryMode.FIRE_AND_FORGET);
+        ProducerProfile interactive = new ProducerProfile();
+        interactive.setTopics(Arrays.asList("orders"));
+        interactive.setLingerMs(0);
+        interactive.setAcks("all");
+        Map<String, ProducerProfile> profiles = new LinkedHashMap<>();
+        profiles.put("bulk", bulk);
+        profiles.put("interactive", interactive);
+        producerProperties.setProfiles(profiles);
+    }
+
+    @Test
+    public void testProfileMatching() throws Exception {
+        assertTrue(producerProperties.profile("bulk-events").equals("bulk"));
+        assertTrue(producerProperties.profile("telemetry").equals("bulk"));
+        assertTrue(producerProperties.profile("orders").equals("interactive"));
+        assertTrue(producerProperties.profile("other").equals(ProducerProperties.DEFAULT_PROFILE));
+        assertTrue(producerProperties.poolSize("bulk") == 4 && producerProperties.poolSize("interactive") == 1);
+        assertTrue(producerProperties.deliveryMode("telemetry") == DeliveryMode.FIRE_AND_FORGET);
+        assertTrue(producerProperties.deliveryMode("orders") == DeliveryMode.LEADER_ACK);
+    }
+
+    @Test
+    public void testProfileCacheBounded() throws Exception {
+        for (int i = 0; i < ProducerProperties.MAX_CACHED_TOPICS + 100; i++) {
+            producerProperties.profile("topic-" + i);
+        }
+        final Map<?, ?> topicProfiles = (Map<?, ?>) ReflectionTestUtils.getField(producerProperties, "topicProfiles");
+        assertTrue(topicProfiles.size() == ProducerProperties.MAX_CACHED_TOPICS);
+        assertTrue(producerProperties.profile("bulk-late").equals("bulk") && topicProfiles.size() == ProducerProperties.MAX_CACHED_TOPICS);
+    }
+
+    @Test
+    public void testProfileProperties() throws Exception {
+        Properties bulk = producerProperties.properties("bulk", DeliveryMode.LEADER_ACK);
+        assertTrue(bulk.get("compression.type").equals("lz4") && bulk.get("linger.ms").equals("50") && bulk.get("acks").equals("1"));
+        assertTrue(producerProperties.properties("bulk", DeliveryMode.ALL_REPLICAS).get("acks").equals("all"));
+        assertTrue(producerProperties.properties("interactive", DeliveryMode.LEADER_ACK).get("acks").equals("all"));
+        assertTrue(producerProperties.properties(ProducerProperties.DEFAULT_PROFILE, DeliveryMode.LEADER_ACK).get("linger.ms") == null);
+    }
+}
@@ -0,0 +1,128 @@
+package com.barley.orleans.spill;
+
+import com.barley.orleans.broker.DeliveryMode;
+import com.barley.orleans.broker.Producer;
+import com.barley.orleans.structure.Payload;
+import com.barley.orleans.structure.PayloadBuilder;
+import com.barley.orleans.structure.Response;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for SpillQueue
+ */
+public class SpillQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOrderAcrossSegmentsAndRestart() throws Exception {
+        final File directory = folder.newFolder("spill");
+        SpillQueue spillQueue = new SpillQueue(directory, 128, 4096, SpillQueue.SyncPolicy.ALWAYS, 0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spillQueue.append("topic", i % 2 == 0 ? null : 1, "key-" + i, ("value-" + i).getBytes("UTF-8")));
+        }
+        assertTrue(spillQueue.isActive() && spillQueue.records() == 10 && spillQueue.bytes() > 128);
+
+        List<SpillRecord> batch = spillQueue.read(4, Integer.MAX_VALUE);
+        assertTrue(batch.size() == 4 && "key-0".equals(batch.get(0).getKey()) && batch.get(0).getPartition() == null);
+        spillQueue.rewind();
+        batch = spillQueue.read(4, Integer.MAX_VALUE);
+        assertTrue("value-3".equals(new String(batch.get(3).getValue(), "UTF-8")) && batch.get(3).getPartition() == 1);
+        spillQueue.commit();
+        spillQueue.close();
+
+        spillQueue = new SpillQueue(directory, 128, 4096, SpillQueue.SyncPolicy.ALWAYS, 0);
+        assertTrue(spillQueue.isActive() && spillQueue.records() == 6);
+        batch = spillQueue.read(100, Integer.MAX_VALUE);
+        assertTrue(batch.size() == 6 && "key-4".equals(batch.get(0).getKey()) && "key-9".equals(batch.get(5).getKey()));
+        spillQueue.commit();
+        assertTrue(!spillQueue.isActive() && spillQueue.records() == 0 && spillQueue.bytes() == 0);
+        assertTrue(directory.listFiles(spillFiles()).length == 0);
+
+        assertTrue(spillQueue.append("topic", null, "key-10", "value-10".getBytes("UTF-8")));
+        batch = spillQueue.read(100, Integer.MAX_VALUE);
+        assertTrue(batch.size() == 1 && "key-10".equals(batch.get(0).getKey()));
+        spillQueue.commit();
+        assertTrue(directory.listFiles(spillFiles()).length == 0);
+        spillQueue.close();
+    }
+
+    private static FilenameFilter spillFiles() {
+        return new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".spill");
+            }
+        };
+    }
+
+    @Test
+    public void testDiskCap() throws Exception {
+        final SpillQueue spillQueue = new SpillQueue(folder.newFolder("cap"), 64, 128, SpillQueue.SyncPolicy.NEVER, 0);
+        assertTrue(!spillQueue.append("topic", null, null, new byte[64]));
+        int appended = 0;
+        while (spillQueue.append("topic", null, null, new byte[4])) {
+            appended++;
+        }
+        assertTrue(appended == 4 && spillQueue.bytes() == 128);
+        spillQueue.close();
+    }
+
+    @Test
+    public void testSpillAndReplay() throws Exception {
+        final MockProducer<String, byte[]> mockProducer = new MockProducer<>(false, new StringSerializer(), new ByteArraySerializer());
+        final Producer producer = new Producer(mockProducer, new Properties(), 1000);
+        final SpillQueue spillQueue = new SpillQueue(folder.newFolder("replay"), 4096, 8192, SpillQueue.SyncPolicy.NEVER, 0);
+        producer.setSpillQueue(spillQueue, 500);
+        final String first = UUID.randomUUID().toString();
+        final String second = UUID.randomUUID().toString();
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        producer.produceBatch("topic", payloads(first), null, DeliveryMode.FIRE_AND_FORGET, 1000);
+        mockProducer.errorNext(new TimeoutException("broker down"));
+        while (!spillQueue.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(spillQueue.isActive() && spillQueue.records() == 1);
+
+        // while records are spilled, new ones are appended behind them instead of being sent
+        final Response response = producer.produceBatch("topic", payloads(second), null, DeliveryMode.FIRE_AND_FORGET, 1000).get(0);
+        assertTrue(Boolean.TRUE.equals(response.getSpilled()) && response.getErrors().isEmpty());
+        assertTrue(spillQueue.records() == 2);
+
+        // the spilled records are replayed in append order, the second one is never sent directly
+        while (spillQueue.isActive() && System.currentTimeMillis() < deadline) {
+            mockProducer.completeNext();
+            Thread.sleep(10);
+        }
+        assertTrue(!spillQueue.isActive() && spillQueue.records() == 0);
+        assertTrue(mockProducer.history().size() == 3 && sent(mockProducer, 0, first) && sent(mockProducer, 1, first)
+                && sent(mockProducer, 2, second));
+        producer.close();
+    }
+
+    private static List<Payload> payloads(String uuid) {
+        return Collections.singletonList(PayloadBuilder.aPayload().withClient("TEST").withIpAddress("10.0.0.1")
+                .withSchemaId("").withUuid(uuid).withData("{\"event\": \"test-event\"}").build());
+    }
+
+    private static boolean sent(MockProducer<String, byte[]> mockProducer, int index, String uuid) throws Exception {
+        return new String(mockProducer.history().get(index).value(), "UTF-8").contains(uuid);
+    }
+}
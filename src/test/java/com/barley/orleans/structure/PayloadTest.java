@@ -0,0 +1,30 @@
+package com.barley.orleans.structure;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for Payload JSON handling
+ */
+public class PayloadTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void testDataKeptRaw() throws Exception {
+        String json = "{\"client\":\"TEST\",\"ipAddress\":\"10.0.0.1\",\"data\":{\"event\":\"test-event\",\"values\":[1,2.5,null]}}";
+        Payload payload = OBJECT_MAPPER.readValue(json, Payload.class);
+        assertTrue(payload.getData() instanceof RawJson);
+        assertTrue(payload.getData().toString().equals("{\"event\":\"test-event\",\"values\":[1,2.5,null]}"));
+        String written = new String(OBJECT_MAPPER.writeValueAsBytes(payload), "UTF-8");
+        assertTrue(written.contains("\"data\":{\"event\":\"test-event\",\"values\":[1,2.5,null]}"));
+    }
+
+    @Test
+    public void testNullData() throws Exception {
+        Payload payload = OBJECT_MAPPER.readValue("{\"client\":\"TEST\",\"data\":null}", Payload.class);
+        assertTrue(payload.getData() == null);
+    }
+}